@@ -0,0 +1,53 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the decisions per second of the SnakeAutopilot. Every operation
+ * is one decision followed by the update it steers; when the game ends the
+ * game is restarted from the next seed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AutopilotBenchmark {
+
+	/** The seed of the first benchmarked game. */
+	private static final long SEED = 42L;
+
+	@Param({ "10", "100", "1000" })
+	public int boardSize;
+
+	private long seed = SEED;
+
+	private SnakeModel model;
+
+	private SnakeAutopilot autopilot;
+
+	@Setup
+	public void setUp() {
+		this.model = new SnakeModel(new Dimension(this.boardSize,
+				this.boardSize), SnakeModel.INITIAL_SNAKE_LENGTH, this.seed++);
+		this.autopilot = new SnakeAutopilot(this.model);
+	}
+
+	@Benchmark
+	public GameModel decide() {
+		try {
+			this.model.gameUpdate(this.autopilot.nextKey());
+		} catch (GameOverException e) {
+			setUp();
+		}
+		return this.model;
+	}
+}
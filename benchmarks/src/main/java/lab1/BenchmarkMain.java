@@ -0,0 +1,47 @@
+package lab1;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so that every result
+ * comes with its allocation rate per operation. Any JMH command line option
+ * may be given, e.g. a benchmark name pattern or <code>-prof stack</code>.
+ * On Java 17 and later the benchmarks run with the vector API, so that
+ * BoardOps.getInstance() uses it.
+ */
+public class BenchmarkMain {
+
+	/** The first Java version BoardOps uses the vector API on. */
+	private static final int VECTOR_API_VERSION = 17;
+
+	public static void main(final String[] args)
+			throws CommandLineOptionException, RunnerException {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class);
+		if (javaVersion() >= VECTOR_API_VERSION) {
+			options.jvmArgsAppend("-Djava.awt.headless=true",
+					"--add-modules", "jdk.incubator.vector");
+		} else {
+			options.jvmArgsAppend("-Djava.awt.headless=true");
+		}
+		new Runner(options.build()).run();
+	}
+
+	/**
+	 * Returns the major version of the running Java, 8 for "1.8".
+	 */
+	private static int javaVersion() {
+		String version = System.getProperty("java.specification.version");
+		if (version.startsWith("1.")) {
+			version = version.substring(2);
+		}
+		return Integer.parseInt(version);
+	}
+}
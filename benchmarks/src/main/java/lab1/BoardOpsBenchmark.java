@@ -0,0 +1,101 @@
+package lab1;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the bulk operations of BoardOps on a gameboard stored row by row,
+ * with the plain loops and with the vector API. The gameboard holds 0 but
+ * for one cell in FRUIT_SPACING, and the gameboard it is compared with
+ * differs in one cell in DIFF_SPACING, as after a busy update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BoardOpsBenchmark {
+
+	/** The tile ID of the few other cells. */
+	private static final int FRUIT = 1;
+
+	/** The number of cells per fruit. */
+	private static final int FRUIT_SPACING = 97;
+
+	/** The number of cells per cell which differs between the gameboards. */
+	private static final int DIFF_SPACING = 1009;
+
+	@Param({ "scalar", "vector" })
+	public String ops;
+
+	/** The number of cells, of a 64x64 and of a 2048x2048 gameboard. */
+	@Param({ "4096", "4194304" })
+	public int cells;
+
+	private BoardOps boardOps;
+
+	private byte[] board;
+
+	private byte[] changedBoard;
+
+	private byte[] filledBoard;
+
+	private int[] changed;
+
+	private int lastFruit;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if ("scalar".equals(this.ops)) {
+			this.boardOps = BoardOps.getScalar();
+		} else {
+			this.boardOps = BoardOps.getInstance();
+			if (!this.ops.equals(this.boardOps.getName())) {
+				throw new IllegalStateException("No " + this.ops
+						+ " BoardOps, run on Java 17 or later");
+			}
+		}
+		this.board = new byte[this.cells];
+		for (int i = 0; i < this.cells; i += FRUIT_SPACING) {
+			this.board[i] = FRUIT;
+		}
+		this.changedBoard = Arrays.copyOf(this.board, this.cells);
+		for (int i = 0; i < this.cells; i += DIFF_SPACING) {
+			this.changedBoard[i] ^= FRUIT;
+		}
+		this.filledBoard = new byte[this.cells];
+		this.changed = new int[this.cells / DIFF_SPACING + 1];
+		this.lastFruit = (this.cells - 1) / FRUIT_SPACING;
+	}
+
+	@Benchmark
+	public byte[] fill() {
+		this.boardOps.fill(this.filledBoard, 0, this.cells, FRUIT);
+		return this.filledBoard;
+	}
+
+	@Benchmark
+	public int count() {
+		return this.boardOps.count(this.board, 0, this.cells, FRUIT);
+	}
+
+	@Benchmark
+	public int findLast() {
+		return this.boardOps.find(this.board, 0, this.cells, FRUIT,
+				this.lastFruit);
+	}
+
+	@Benchmark
+	public int diff() {
+		return this.boardOps.diff(this.board, this.changedBoard, 0,
+				this.cells, this.changed);
+	}
+}
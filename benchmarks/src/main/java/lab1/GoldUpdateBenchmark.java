@@ -0,0 +1,57 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single GoldModel.gameUpdate with a growing number of coins. The
+ * collector walks around the largest square that fits the board; when the
+ * game ends the game is restarted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GoldUpdateBenchmark {
+
+	/** Every benchmarked game is created from the same seed. */
+	private static final long SEED = 42L;
+
+	@Param({ "256" })
+	public int boardSize;
+
+	@Param({ "20", "2000", "20000" })
+	public int coinAmount;
+
+	private Dimension size;
+
+	private KeySource keys;
+
+	private GameModel model;
+
+	@Setup
+	public void setUp() {
+		this.size = new Dimension(this.boardSize, this.boardSize);
+		this.keys = new ScriptedKeySource(
+				SquareLoop.script(SquareLoop.side(this.size)));
+		this.model = new GoldModel(this.size, this.coinAmount, SEED);
+	}
+
+	@Benchmark
+	public GameModel gameUpdate() {
+		try {
+			this.model.gameUpdate(this.keys.nextKey());
+		} catch (GameOverException e) {
+			setUp();
+		}
+		return this.model;
+	}
+}
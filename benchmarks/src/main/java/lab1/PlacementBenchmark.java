@@ -0,0 +1,74 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures placing a fruit or a coin on a board which is already filled to a
+ * given fraction.
+ * <p>
+ * A fruit is placed by picking a random cell from the FreeCellIndex, taking
+ * it and giving it back again, which keeps the fill level constant. A coin is
+ * placed by GoldModel moving its oldest coin to a new random cell.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlacementBenchmark {
+
+	/** Every benchmarked game is created from the same seed. */
+	private static final long SEED = 42L;
+
+	@Param({ "128", "1024" })
+	public int boardSize;
+
+	@Param({ "0.1", "0.5", "0.9" })
+	public double fill;
+
+	private final SplittableRandom random = new SplittableRandom(SEED);
+
+	private FreeCellIndex freeCells;
+
+	private GoldModel gold;
+
+	@Setup
+	public void setUp() {
+		Dimension size = new Dimension(this.boardSize, this.boardSize);
+		int cells = size.width * size.height;
+		int occupied = (int) (cells * this.fill);
+
+		this.freeCells = new FreeCellIndex(size.width, size.height);
+		for (int cell = occupied; cell < cells; cell++) {
+			this.freeCells.add(cell % size.width, cell / size.width);
+		}
+
+		this.gold = new GoldModel(size, occupied, SEED);
+	}
+
+	@Benchmark
+	public int fruit() {
+		FreeCellIndex index = this.freeCells;
+		int cell = index.get(this.random.nextInt(index.size()));
+		int x = index.cellX(cell);
+		int y = index.cellY(cell);
+		index.remove(x, y);
+		index.add(x, y);
+		return cell;
+	}
+
+	@Benchmark
+	public GoldModel coin() {
+		this.gold.moveOldestCoin();
+		return this.gold;
+	}
+}
@@ -0,0 +1,68 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures GameView.paintComponent drawing a whole board, handed over by a
+ * BoardExchange, into an offscreen BufferedImage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderBenchmark {
+
+	/** Every benchmarked game is created from the same seed. */
+	private static final long SEED = 42L;
+
+	@Param({ "Snake", "Gold" })
+	public String gameName;
+
+	@Param({ "10", "50", "100" })
+	public int boardSize;
+
+	@Param({ "16" })
+	public int tileSide;
+
+	private GameView view;
+
+	private BufferedImage image;
+
+	private Graphics2D graphics;
+
+	@Setup
+	public void setUp() {
+		Dimension size = new Dimension(this.boardSize, this.boardSize);
+		this.view = new GameView(this.tileSide);
+		GameModel model =
+				new GameFactory().createGame(this.gameName, size, SEED);
+		this.view.setBoard(new BoardExchange(model), size);
+		this.view.setSize(this.view.getPreferredSize());
+		this.image = new BufferedImage(this.view.getWidth(),
+				this.view.getHeight(), BufferedImage.TYPE_INT_RGB);
+		this.graphics = this.image.createGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.graphics.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage paintComponent() {
+		this.view.paintComponent(this.graphics);
+		return this.image;
+	}
+}
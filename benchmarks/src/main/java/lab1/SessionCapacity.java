@@ -0,0 +1,80 @@
+package lab1;
+
+import java.awt.Dimension;
+
+/**
+ * Finds how many sessions per core a GameHost can update every 150 ms
+ * without missing a deadline.
+ *
+ * This is not a JMH benchmark: the question is not how fast a tick is, but
+ * whether a whole shard of sessions is done before the next tick is due. The
+ * number of sessions is doubled until a tick is missed, each step on a new
+ * host which is warmed up for a number of ticks and then watched for as many
+ * more. Every session walks around a square, so that the games stay
+ * alive.
+ * <p>
+ * Arguments: game name, board side, number of ticks per step and the
+ * largest number of sessions per core to try. All are optional.
+ */
+public class SessionCapacity {
+
+	/** Every session is created from the same seed. */
+	private static final long SEED = 42L;
+
+	/** The number of sessions per core of the first step. */
+	private static final int FIRST_STEP = 250;
+
+	public static void main(final String[] args) throws InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+
+		String gameName = args.length > 0 ? args[0] : "Snake";
+		int side = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+		int maxPerCore = args.length > 3 ? Integer.parseInt(args[3]) : 256000;
+
+		Dimension size = new Dimension(side, side);
+		int[] script = SquareLoop.script(SquareLoop.side(size));
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(gameName + " " + side + "x" + side + ", "
+				+ GameHost.DEFAULT_TICK_INTERVAL + " ms ticks, " + cores
+				+ " cores");
+
+		int held = 0;
+		for (int perCore = FIRST_STEP; perCore <= maxPerCore; perCore *= 2) {
+			GameHost host = new GameHost(new GameFactory(), cores,
+					perCore * cores, GameHost.DEFAULT_TICK_INTERVAL,
+					Double.MAX_VALUE);
+			for (int i = 0; i < perCore * cores; i++) {
+				host.openSession(gameName, size, SEED + i,
+						new ScriptedKeySource(script));
+			}
+			// Let the sessions start and the updates get compiled before
+			// counting, so that opening the sessions isn't measured.
+			awaitTicks(host, ticks);
+			long missedBefore = host.getMissedTickCount();
+			awaitTicks(host, ticks);
+			long missed = host.getMissedTickCount() - missedBefore;
+			System.out.println(perCore + " sessions/core: " + missed
+					+ " of " + ticks + " ticks missed, load "
+					+ Math.round(host.getMaxLoad() * 100) + "%");
+			host.shutdown();
+			if (missed > 0) {
+				break;
+			}
+			held = perCore;
+		}
+		System.out.println("Held " + held
+				+ " sessions per core without a missed tick");
+	}
+
+	/**
+	 * Waits until every shard of a host has released a number of ticks.
+	 */
+	private static void awaitTicks(final GameHost host, final int ticks)
+			throws InterruptedException {
+		long end = host.getTickCount() + (long) ticks * host.getShardCount();
+		while (host.getTickCount() < end) {
+			Thread.sleep(GameHost.DEFAULT_TICK_INTERVAL);
+		}
+	}
+}
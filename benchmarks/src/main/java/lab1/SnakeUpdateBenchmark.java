@@ -0,0 +1,62 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single SnakeModel.gameUpdate at different board sizes and snake
+ * lengths, with and without wrap-around. The snake walks around the largest
+ * square that fits the board; if it eats enough fruit to run into its tail,
+ * the game is restarted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnakeUpdateBenchmark {
+
+	/** Every benchmarked game is created from the same seed. */
+	private static final long SEED = 42L;
+
+	@Param({ "16", "128", "1024" })
+	public int boardSize;
+
+	@Param({ "4", "24" })
+	public int snakeLength;
+
+	@Param({ "false", "true" })
+	public boolean wrapAround;
+
+	private Dimension size;
+
+	private KeySource keys;
+
+	private GameModel model;
+
+	@Setup
+	public void setUp() {
+		this.size = new Dimension(this.boardSize, this.boardSize);
+		this.keys = new ScriptedKeySource(
+				SquareLoop.script(SquareLoop.side(this.size)));
+		this.model = new SnakeModel(this.size, this.snakeLength, SEED,
+				this.wrapAround);
+	}
+
+	@Benchmark
+	public GameModel gameUpdate() {
+		try {
+			this.model.gameUpdate(this.keys.nextKey());
+		} catch (GameOverException e) {
+			setUp();
+		}
+		return this.model;
+	}
+}
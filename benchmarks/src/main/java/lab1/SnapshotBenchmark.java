@@ -0,0 +1,79 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures checkpointing a batch of games to a snapshot file and restoring
+ * them from it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+	/** Every benchmarked game is created from the same seed. */
+	private static final long SEED = 42L;
+
+	@Param({ "Snake", "Gold" })
+	public String gameName;
+
+	@Param({ "30" })
+	public int boardSize;
+
+	@Param({ "1000", "10000" })
+	public int games;
+
+	private final IGameFactory factory = new GameFactory();
+
+	private String[] gameNames;
+
+	private GameModel[] models;
+
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Dimension size = new Dimension(this.boardSize, this.boardSize);
+		this.gameNames = new String[this.games];
+		Arrays.fill(this.gameNames, this.gameName);
+		this.models = new GameModel[this.games];
+		for (int i = 0; i < this.games; i++) {
+			this.models[i] = this.factory.createGame(this.gameName, size,
+					SEED + i);
+		}
+		this.file = Files.createTempFile("snapshot", ".bin");
+		GameSnapshots.save(this.file, this.gameNames, this.models);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.file);
+	}
+
+	@Benchmark
+	public Path save() throws IOException {
+		GameSnapshots.save(this.file, this.gameNames, this.models);
+		return this.file;
+	}
+
+	@Benchmark
+	public GameModel[] load() throws IOException {
+		return GameSnapshots.load(this.file, this.factory);
+	}
+}
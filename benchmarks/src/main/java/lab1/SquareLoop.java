@@ -0,0 +1,36 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.awt.event.KeyEvent;
+
+/**
+ * Keystroke scripts which keep a player walking around a square, so that
+ * benchmarked games stay alive for as long as possible.
+ */
+final class SquareLoop {
+
+	private SquareLoop() {
+		// Only static helpers.
+	}
+
+	/**
+	 * Returns the largest square a player starting in the middle of the board
+	 * and heading north can walk around: up, right, down and left.
+	 */
+	static int side(final Dimension boardSize) {
+		return Math.max(1, Math.min(boardSize.width, boardSize.height) / 2 - 1);
+	}
+
+	/**
+	 * Returns one lap around a square with the given side.
+	 */
+	static int[] script(final int side) {
+		int[] turns = { KeyEvent.VK_UP, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN,
+				KeyEvent.VK_LEFT };
+		int[] script = new int[turns.length * side];
+		for (int i = 0; i < turns.length; i++) {
+			script[i * side] = turns[i];
+		}
+		return script;
+	}
+}
@@ -0,0 +1,115 @@
+package lab1;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The operations of BoardOps on the vector API, comparing as many cells at
+ * once as the widest vector of the processor holds: 16 bytes with SSE or
+ * NEON, 32 with AVX2 and 64 with AVX-512. The cells after the last whole
+ * vector of a range are left to the plain loops. Filling is left to
+ * Arrays.fill(), which the JIT compiler already turns into vector stores.
+ *
+ * Needs Java 17 or later, started with
+ * <code>--add-modules jdk.incubator.vector</code>. Only loaded by
+ * BoardOps.getInstance(), which falls back on the plain loops otherwise.
+ */
+final class VectorBoardOps extends BoardOps {
+
+	/** The widest vectors of bytes of the processor. */
+	private static final VectorSpecies<Byte> SPECIES =
+			ByteVector.SPECIES_PREFERRED;
+
+	/** The number of cells of a vector. */
+	private static final int LANES = SPECIES.length();
+
+	/**
+	 * Creates the operations. Loading the class fails with a LinkageError if
+	 * the vector API isn't available.
+	 */
+	VectorBoardOps() {
+		// No state.
+	}
+
+	@Override
+	public String getName() {
+		return "vector";
+	}
+
+	@Override
+	public int count(final byte[] cells, final int from, final int to,
+			final int id) {
+		byte value = (byte) id;
+		int count = 0;
+		int i = from;
+		for (int end = to - LANES; i <= end; i += LANES) {
+			count += ByteVector.fromArray(SPECIES, cells, i)
+					.compare(VectorOperators.EQ, value).trueCount();
+		}
+		return count + super.count(cells, i, to, id);
+	}
+
+	@Override
+	public int find(final byte[] cells, final int from, final int to,
+			final int id, final int k) {
+		byte value = (byte) id;
+		int rest = k;
+		int i = from;
+		for (int end = to - LANES; i <= end; i += LANES) {
+			VectorMask<Byte> found = ByteVector.fromArray(SPECIES, cells, i)
+					.compare(VectorOperators.EQ, value);
+			int count = found.trueCount();
+			if (rest < count) {
+				return i + nthLane(found, rest);
+			}
+			rest -= count;
+		}
+		return super.find(cells, i, to, id, rest);
+	}
+
+	@Override
+	public int diff(final byte[] before, final byte[] after, final int from,
+			final int to, final int[] changed) {
+		int count = 0;
+		int i = from;
+		for (int end = to - LANES; i <= end; i += LANES) {
+			VectorMask<Byte> differs = ByteVector.fromArray(SPECIES, before, i)
+					.compare(VectorOperators.NE,
+							ByteVector.fromArray(SPECIES, after, i));
+			if (!differs.anyTrue()) {
+				// Most vectors of a board hold no change.
+				continue;
+			}
+			for (long lanes = differs.toLong(); lanes != 0;
+					lanes &= lanes - 1) {
+				if (count < changed.length) {
+					changed[count] = i + Long.numberOfTrailingZeros(lanes);
+				}
+				count++;
+			}
+		}
+		for (; i < to; i++) {
+			if (before[i] != after[i]) {
+				if (count < changed.length) {
+					changed[count] = i;
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the lane of a mask which is set after n other set lanes.
+	 */
+	private static int nthLane(final VectorMask<Byte> mask, final int n) {
+		long lanes = mask.toLong();
+		// Drop the lowest set lanes until the wanted one is the lowest.
+		for (int rest = n; rest > 0; rest--) {
+			lanes &= lanes - 1;
+		}
+		return Long.numberOfTrailingZeros(lanes);
+	}
+}
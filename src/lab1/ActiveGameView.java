@@ -0,0 +1,345 @@
+package lab1;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+/**
+ * A view which renders itself actively: a render thread of its own draws
+ * whole frames at a steady rate into the back buffer of a BufferStrategy and
+ * flips it to the screen, instead of waiting for Swing to coalesce repaint
+ * requests on the event dispatch thread.
+ *
+ * Page flipping is asked for first, and blitting from a back buffer is used
+ * where the screen can't flip. Buffers lost to the system, for example when
+ * the display mode changes, are drawn again before they are shown.
+ * <p>
+ * Every frame is drawn in full from the latest copy of the gameboard, so the
+ * repaint requests of the GameController are not needed and ignored.
+ */
+public class ActiveGameView extends Canvas implements IGameView {
+
+	private static final long serialVersionUID = -2731066290946470283L;
+
+	/** The frames per second rendered unless told otherwise. */
+	public static final double DEFAULT_FRAME_RATE = 120;
+
+	/** Pixels around a tile included in its image, as in GameView */
+	private static final int TILE_MARGIN = 2;
+
+	/** The font of the score. */
+	private static final Font SCORE_FONT = new Font("Sans", Font.BOLD, 14);
+
+	/** The font of the text shown without a game. */
+	private static final Font MESSAGE_FONT = new Font("Sans", Font.BOLD, 24);
+
+	/** Size of game model */
+	private Dimension modelSize;
+
+	/** Size of every tile in the model */
+	private final Dimension tileSize;
+
+	/** The copies of the gameboard which are drawn, or null */
+	private volatile BoardExchange board;
+
+	/** Where the time spent rendering is recorded, or null */
+	private volatile GameMetrics metrics;
+
+	/** Pre-rasterized images of the tiles, used by the render thread only */
+	private final TileSpriteCache sprites = new TileSpriteCache(TILE_MARGIN);
+
+	/** Paces the frames. */
+	private final TickScheduler frameScheduler;
+
+	/** The thread rendering the frames, or null while not displayable. */
+	private volatile Thread renderThread;
+
+	/**
+	 * Creates a view where each tile has side length 40 pixels, rendering
+	 * DEFAULT_FRAME_RATE frames per second.
+	 */
+	public ActiveGameView() {
+		this(40, DEFAULT_FRAME_RATE);
+	}
+
+	/**
+	 * Creates a view.
+	 *
+	 * @param tileSide
+	 *            side length in pixels of each tile.
+	 * @param frameRate
+	 *            the number of frames rendered per second.
+	 * @throws IllegalArgumentException
+	 *             if the tile side or the frame rate is not positive.
+	 */
+	public ActiveGameView(final int tileSide, final double frameRate) {
+		if (tileSide <= 0) {
+			throw new IllegalArgumentException("Invalid tile side: "
+					+ tileSide);
+		}
+		this.tileSize = new Dimension(tileSide, tileSide);
+		this.frameScheduler = new TickScheduler(1000,
+				TickScheduler.LatePolicy.SKIP);
+		this.frameScheduler.setTickRate(frameRate);
+		// Painting is done by the render thread, never by the system.
+		setIgnoreRepaint(true);
+		setModelSize(Constants.getGameSize());
+	}
+
+	/**
+	 * Sets the size of the gameboard and the preferred size of the view.
+	 */
+	private void setModelSize(final Dimension size) {
+		// Dimension is a mutable class, copy to prevent mutation.
+		this.modelSize = new Dimension(size);
+		setPreferredSize(new Dimension(size.width * this.tileSize.width,
+				size.height * this.tileSize.height));
+	}
+
+	@Override
+	public void setBoard(final BoardExchange board, final Dimension size) {
+		this.board = board;
+		if (size != null && !size.equals(this.modelSize)) {
+			setModelSize(size);
+			revalidate();
+		}
+	}
+
+	@Override
+	public void setMetrics(final GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Does nothing, every frame is drawn in full.
+	 */
+	@Override
+	public void repaintTile(final int x, final int y) {
+		// The next frame shows the tile.
+	}
+
+	/**
+	 * Does nothing, every frame is drawn in full.
+	 */
+	@Override
+	public void repaintScore() {
+		// The next frame shows the score.
+	}
+
+	/**
+	 * Does nothing, every frame is drawn in full.
+	 */
+	@Override
+	public void repaint() {
+		// The next frame shows everything.
+	}
+
+	/**
+	 * Does nothing, the render thread draws the frames.
+	 */
+	@Override
+	public void paint(final Graphics g) {
+		// Drawn by the render thread.
+	}
+
+	/**
+	 * Does nothing, the render thread draws the frames.
+	 */
+	@Override
+	public void update(final Graphics g) {
+		// Drawn by the render thread.
+	}
+
+	/**
+	 * Starts the render thread once the view can be shown.
+	 */
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				render();
+			}
+		}, "Render");
+		thread.setDaemon(true);
+		this.renderThread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the render thread before the buffers go away. It isn't waited
+	 * for, since this is called holding the AWT tree lock which creating
+	 * buffers may need; a frame being drawn meanwhile is given up.
+	 */
+	@Override
+	public void removeNotify() {
+		Thread thread = this.renderThread;
+		this.renderThread = null;
+		if (thread != null) {
+			thread.interrupt();
+		}
+		super.removeNotify();
+	}
+
+	/**
+	 * Returns the frames per second rendered.
+	 */
+	public double getFrameRate() {
+		return this.frameScheduler.getTickRate();
+	}
+
+	/**
+	 * Changes the frames per second rendered, also while rendering.
+	 */
+	public void setFrameRate(final double frameRate) {
+		this.frameScheduler.setTickRate(frameRate);
+	}
+
+	/**
+	 * Creates a strategy with one back buffer, flipping pages if the screen
+	 * can.
+	 */
+	private BufferStrategy createStrategy() {
+		try {
+			createBufferStrategy(2, new BufferCapabilities(
+					new ImageCapabilities(true), new ImageCapabilities(true),
+					BufferCapabilities.FlipContents.UNDEFINED));
+		} catch (AWTException e) {
+			// No page flipping, let AWT pick the best it can do.
+			createBufferStrategy(2);
+		}
+		return getBufferStrategy();
+	}
+
+	/**
+	 * The render loop, run by the render thread until the view is removed.
+	 */
+	void render() {
+		Thread self = Thread.currentThread();
+		BufferStrategy strategy = null;
+		int width = 0;
+		int height = 0;
+		long lastFrameStart = 0;
+		this.frameScheduler.start();
+		while (this.renderThread == self) {
+			try {
+				this.frameScheduler.awaitNextTick();
+			} catch (InterruptedException e) {
+				// Asked to stop.
+				break;
+			}
+			if (getWidth() <= 0 || getHeight() <= 0) {
+				// Not laid out yet, nothing to draw into.
+				continue;
+			}
+			long start = System.nanoTime();
+			try {
+				if (strategy == null || getWidth() != width
+						|| getHeight() != height) {
+					// No buffers yet, or they have the old size.
+					width = getWidth();
+					height = getHeight();
+					strategy = createStrategy();
+				}
+				renderFrame(strategy);
+			} catch (IllegalStateException e) {
+				// The view has been removed meanwhile.
+				break;
+			}
+
+			GameMetrics recorder = this.metrics;
+			if (recorder != null) {
+				recorder.getPaintDuration().record(System.nanoTime() - start);
+				if (lastFrameStart != 0) {
+					recorder.getFrameInterval().record(start - lastFrameStart);
+				}
+				recorder.countFrame();
+			}
+			lastFrameStart = start;
+		}
+	}
+
+	/**
+	 * Draws a frame into the back buffer and shows it, drawing it again for
+	 * as long as the buffers are lost or restored meanwhile.
+	 */
+	private void renderFrame(final BufferStrategy strategy) {
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					drawFrame(g, getWidth(), getHeight());
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored() && countLostFrame());
+			strategy.show();
+		} while (strategy.contentsLost() && countLostFrame());
+		// Don't let the window system queue up frames.
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	 * Counts a frame which has to be drawn again.
+	 *
+	 * @return true.
+	 */
+	private boolean countLostFrame() {
+		GameMetrics recorder = this.metrics;
+		if (recorder != null) {
+			recorder.countLostFrame();
+		}
+		return true;
+	}
+
+	/**
+	 * Draws the latest copy of the gameboard, or a default text if no game
+	 * is running.
+	 *
+	 * @param g
+	 *            graphics context to draw on.
+	 * @param width
+	 *            width of the area to draw in pixels.
+	 * @param height
+	 *            height of the area to draw in pixels.
+	 */
+	void drawFrame(final Graphics g, final int width, final int height) {
+		g.setColor(getBackground() == null ? Color.WHITE : getBackground());
+		g.fillRect(0, 0, width, height);
+
+		BoardExchange exchange = this.board;
+		if (exchange == null) {
+			g.setFont(MESSAGE_FONT);
+			g.setColor(Color.BLACK);
+			final char[] message = "No model chosen.".toCharArray();
+			g.drawChars(message, 0, message.length, 50, 50);
+			return;
+		}
+
+		BoardFrame frame = exchange.latest();
+		g.setColor(Color.BLACK);
+		g.setFont(SCORE_FONT);
+		String scoreString = (frame.getScore() == 1) ? "point" : "points";
+		g.drawString(frame.getScore() + " " + scoreString, 10, 20);
+
+		int lastColumn = Math.min(frame.getWidth() - 1,
+				width / this.tileSize.width);
+		int lastRow = Math.min(frame.getHeight() - 1,
+				height / this.tileSize.height);
+		this.sprites.prepare(g, this.tileSize);
+		for (int i = 0; i <= lastColumn; i++) {
+			for (int j = 0; j <= lastRow; j++) {
+				this.sprites.draw(g, frame.getTileId(i, j),
+						i * this.tileSize.width, j * this.tileSize.height);
+			}
+		}
+	}
+}
@@ -0,0 +1,614 @@
+package lab1;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Many snakes on one gameboard. The first snake is steered by the player,
+ * the others by a simple bot heading for a fruit. A snake which hits a wall,
+ * a body or another head is eliminated and disappears, and the game goes on
+ * until at most one snake is left.
+ *
+ * All snakes move at the same time. Every update first lets each snake pick
+ * the cell its head moves into, which only reads the gameboard, so large
+ * arenas make their choices in parallel. The moves are then resolved in
+ * snake order on an occupancy grid holding the owner of every body cell:
+ * <ul>
+ * <li>a snake moving off the gameboard is eliminated;</li>
+ * <li>snakes moving their heads into the same cell are all eliminated;</li>
+ * <li>a snake moving into a body is eliminated, unless the cell is the tail
+ * of a snake which doesn't grow in this update, since that tail moves
+ * away.</li>
+ * </ul>
+ * Every rule only looks at the state before the update, so the outcome
+ * doesn't depend on the order the snakes are resolved in.
+ */
+public class ArenaModel extends GameModel {
+
+	/** Graphical representation of a fruit. */
+	private static final GameTile FRUIT_TILE = new RoundTile(new Color(180, 0,
+			0), Color.RED, 3.0);
+
+	/** Graphical representation of the player's snake. */
+	private static final GameTile PLAYER_TILE = new RectangularTile(
+			new Color(0, 110, 0));
+
+	/** Graphical representation of the player's head. */
+	private static final GameTile PLAYER_HEAD_TILE = new RectangularTile(
+			new Color(0, 190, 0));
+
+	/** Graphical representation of the other snakes. */
+	private static final GameTile BOT_TILE = new RectangularTile(
+			Color.darkGray);
+
+	/** Graphical representation of the heads of the other snakes. */
+	private static final GameTile BOT_HEAD_TILE = new RectangularTile(
+			Color.GRAY);
+
+	/** Graphical representation of a blank tile. */
+	private static final GameTile BLANK_TILE = new GameTile();
+
+	/** The directions a snake can move in. */
+	private static final SnakeModel.Directions[] MOVES = {
+			SnakeModel.Directions.EAST, SnakeModel.Directions.WEST,
+			SnakeModel.Directions.NORTH, SnakeModel.Directions.SOUTH };
+
+	/** The starting length of every snake. */
+	static final int INITIAL_SNAKE_LENGTH = 5;
+
+	/** The number of cells per snake on the gameboard of a new arena. */
+	static final int CELLS_PER_SNAKE = 100;
+
+	/** The largest number of snakes which pick their moves in one task. */
+	private static final int MOVE_BATCH_SIZE = 256;
+
+	/** The number of snakes. */
+	private final int snakeCount;
+
+	/** The number of fruits kept on the gameboard. */
+	private final int fruitAmount;
+
+	/** The blank tiles of the game board, kept up to date by setGameboardState. */
+	private final FreeCellIndex freeCells;
+
+	/** The cells of each snake, from the end of the tail to the head. */
+	private final IntRingBuffer[] bodies;
+
+	/** The direction each snake moves in. */
+	private final SnakeModel.Directions[] directions;
+
+	/** The number of updates each snake still grows in. */
+	private final int[] pendingGrowth;
+
+	/** The number of fruits each snake has eaten. */
+	private final int[] scores;
+
+	/** True for each snake which hasn't been eliminated. */
+	private final boolean[] alive;
+
+	/** The number of snakes which haven't been eliminated. */
+	private int aliveCount;
+
+	/** The cell each snake moves its head into, or -1 for a wall. */
+	private final int[] targets;
+
+	/** True for each snake eliminated in the current update. */
+	private final boolean[] dying;
+
+	/** True for each snake which doesn't move its tail in the current update. */
+	private final boolean[] growing;
+
+	/** The snake owning each cell plus one, or 0 for cells without a snake. */
+	private final int[] occupants;
+
+	/** The update in which each cell was last moved into. */
+	private final int[] claimTicks;
+
+	/** The first snake moving into each cell in the update of claimTicks. */
+	private final int[] claimants;
+
+	/** The cells of the fruits, in slots 0 to fruitCount - 1. */
+	private final int[] fruits;
+
+	/** The number of fruits on the gameboard. */
+	private int fruitCount;
+
+	/** The number of updates made, which tells claims of different updates apart. */
+	private int tick;
+
+	/**
+	 * Create a new arena, using the default size.
+	 */
+	public ArenaModel() {
+		this(Constants.getGameSize());
+	}
+
+	/**
+	 * Create a new arena with one snake per CELLS_PER_SNAKE cells, and at
+	 * least two.
+	 *
+	 * @param boardSize
+	 *            The size of the game board.
+	 */
+	public ArenaModel(final Dimension boardSize) {
+		this(boardSize, defaultSnakeCount(boardSize));
+	}
+
+	/**
+	 * Create a new arena.
+	 *
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param snakeCount
+	 *            The number of snakes, including the player's.
+	 * @throws IllegalArgumentException
+	 *             if there are no snakes, or not enough room for them.
+	 */
+	public ArenaModel(final Dimension boardSize, final int snakeCount) {
+		this(boardSize, snakeCount, newSeed());
+	}
+
+	/**
+	 * Create a new arena.
+	 *
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param snakeCount
+	 *            The number of snakes, including the player's.
+	 * @param seed
+	 *            The seed of the random placement of snakes and fruits, and
+	 *            of the choices of the bots.
+	 * @throws IllegalArgumentException
+	 *             if there are no snakes, not enough room for them, or more
+	 *             than MAX_INDEXED_CELLS cells.
+	 */
+	public ArenaModel(final Dimension boardSize, final int snakeCount,
+			final long seed) {
+		super(requireIndexedSize(boardSize), seed);
+		int cells = boardSize.width * boardSize.height;
+		this.fruitAmount = Math.max(1, snakeCount / 2);
+		if (snakeCount <= 0 || (long) snakeCount + this.fruitAmount > cells) {
+			throw new IllegalArgumentException("Invalid snake count: "
+					+ snakeCount);
+		}
+		this.snakeCount = snakeCount;
+		this.freeCells = new FreeCellIndex(boardSize.width, boardSize.height);
+		this.bodies = new IntRingBuffer[snakeCount];
+		for (int i = 0; i < snakeCount; i++) {
+			this.bodies[i] = new IntRingBuffer(INITIAL_SNAKE_LENGTH);
+		}
+		this.directions = new SnakeModel.Directions[snakeCount];
+		this.pendingGrowth = new int[snakeCount];
+		this.scores = new int[snakeCount];
+		this.alive = new boolean[snakeCount];
+		this.targets = new int[snakeCount];
+		this.dying = new boolean[snakeCount];
+		this.growing = new boolean[snakeCount];
+		this.occupants = new int[cells];
+		this.claimTicks = new int[cells];
+		this.claimants = new int[cells];
+		this.fruits = new int[this.fruitAmount];
+		resetGame();
+	}
+
+	/**
+	 * Returns the number of snakes of a new arena of a size.
+	 */
+	static int defaultSnakeCount(final Dimension boardSize) {
+		return (int) Math.max(2L,
+				(long) boardSize.width * boardSize.height / CELLS_PER_SNAKE);
+	}
+
+	/**
+	 * Puts every snake on a random blank cell, facing a random direction, and
+	 * adds the fruits.
+	 */
+	@Override
+	protected void resetGame() {
+		fillGameboard(BLANK_TILE);
+		this.freeCells.addAll();
+		Arrays.fill(this.occupants, 0);
+		Arrays.fill(this.claimTicks, 0);
+		this.tick = 0;
+
+		for (int i = 0; i < this.snakeCount; i++) {
+			int cell = this.freeCells.get(
+					getRandom().nextInt(this.freeCells.size()));
+			this.bodies[i].clear();
+			this.bodies[i].addLast(cell);
+			this.occupants[cell] = i + 1;
+			setCellState(cell, headTile(i));
+			this.directions[i] = MOVES[getRandom().nextInt(MOVES.length)];
+			// Snakes start as a head and grow out of it.
+			this.pendingGrowth[i] = INITIAL_SNAKE_LENGTH - 1;
+			this.scores[i] = 0;
+			this.alive[i] = true;
+		}
+		this.aliveCount = this.snakeCount;
+
+		this.fruitCount = 0;
+		addFruits();
+	}
+
+	/**
+	 * Adds fruits at random blank cells until there are fruitAmount fruits,
+	 * or no blank cells are left.
+	 */
+	private void addFruits() {
+		while (this.fruitCount < this.fruitAmount && !this.freeCells.isEmpty()) {
+			int cell = this.freeCells.get(
+					getRandom().nextInt(this.freeCells.size()));
+			setCellState(cell, FRUIT_TILE);
+			this.fruits[this.fruitCount++] = cell;
+		}
+	}
+
+	/**
+	 * Removes an eaten fruit from the list of fruits.
+	 */
+	private void removeFruit(final int cell) {
+		for (int i = 0; i < this.fruitCount; i++) {
+			if (this.fruits[i] == cell) {
+				this.fruits[i] = this.fruits[--this.fruitCount];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Set the tile on a specified position in the game board, and keep the
+	 * index of blank tiles up to date.
+	 */
+	@Override
+	protected void setGameboardState(final int x, final int y,
+			final GameTile tile) {
+		super.setGameboardState(x, y, tile);
+		if (tile == BLANK_TILE) {
+			this.freeCells.add(x, y);
+		} else {
+			this.freeCells.remove(x, y);
+		}
+	}
+
+	/**
+	 * Sets the tile of a cell packed as <code>y * width + x</code>.
+	 */
+	private void setCellState(final int cell, final GameTile tile) {
+		int width = getGameboardSize().width;
+		setGameboardState(cell % width, cell / width, tile);
+	}
+
+	private static GameTile headTile(final int snake) {
+		return snake == 0 ? PLAYER_HEAD_TILE : BOT_HEAD_TILE;
+	}
+
+	private static GameTile bodyTile(final int snake) {
+		return snake == 0 ? PLAYER_TILE : BOT_TILE;
+	}
+
+	/**
+	 * Moves all snakes one step at the same time.
+	 *
+	 * @param lastKey
+	 *            The most recent keystroke, which steers the player's snake.
+	 * @throws GameOverException
+	 *             once at most one snake is left.
+	 */
+	@Override
+	public void gameUpdate(final int lastKey) throws GameOverException {
+		this.tick++;
+
+		// Move phase: every snake picks its next cell from the gameboard as
+		// it was before the update.
+		if (this.alive[0]) {
+			updatePlayerDirection(lastKey);
+		}
+		if (this.snakeCount <= MOVE_BATCH_SIZE) {
+			pickMoves(0, this.snakeCount);
+		} else {
+			new MovePhase(0, this.snakeCount).invoke();
+		}
+
+		// Resolve phase.
+		resolveHeadOnCollisions();
+		resolveBodyCollisions();
+		moveTails();
+		moveHeads();
+		addFruits();
+
+		if (this.aliveCount < Math.min(2, this.snakeCount)) {
+			throw new GameOverException(getScore());
+		}
+	}
+
+	/**
+	 * Turns the player's snake according to a key, unless that would reverse
+	 * it into itself.
+	 */
+	private void updatePlayerDirection(final int key) {
+		SnakeModel.Directions current = this.directions[0];
+		switch (key) {
+			case KeyEvent.VK_LEFT:
+				if (current != SnakeModel.Directions.EAST) {
+					this.directions[0] = SnakeModel.Directions.WEST;
+				}
+				break;
+			case KeyEvent.VK_UP:
+				if (current != SnakeModel.Directions.SOUTH) {
+					this.directions[0] = SnakeModel.Directions.NORTH;
+				}
+				break;
+			case KeyEvent.VK_RIGHT:
+				if (current != SnakeModel.Directions.WEST) {
+					this.directions[0] = SnakeModel.Directions.EAST;
+				}
+				break;
+			case KeyEvent.VK_DOWN:
+				if (current != SnakeModel.Directions.NORTH) {
+					this.directions[0] = SnakeModel.Directions.SOUTH;
+				}
+				break;
+			default:
+				// Don't change direction if another key is pressed
+				break;
+		}
+	}
+
+	/**
+	 * Picks the next cell of a range of snakes. Only reads the gameboard and
+	 * writes the entries of these snakes, so ranges can be picked in
+	 * parallel.
+	 */
+	void pickMoves(final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			if (!this.alive[i]) {
+				continue;
+			}
+			if (i != 0) {
+				this.directions[i] = pickBotDirection(i);
+			}
+			this.targets[i] = step(this.bodies[i].getLast(), this.directions[i]);
+		}
+	}
+
+	/**
+	 * Picks the direction of a bot: towards its fruit, avoiding walls and
+	 * bodies, never reversing. Choices between equally good directions are
+	 * random, but depend only on the seed, the update and the snake, so they
+	 * are the same however the snakes are spread over threads.
+	 */
+	private SnakeModel.Directions pickBotDirection(final int snake) {
+		int head = this.bodies[snake].getLast();
+		SnakeModel.Directions current = this.directions[snake];
+		int fruit = this.fruitCount == 0 ? -1
+				: this.fruits[snake % this.fruitCount];
+		long noise = mix(getSeed() + this.tick * 0x9E3779B97F4A7C15L + snake);
+
+		SnakeModel.Directions best = current;
+		long bestRank = Long.MIN_VALUE;
+		for (int m = 0; m < MOVES.length; m++) {
+			SnakeModel.Directions move = MOVES[m];
+			if (move.getXDelta() == -current.getXDelta()
+					&& move.getYDelta() == -current.getYDelta()) {
+				continue;
+			}
+			int next = step(head, move);
+			if (next < 0 || this.occupants[next] != 0) {
+				continue;
+			}
+			long distance = fruit < 0 ? 0 : distance(next, fruit);
+			// Closer first, then a random pick among equals.
+			long rank = (-distance << 8) | ((noise >>> (8 * m)) & 0xFF);
+			if (rank > bestRank) {
+				bestRank = rank;
+				best = move;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the Manhattan distance between two cells.
+	 */
+	private int distance(final int from, final int to) {
+		int width = getGameboardSize().width;
+		return Math.abs(from % width - to % width)
+				+ Math.abs(from / width - to / width);
+	}
+
+	/**
+	 * Returns the cell next to a cell in a direction, or -1 if that is off the
+	 * gameboard.
+	 */
+	private int step(final int cell, final SnakeModel.Directions direction) {
+		Dimension size = getGameboardSize();
+		int x = cell % size.width + direction.getXDelta();
+		int y = cell / size.width + direction.getYDelta();
+		if (x < 0 || x >= size.width || y < 0 || y >= size.height) {
+			return -1;
+		}
+		return y * size.width + x;
+	}
+
+	/**
+	 * Eliminates snakes moving off the gameboard, and all snakes moving into
+	 * the same cell.
+	 */
+	private void resolveHeadOnCollisions() {
+		for (int i = 0; i < this.snakeCount; i++) {
+			if (!this.alive[i]) {
+				continue;
+			}
+			int cell = this.targets[i];
+			this.dying[i] = cell < 0;
+			if (cell < 0) {
+				continue;
+			}
+			if (this.claimTicks[cell] == this.tick) {
+				this.dying[i] = true;
+				this.dying[this.claimants[cell]] = true;
+			} else {
+				this.claimTicks[cell] = this.tick;
+				this.claimants[cell] = i;
+			}
+		}
+	}
+
+	/**
+	 * Eliminates snakes moving into a body, unless into the tail of a snake
+	 * which moves it away.
+	 */
+	private void resolveBodyCollisions() {
+		int fruitId = FRUIT_TILE.getId();
+		for (int i = 0; i < this.snakeCount; i++) {
+			if (this.alive[i]) {
+				this.growing[i] = this.pendingGrowth[i] > 0
+						|| (!this.dying[i]
+								&& getCellTileId(this.targets[i]) == fruitId);
+			}
+		}
+		for (int i = 0; i < this.snakeCount; i++) {
+			if (!this.alive[i] || this.dying[i]) {
+				continue;
+			}
+			int cell = this.targets[i];
+			int owner = this.occupants[cell] - 1;
+			if (owner >= 0 && (this.growing[owner]
+					|| this.bodies[owner].getFirst() != cell)) {
+				this.dying[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Removes eliminated snakes, and moves the tails of the others unless
+	 * they grow.
+	 */
+	private void moveTails() {
+		for (int i = 0; i < this.snakeCount; i++) {
+			if (!this.alive[i]) {
+				continue;
+			}
+			IntRingBuffer body = this.bodies[i];
+			if (this.dying[i]) {
+				while (!body.isEmpty()) {
+					int cell = body.removeFirst();
+					this.occupants[cell] = 0;
+					setCellState(cell, BLANK_TILE);
+				}
+				this.alive[i] = false;
+				this.aliveCount--;
+			} else if (this.growing[i]) {
+				// Eating grows by one, otherwise the tail stays for a growth
+				// still pending.
+				if (getCellTileId(this.targets[i]) != FRUIT_TILE.getId()) {
+					this.pendingGrowth[i]--;
+				}
+			} else {
+				int cell = body.removeFirst();
+				this.occupants[cell] = 0;
+				setCellState(cell, BLANK_TILE);
+			}
+		}
+	}
+
+	/**
+	 * Moves the heads of the remaining snakes, eating the fruits they move
+	 * onto.
+	 */
+	private void moveHeads() {
+		int fruitId = FRUIT_TILE.getId();
+		for (int i = 0; i < this.snakeCount; i++) {
+			if (!this.alive[i]) {
+				continue;
+			}
+			IntRingBuffer body = this.bodies[i];
+			int cell = this.targets[i];
+			if (getCellTileId(cell) == fruitId) {
+				removeFruit(cell);
+				this.scores[i]++;
+				// The tail stayed in this update, so grown by one already.
+			}
+			setCellState(body.getLast(), bodyTile(i));
+			body.addLast(cell);
+			this.occupants[cell] = i + 1;
+			setCellState(cell, headTile(i));
+		}
+	}
+
+	/**
+	 * Mixes the bits of a value, as SplittableRandom does.
+	 */
+	private static long mix(final long value) {
+		long z = value;
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+
+	/**
+	 * Picks the moves of a range of snakes, splitting it in halves until at
+	 * most MOVE_BATCH_SIZE snakes are left.
+	 */
+	private class MovePhase extends RecursiveAction {
+		private static final long serialVersionUID = 4187226905125712361L;
+
+		/** The first snake of the range. */
+		private final int from;
+
+		/** One past the last snake of the range. */
+		private final int to;
+
+		MovePhase(final int from, final int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= MOVE_BATCH_SIZE) {
+				pickMoves(this.from, this.to);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new MovePhase(this.from, middle),
+					new MovePhase(middle, this.to));
+		}
+	}
+
+	/**
+	 * @return the number of fruits eaten by the player's snake.
+	 */
+	@Override
+	public int getScore() {
+		return this.scores[0];
+	}
+
+	/** @return the number of snakes, including eliminated ones. */
+	public int getSnakeCount() {
+		return this.snakeCount;
+	}
+
+	/** @return the number of snakes which haven't been eliminated. */
+	public int getAliveCount() {
+		return this.aliveCount;
+	}
+
+	/** @return true if snake number i hasn't been eliminated. */
+	public boolean isAlive(final int i) {
+		return this.alive[i];
+	}
+
+	/** @return the number of fruits eaten by snake number i. */
+	public int getSnakeScore(final int i) {
+		return this.scores[i];
+	}
+
+	/** @return the number of cells of snake number i. */
+	public int getSnakeLength(final int i) {
+		return this.bodies[i].size();
+	}
+}
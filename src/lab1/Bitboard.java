@@ -0,0 +1,161 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * A set of cells of a gameboard, stored as one bit per cell.
+ *
+ * The rows of the gameboard are stored one after the other, so the bit of a
+ * cell is its row-major index <code>y * width + x</code>, and a whole row is
+ * a run of consecutive bits. Testing, adding and removing a cell is a single
+ * bit operation on a long. The number of cells in every block of
+ * BLOCK_WORDS longs is kept as well, so that the k-th cell of the set is
+ * found by skipping whole blocks, then counting the bits of whole words, and
+ * only then looking at single bits.
+ */
+public class Bitboard {
+
+	/** The base 2 logarithm of the number of bits of a word. */
+	private static final int WORD_SHIFT = 6;
+
+	/** The number of words counted together. */
+	private static final int BLOCK_WORDS = 64;
+
+	/** The base 2 logarithm of BLOCK_WORDS. */
+	private static final int BLOCK_SHIFT = 6;
+
+	/** The number of cells of the gameboard. */
+	private final int cellCount;
+
+	/** The bits of the cells, 64 cells per word. */
+	private final long[] words;
+
+	/** The number of cells in the set in each block of BLOCK_WORDS words. */
+	private final int[] blockSizes;
+
+	/** The number of cells in the set. */
+	private int size;
+
+	/**
+	 * Creates an empty set for a gameboard of the given size.
+	 *
+	 * @param width
+	 *            The width of the gameboard.
+	 * @param height
+	 *            The height of the gameboard.
+	 */
+	public Bitboard(final int width, final int height) {
+		this.cellCount = width * height;
+		this.words = new long[(this.cellCount + 63) >>> WORD_SHIFT];
+		this.blockSizes = new int[(this.words.length + BLOCK_WORDS - 1)
+				>>> BLOCK_SHIFT];
+	}
+
+	/**
+	 * @return true if the cell with the row-major index
+	 *         <code>y * width + x</code> is in the set.
+	 */
+	public boolean contains(final int cell) {
+		return (this.words[cell >>> WORD_SHIFT] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * Adds a cell to the set. Does nothing if it already is in it.
+	 */
+	public void add(final int cell) {
+		int word = cell >>> WORD_SHIFT;
+		long bit = 1L << cell;
+		if ((this.words[word] & bit) == 0) {
+			this.words[word] |= bit;
+			this.blockSizes[word >>> BLOCK_SHIFT]++;
+			this.size++;
+		}
+	}
+
+	/**
+	 * Removes a cell from the set. Does nothing if it isn't in it.
+	 */
+	public void remove(final int cell) {
+		int word = cell >>> WORD_SHIFT;
+		long bit = 1L << cell;
+		if ((this.words[word] & bit) != 0) {
+			this.words[word] &= ~bit;
+			this.blockSizes[word >>> BLOCK_SHIFT]--;
+			this.size--;
+		}
+	}
+
+	/**
+	 * Adds every cell of the gameboard to the set.
+	 */
+	public void addAll() {
+		Arrays.fill(this.words, -1L);
+		int unused = (this.words.length << WORD_SHIFT) - this.cellCount;
+		// Bits past the last cell are never set.
+		this.words[this.words.length - 1] >>>= unused;
+		for (int block = 0; block < this.blockSizes.length; block++) {
+			int firstWord = block << BLOCK_SHIFT;
+			int lastWord = Math.min(this.words.length, firstWord + BLOCK_WORDS);
+			this.blockSizes[block] = (lastWord - firstWord) << WORD_SHIFT;
+		}
+		this.blockSizes[this.blockSizes.length - 1] -= unused;
+		this.size = this.cellCount;
+	}
+
+	/**
+	 * Removes every cell from the set.
+	 */
+	public void clear() {
+		Arrays.fill(this.words, 0);
+		Arrays.fill(this.blockSizes, 0);
+		this.size = 0;
+	}
+
+	/**
+	 * @return true if the set is empty.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @return The number of cells in the set.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the cell of the set which comes after k others in row-major
+	 * order. Picking a uniformly random k in [0, size) picks a uniformly
+	 * random cell of the set.
+	 *
+	 * @param k
+	 *            A number in the range [0, size).
+	 * @return the row-major index of the cell.
+	 */
+	public int get(final int k) {
+		if (k < 0 || k >= this.size) {
+			throw new IndexOutOfBoundsException("No such cell: " + k);
+		}
+		int rest = k;
+		int block = 0;
+		while (rest >= this.blockSizes[block]) {
+			rest -= this.blockSizes[block];
+			block++;
+		}
+		int word = block << BLOCK_SHIFT;
+		int count = Long.bitCount(this.words[word]);
+		while (rest >= count) {
+			rest -= count;
+			word++;
+			count = Long.bitCount(this.words[word]);
+		}
+		long bits = this.words[word];
+		// Drop the lowest bits until the wanted one is the lowest.
+		for (; rest > 0; rest--) {
+			bits &= bits - 1;
+		}
+		return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+	}
+}
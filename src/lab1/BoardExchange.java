@@ -0,0 +1,162 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands copies of a gameboard from the game thread to the thread painting
+ * it, so that painting never sees a gameboard in the middle of an update.
+ *
+ * There are three frames. The game thread copies the game into the frame it
+ * owns, and then swaps it with the shared frame in a single atomic step. The
+ * painting thread swaps the shared frame with the one it owns to get the
+ * latest copy. Neither thread ever waits for the other, and each frame is
+ * only touched by the thread which has swapped it out.
+ * <p>
+ * The frame the game thread gets back is normally just a few updates old.
+ * The cells changed by the last LOG_LENGTH updates are kept, so such a frame
+ * is brought up to date by copying only those cells. Older frames, and
+ * updates which changed too many cells to list, are copied in full.
+ * <p>
+ * publish() must only be called by the game thread, and latest() only by the
+ * painting thread.
+ */
+public final class BoardExchange {
+
+	/** The number of updates whose changed cells are kept. */
+	private static final int LOG_LENGTH = 8;
+
+	/** The frame the game thread copies into. */
+	private BoardFrame back;
+
+	/** The frame last handed over and not taken yet, or taken back. */
+	private final AtomicReference<BoardFrame> shared;
+
+	/** The frame the painting thread paints from. */
+	private BoardFrame front;
+
+	/** The number of frames published. */
+	private long sequence;
+
+	/**
+	 * The cells changed by each of the last LOG_LENGTH updates, at the index
+	 * <code>sequence % LOG_LENGTH</code>. Only used by the game thread.
+	 */
+	private final int[][] changeLog = new int[LOG_LENGTH][];
+
+	/** The number of cells of every entry of changeLog. */
+	private final int[] changeCounts = new int[LOG_LENGTH];
+
+	/** True for the updates which changed too many cells to list. */
+	private final boolean[] allChanged = new boolean[LOG_LENGTH];
+
+	/** True if the coarser levels of detail of the frames are painted. */
+	private volatile boolean levelsWanted;
+
+	/**
+	 * Creates an exchange holding a copy of the current state of a game.
+	 * Must be called before the game thread starts.
+	 */
+	public BoardExchange(final GameModel model) {
+		Dimension size = model.getGameboardSize();
+		this.back = new BoardFrame(size.width, size.height);
+		this.front = new BoardFrame(size.width, size.height);
+		// The first frames have every level, whatever is shown first, and
+		// the changes of the first update can be copied into any of them.
+		this.back.copyFrom(model, 0, true);
+		this.front.copyFrom(model, 0, true);
+		BoardFrame first = new BoardFrame(size.width, size.height);
+		first.copyFrom(model, 0, true);
+		this.shared = new AtomicReference<BoardFrame>(first);
+	}
+
+	/**
+	 * Copies the current state of the game and hands it over. Called on the
+	 * game thread only, after each update, before the changed cells of the
+	 * model are cleared.
+	 */
+	public void publish(final GameModel model) {
+		this.sequence++;
+		logChanges(model);
+		boolean buildLevels = this.levelsWanted;
+		long since = this.back.getSequence();
+		if (changesLogged(since)) {
+			for (long update = since + 1; update <= this.sequence; update++) {
+				int entry = (int) (update % LOG_LENGTH);
+				this.back.copyCells(model, this.changeLog[entry],
+						this.changeCounts[entry], buildLevels);
+			}
+			this.back.finishCopy(model, this.sequence, buildLevels);
+		} else {
+			this.back.copyFrom(model, this.sequence, buildLevels);
+		}
+		this.back = this.shared.getAndSet(this.back);
+	}
+
+	/**
+	 * Keeps the cells changed by the current update.
+	 */
+	private void logChanges(final GameModel model) {
+		int entry = (int) (this.sequence % LOG_LENGTH);
+		this.allChanged[entry] = model.allCellsChanged();
+		if (this.allChanged[entry]) {
+			return;
+		}
+		int count = model.getChangedCellCount();
+		int[] cells = this.changeLog[entry];
+		if (cells == null || cells.length < count) {
+			cells = new int[Math.max(16, count)];
+			this.changeLog[entry] = cells;
+		}
+		for (int i = 0; i < count; i++) {
+			cells[i] = model.getChangedCell(i);
+		}
+		this.changeCounts[entry] = count;
+	}
+
+	/**
+	 * Returns true if all cells changed after the update a frame was copied
+	 * after are listed in the log.
+	 */
+	private boolean changesLogged(final long since) {
+		if (this.sequence - since > LOG_LENGTH) {
+			return false;
+		}
+		for (long update = since + 1; update <= this.sequence; update++) {
+			if (this.allChanged[(int) (update % LOG_LENGTH)]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Asks for the coarser levels of detail to be built into the frames
+	 * published from now on, or stops building them. Building them takes
+	 * longer than copying the gameboard, so it is off unless asked for.
+	 * While they are wanted, latest() builds them into a frame published
+	 * without them, so they are shown even if the game is paused or over.
+	 */
+	public void setLevelsWanted(final boolean wanted) {
+		this.levelsWanted = wanted;
+	}
+
+	/**
+	 * Returns the latest frame published, with its coarser levels of detail
+	 * if they are wanted. The frame belongs to the caller until the next
+	 * call. Called on the painting thread only.
+	 */
+	public BoardFrame latest() {
+		BoardFrame frame = this.shared.getAndSet(this.front);
+		if (frame.getSequence() < this.front.getSequence()) {
+			// This was handed back by the previous call, and the shared frame
+			// now is the one given up, or an even later one.
+			frame = this.shared.getAndSet(frame);
+		}
+		this.front = frame;
+		if (this.levelsWanted) {
+			frame.buildLevels();
+		}
+		return frame;
+	}
+}
@@ -0,0 +1,317 @@
+package lab1;
+
+import java.awt.Color;
+
+/**
+ * A copy of the gameboard and the score of a game, as they were after an
+ * update. Frames are handed from the game thread to the thread painting the
+ * game by a BoardExchange, and are only ever used by one thread at a time.
+ *
+ * Large gameboards are also kept at coarser levels of detail, for showing
+ * them a pixel or less per cell. Each level halves the previous one in both
+ * directions, and every cell of a level holds one of the tiles of the two by
+ * two block below it, a visible one if there is any. The levels are built
+ * while copying, on the game thread, and only when asked for, so showing a
+ * level costs as much as the pixels it covers, whatever the size of the
+ * gameboard. A frame whose levels are up to date keeps them so while only
+ * the changed cells are copied into it.
+ *
+ * @see BoardExchange
+ */
+public final class BoardFrame {
+
+	/** No more levels are made once a level is at most this large. */
+	private static final int MIN_LEVEL_SIDE = 64;
+
+	/** The width of the gameboard. */
+	private final int width;
+
+	/** The height of the gameboard. */
+	private final int height;
+
+	/**
+	 * The gameboard at every level of detail, each stored row by row as
+	 * TileRegistry IDs. Level 0 is the gameboard itself.
+	 */
+	private final byte[][] levels;
+
+	/** The width of every level. */
+	private final int[] levelWidths;
+
+	/** The height of every level. */
+	private final int[] levelHeights;
+
+	/**
+	 * The minimap colour of every tile ID as ARGB, 0 if transparent. Filled
+	 * up to knownTileCount.
+	 */
+	private final int[] minimapColors = new int[TileRegistry.MAX_ID + 1];
+
+	/** The number of IDs whose minimap colour has been looked up. */
+	private int knownTileCount;
+
+	/** True if the coarser levels are built from the gameboard as it is. */
+	private boolean levelsBuilt;
+
+	/** The score. */
+	private int score;
+
+	/** The number of the update the frame was copied after. */
+	private long sequence;
+
+	/**
+	 * Creates a blank frame.
+	 */
+	BoardFrame(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		int count = getLevelCount(width, height);
+		this.levels = new byte[count][];
+		this.levelWidths = new int[count];
+		this.levelHeights = new int[count];
+		int w = width;
+		int h = height;
+		for (int level = 0; level < count; level++) {
+			this.levels[level] = new byte[w * h];
+			this.levelWidths[level] = w;
+			this.levelHeights[level] = h;
+			w = (w + 1) / 2;
+			h = (h + 1) / 2;
+		}
+	}
+
+	/**
+	 * Returns the number of levels of detail of the frames of a gameboard,
+	 * including the gameboard itself.
+	 */
+	static int getLevelCount(final int width, final int height) {
+		int count = 1;
+		for (int w = width, h = height; Math.max(w, h) > MIN_LEVEL_SIDE;
+				w = (w + 1) / 2, h = (h + 1) / 2) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Copies the gameboard and the score of a game into this frame.
+	 *
+	 * @param model
+	 *            The game to copy.
+	 * @param newSequence
+	 *            The number of the update.
+	 * @param buildLevels
+	 *            True to also build the coarser levels of detail.
+	 */
+	void copyFrom(final GameModel model, final long newSequence,
+			final boolean buildLevels) {
+		model.copyGameboard(this.levels[0]);
+		this.levelsBuilt = false;
+		finishCopy(model, newSequence, buildLevels);
+	}
+
+	/**
+	 * Copies some cells of the gameboard of a game into this frame, keeping
+	 * the levels of detail up to date if they are and buildLevels is true.
+	 * Must be followed by finishCopy().
+	 *
+	 * @param cells
+	 *            The cells to copy, as <code>y * width + x</code>.
+	 * @param count
+	 *            The number of cells to copy.
+	 */
+	void copyCells(final GameModel model, final int[] cells, final int count,
+			final boolean buildLevels) {
+		boolean updateLevels = buildLevels && this.levelsBuilt;
+		if (updateLevels) {
+			updateMinimapColors();
+		} else {
+			this.levelsBuilt = false;
+		}
+		byte[] board = this.levels[0];
+		for (int i = 0; i < count; i++) {
+			int cell = cells[i];
+			byte id = (byte) model.getCellTileId(cell);
+			if (board[cell] != id) {
+				board[cell] = id;
+				if (updateLevels) {
+					updateLevels(cell % this.width, cell / this.width);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Completes a copy: copies the score, and builds the levels of detail if
+	 * asked to and they aren't up to date.
+	 *
+	 * @param newSequence
+	 *            The number of the update.
+	 */
+	void finishCopy(final GameModel model, final long newSequence,
+			final boolean buildLevels) {
+		updateMinimapColors();
+		if (buildLevels) {
+			buildLevels();
+		}
+		this.score = model.getScore();
+		this.sequence = newSequence;
+	}
+
+	/**
+	 * Builds the coarser levels of detail from the gameboard, unless they are
+	 * up to date. May be called by whichever thread the frame belongs to.
+	 */
+	void buildLevels() {
+		if (this.levelsBuilt) {
+			return;
+		}
+		updateMinimapColors();
+		for (int level = 1; level < this.levels.length; level++) {
+			aggregate(level);
+		}
+		this.levelsBuilt = true;
+	}
+
+	/** @return true if the coarser levels of detail are up to date. */
+	boolean hasLevels() {
+		return this.levelsBuilt;
+	}
+
+	/**
+	 * Looks up the colours of tiles registered since the last lookup.
+	 */
+	private void updateMinimapColors() {
+		int tileCount = TileRegistry.getTileCount();
+		for (int id = this.knownTileCount; id < tileCount; id++) {
+			GameTile tile = TileRegistry.getTile(id);
+			Color color = tile == null ? null : tile.getMinimapColor();
+			this.minimapColors[id] = color == null ? 0 : color.getRGB();
+		}
+		this.knownTileCount = tileCount;
+	}
+
+	/**
+	 * Builds a level of detail from the one below it.
+	 */
+	private void aggregate(final int level) {
+		byte[] target = this.levels[level];
+		int targetWidth = this.levelWidths[level];
+		int targetHeight = this.levelHeights[level];
+		for (int y = 0; y < targetHeight; y++) {
+			int out = y * targetWidth;
+			for (int x = 0; x < targetWidth; x++) {
+				target[out + x] = aggregateCell(level, x, y);
+			}
+		}
+	}
+
+	/**
+	 * Builds again the cells of every coarser level which cover a cell of
+	 * the gameboard, stopping at the first one which stays the same.
+	 */
+	private void updateLevels(final int x, final int y) {
+		int levelX = x;
+		int levelY = y;
+		for (int level = 1; level < this.levels.length; level++) {
+			levelX >>= 1;
+			levelY >>= 1;
+			int i = levelY * this.levelWidths[level] + levelX;
+			byte id = aggregateCell(level, levelX, levelY);
+			if (this.levels[level][i] == id) {
+				return;
+			}
+			this.levels[level][i] = id;
+		}
+	}
+
+	/**
+	 * Returns the tile of the cell (x,y) of a level of detail: the first
+	 * visible tile of the two by two block below it, or its first tile.
+	 */
+	private byte aggregateCell(final int level, final int x, final int y) {
+		int[] colors = this.minimapColors;
+		byte[] source = this.levels[level - 1];
+		int sourceWidth = this.levelWidths[level - 1];
+		int sourceHeight = this.levelHeights[level - 1];
+		int top = 2 * y * sourceWidth;
+		int bottom = 2 * y + 1 < sourceHeight ? top + sourceWidth : top;
+		int left = 2 * x;
+		int right = left + 1 < sourceWidth ? left + 1 : left;
+		byte id = source[top + left];
+		if (colors[id & 0xFF] == 0) {
+			byte other = source[top + right];
+			if (colors[other & 0xFF] == 0) {
+				other = source[bottom + left];
+				if (colors[other & 0xFF] == 0) {
+					other = source[bottom + right];
+				}
+			}
+			if (colors[other & 0xFF] != 0) {
+				id = other;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the colour a tile of the frame is shown with at a pixel or less
+	 * per cell, as ARGB, or 0 if the tile is transparent.
+	 */
+	int getMinimapColor(final int id) {
+		return this.minimapColors[id];
+	}
+
+	/** @return the width of the gameboard. */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/** @return the height of the gameboard. */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/** @return the TileRegistry ID of the tile at (x,y). */
+	public int getTileId(final int x, final int y) {
+		return this.levels[0][y * this.width + x] & 0xFF;
+	}
+
+	/**
+	 * @return the number of levels of detail, including the gameboard
+	 *         itself at level 0.
+	 */
+	public int getLevelCount() {
+		return this.levels.length;
+	}
+
+	/** @return the width of a level of detail. */
+	public int getLevelWidth(final int level) {
+		return this.levelWidths[level];
+	}
+
+	/** @return the height of a level of detail. */
+	public int getLevelHeight(final int level) {
+		return this.levelHeights[level];
+	}
+
+	/**
+	 * @return the TileRegistry ID of the tile at (x,y) of a level of detail,
+	 *         where a cell covers 2^level cells of the gameboard each way.
+	 *         Levels above 0 are out of date unless the frame was copied
+	 *         with them, or handed over while they were wanted.
+	 */
+	public int getLevelTileId(final int level, final int x, final int y) {
+		return this.levels[level][y * this.levelWidths[level] + x] & 0xFF;
+	}
+
+	/** @return the score. */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return the number of the update the frame was copied after. */
+	public long getSequence() {
+		return this.sequence;
+	}
+}
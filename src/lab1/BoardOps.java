@@ -0,0 +1,148 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * Bulk operations on runs of tile IDs, such as a gameboard stored row by row
+ * or a chunk of one: filling, counting the cells holding an ID, finding the
+ * k-th of them, and listing the cells in which two runs differ.
+ *
+ * getInstance() returns an implementation built on the vector API of
+ * jdk.incubator.vector, working on as many cells per instruction as the
+ * processor allows, if it has been compiled in and the JVM was started with
+ * <code>--add-modules jdk.incubator.vector</code>. Otherwise, or with
+ * <code>-Dlab1.vectorOps=false</code>, it returns the plain loops of this
+ * class, which give the same results on any JVM.
+ * <p>
+ * The ranges are given as in Arrays.fill(), from an index, inclusive, to an
+ * index, exclusive. Implementations hold no state and can be shared between
+ * threads.
+ */
+public class BoardOps {
+
+	/** The name of the class using the vector API. */
+	private static final String VECTOR_CLASS = "lab1.VectorBoardOps";
+
+	/** The operations without the vector API. */
+	private static final BoardOps SCALAR = new BoardOps();
+
+	/** The fastest operations available, chosen once. */
+	private static final BoardOps INSTANCE = loadInstance();
+
+	/**
+	 * Creates the plain operations. Subclasses override those they do faster.
+	 */
+	BoardOps() {
+		// No state.
+	}
+
+	/**
+	 * Returns the fastest operations this JVM can run.
+	 */
+	public static BoardOps getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the operations without the vector API.
+	 */
+	public static BoardOps getScalar() {
+		return SCALAR;
+	}
+
+	/**
+	 * Loads the operations using the vector API, falling back on the plain
+	 * ones if they are turned off, not compiled in, or the JVM can't link
+	 * them.
+	 */
+	private static BoardOps loadInstance() {
+		if (!Boolean.parseBoolean(
+				System.getProperty("lab1.vectorOps", "true"))) {
+			return SCALAR;
+		}
+		try {
+			return (BoardOps) Class.forName(VECTOR_CLASS)
+					.getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException e) {
+			// Built without the vector API.
+		} catch (LinkageError e) {
+			// The JVM is too old, or jdk.incubator.vector isn't added.
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+		return SCALAR;
+	}
+
+	/**
+	 * Returns a short name of the implementation, for reports.
+	 */
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * Sets every cell of a range to a tile ID.
+	 */
+	public void fill(final byte[] cells, final int from, final int to,
+			final int id) {
+		Arrays.fill(cells, from, to, (byte) id);
+	}
+
+	/**
+	 * Returns the number of cells of a range holding a tile ID.
+	 */
+	public int count(final byte[] cells, final int from, final int to,
+			final int id) {
+		byte value = (byte) id;
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (cells[i] == value) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the cell of a range holding a tile ID after k others holding it.
+	 *
+	 * @param k
+	 *            The number of cells holding the ID to skip, 0 for the first.
+	 * @return the index of the cell, or -1 if the range holds the ID in k
+	 *         cells or fewer.
+	 */
+	public int find(final byte[] cells, final int from, final int to,
+			final int id, final int k) {
+		byte value = (byte) id;
+		int rest = k;
+		for (int i = from; i < to; i++) {
+			if (cells[i] == value && rest-- == 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Lists the cells in which a range of two arrays differ, in order.
+	 *
+	 * @param changed
+	 *            Receives the indices of the first changed.length cells
+	 *            which differ.
+	 * @return the number of cells which differ, which may be more than
+	 *         changed.length.
+	 */
+	public int diff(final byte[] before, final byte[] after, final int from,
+			final int to, final int[] changed) {
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (before[i] != after[i]) {
+				if (count < changed.length) {
+					changed[count] = i;
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,412 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * A matrix of bytes stored in square chunks, which are only allocated while
+ * something other than the background value is written into them.
+ *
+ * A chunk which holds the background value in every cell isn't stored, so
+ * creating or filling a matrix costs nothing per cell, and the memory used
+ * follows the part of the matrix which differs from the background rather
+ * than its area. A chunk is given up as soon as its last cell is set back to
+ * the background, and a few chunks given up are kept for reuse.
+ * <p>
+ * Chunks are found through a directory with an entry per chunk, as long as
+ * there are at most MAX_DIRECTORY_CHUNKS of them. Larger matrices keep their
+ * chunks in a hash table keyed by the chunk coordinates instead, which only
+ * grows with the number of chunks in use.
+ */
+public final class ChunkedBoard {
+
+	/** The base 2 logarithm of the side of a chunk. */
+	static final int CHUNK_SHIFT = 6;
+
+	/** The side of a chunk, in cells. */
+	public static final int CHUNK_SIDE = 1 << CHUNK_SHIFT;
+
+	/** Masks the coordinate of a cell inside its chunk. */
+	private static final int CHUNK_MASK = CHUNK_SIDE - 1;
+
+	/**
+	 * The largest number of chunks which are found through a directory. The
+	 * directory then takes a few megabytes at most.
+	 */
+	private static final long MAX_DIRECTORY_CHUNKS = 1 << 20;
+
+	/** The largest number of chunks kept for reuse. */
+	private static final int MAX_SPARE_CHUNKS = 1024;
+
+	/** Marks a free slot of the hash table. Never a valid key. */
+	private static final long NO_KEY = -1;
+
+	/** The number of slots of a new hash table. A power of two. */
+	private static final int INITIAL_TABLE_SIZE = 64;
+
+	/** Returned by findSlot() for a chunk which isn't allocated. */
+	private static final int NO_SLOT = -1;
+
+	/** The width of the matrix. */
+	private final int width;
+
+	/** The height of the matrix. */
+	private final int height;
+
+	/** The number of chunks in a row of chunks. */
+	private final int chunkColumns;
+
+	/** True if chunks are found through a directory, not a hash table. */
+	private final boolean directory;
+
+	/**
+	 * The chunks, or null for chunks which aren't allocated. With a
+	 * directory, the chunk at (x,y) of the chunk grid is found at index
+	 * <code>y * chunkColumns + x</code>, otherwise at the slot of its key.
+	 */
+	private byte[][] chunks;
+
+	/** The number of cells of each chunk which differ from the background. */
+	private int[] filledCells;
+
+	/**
+	 * The keys of the hash table, <code>y &lt;&lt; 32 | x</code> for the chunk
+	 * at (x,y) of the chunk grid, or NO_KEY. Null if there is a directory.
+	 */
+	private long[] keys;
+
+	/** The key of the chunk found by the last lookup, or NO_KEY. */
+	private long lastKey = NO_KEY;
+
+	/** The slot of the chunk found by the last lookup. */
+	private int lastSlot;
+
+	/** The value of every cell of a chunk which isn't allocated. */
+	private byte background;
+
+	/** The number of allocated chunks. */
+	private int chunkCount;
+
+	/** Chunks given up, kept for reuse. */
+	private byte[][] spareChunks = new byte[0][];
+
+	/** The number of spare chunks. */
+	private int spareCount;
+
+	/**
+	 * Creates a matrix with 0 in every cell.
+	 *
+	 * @param width
+	 *            The width of the matrix.
+	 * @param height
+	 *            The height of the matrix.
+	 * @throws IllegalArgumentException
+	 *             if the size is empty.
+	 */
+	public ChunkedBoard(final int width, final int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Invalid board size: " + width
+					+ "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		this.chunkColumns =
+				(int) (((long) width + CHUNK_MASK) >>> CHUNK_SHIFT);
+		long chunkRows = ((long) height + CHUNK_MASK) >>> CHUNK_SHIFT;
+		long gridSize = this.chunkColumns * chunkRows;
+		this.directory = gridSize <= MAX_DIRECTORY_CHUNKS;
+		if (this.directory) {
+			this.chunks = new byte[(int) gridSize][];
+			this.filledCells = new int[(int) gridSize];
+		} else {
+			this.chunks = new byte[INITIAL_TABLE_SIZE][];
+			this.filledCells = new int[INITIAL_TABLE_SIZE];
+			this.keys = new long[INITIAL_TABLE_SIZE];
+			Arrays.fill(this.keys, NO_KEY);
+		}
+	}
+
+	/** @return the width of the matrix. */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/** @return the height of the matrix. */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/** @return the number of chunks allocated. */
+	public int getChunkCount() {
+		return this.chunkCount;
+	}
+
+	/**
+	 * @return the value of the cell (x,y), from 0 to 255.
+	 * @throws IndexOutOfBoundsException
+	 *             if the cell is outside the matrix.
+	 */
+	public int get(final int x, final int y) {
+		checkBounds(x, y);
+		int slot = findSlot(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+		if (slot == NO_SLOT) {
+			return this.background & 0xFF;
+		}
+		return this.chunks[slot][(y & CHUNK_MASK) << CHUNK_SHIFT
+				| (x & CHUNK_MASK)] & 0xFF;
+	}
+
+	/**
+	 * Sets the value of the cell (x,y), allocating its chunk if needed, and
+	 * giving it up if it holds only the background value afterwards.
+	 *
+	 * @param value
+	 *            The new value, from 0 to 255.
+	 * @return true if the value of the cell has changed.
+	 * @throws IndexOutOfBoundsException
+	 *             if the cell is outside the matrix.
+	 */
+	public boolean set(final int x, final int y, final int value) {
+		checkBounds(x, y);
+		int chunkX = x >>> CHUNK_SHIFT;
+		int chunkY = y >>> CHUNK_SHIFT;
+		byte newValue = (byte) value;
+		int slot = findSlot(chunkX, chunkY);
+		if (slot == NO_SLOT) {
+			if (newValue == this.background) {
+				return false;
+			}
+			slot = addChunk(chunkX, chunkY);
+		}
+		byte[] chunk = this.chunks[slot];
+		int i = (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+		byte oldValue = chunk[i];
+		if (oldValue == newValue) {
+			return false;
+		}
+		chunk[i] = newValue;
+		if (oldValue == this.background) {
+			this.filledCells[slot]++;
+		} else if (newValue == this.background
+				&& --this.filledCells[slot] == 0) {
+			removeChunk(slot);
+		}
+		return true;
+	}
+
+	/**
+	 * Sets every cell to a value. Costs as much as the number of chunks
+	 * allocated, whatever the size of the matrix.
+	 *
+	 * @param value
+	 *            The new value, from 0 to 255.
+	 */
+	public void fill(final int value) {
+		// Stop once every allocated chunk has been found.
+		for (int slot = 0; this.chunkCount > 0; slot++) {
+			if (this.chunks[slot] != null) {
+				addSpareChunk(this.chunks[slot]);
+				this.chunks[slot] = null;
+				this.filledCells[slot] = 0;
+				this.chunkCount--;
+			}
+		}
+		if (!this.directory) {
+			Arrays.fill(this.keys, NO_KEY);
+		}
+		this.lastKey = NO_KEY;
+		this.background = (byte) value;
+	}
+
+	/**
+	 * Copies the matrix, row by row, into an array of at least
+	 * width * height entries.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the matrix has more than Integer.MAX_VALUE cells.
+	 */
+	public void copyTo(final byte[] into) {
+		if ((long) this.width * this.height > Integer.MAX_VALUE) {
+			throw new UnsupportedOperationException("Board too large to copy: "
+					+ this.width + "x" + this.height);
+		}
+		for (int y = 0; y < this.height; y++) {
+			int row = y * this.width;
+			int chunkRow = (y & CHUNK_MASK) << CHUNK_SHIFT;
+			for (int x = 0; x < this.width; x += CHUNK_SIDE) {
+				int length = Math.min(CHUNK_SIDE, this.width - x);
+				int slot = findSlot(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+				if (slot == NO_SLOT) {
+					Arrays.fill(into, row + x, row + x + length,
+							this.background);
+				} else {
+					System.arraycopy(this.chunks[slot], chunkRow, into,
+							row + x, length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Throws IndexOutOfBoundsException unless the cell (x,y) is inside the
+	 * matrix. Without the check, a cell just outside the matrix would be
+	 * found in the padding of an edge chunk or in the next row of chunks.
+	 */
+	private void checkBounds(final int x, final int y) {
+		if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+			throw new IndexOutOfBoundsException("No such cell: (" + x + ","
+					+ y + ") on a " + this.width + "x" + this.height
+					+ " board");
+		}
+	}
+
+	/**
+	 * Returns the slot of the chunk at (chunkX,chunkY) of the chunk grid, or
+	 * NO_SLOT if it isn't allocated.
+	 */
+	private int findSlot(final int chunkX, final int chunkY) {
+		if (this.directory) {
+			int slot = chunkY * this.chunkColumns + chunkX;
+			return this.chunks[slot] == null ? NO_SLOT : slot;
+		}
+		long key = (long) chunkY << 32 | chunkX;
+		if (key == this.lastKey) {
+			return this.lastSlot;
+		}
+		int mask = this.keys.length - 1;
+		for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			long found = this.keys[slot];
+			if (found == key) {
+				this.lastKey = key;
+				this.lastSlot = slot;
+				return slot;
+			}
+			if (found == NO_KEY) {
+				return NO_SLOT;
+			}
+		}
+	}
+
+	/**
+	 * Allocates the chunk at (chunkX,chunkY) of the chunk grid, filled with
+	 * the background value.
+	 *
+	 * @return the slot of the chunk.
+	 */
+	private int addChunk(final int chunkX, final int chunkY) {
+		byte[] chunk;
+		if (this.spareCount > 0) {
+			chunk = this.spareChunks[--this.spareCount];
+			this.spareChunks[this.spareCount] = null;
+			Arrays.fill(chunk, this.background);
+		} else {
+			chunk = new byte[CHUNK_SIDE * CHUNK_SIDE];
+			if (this.background != 0) {
+				Arrays.fill(chunk, this.background);
+			}
+		}
+		this.chunkCount++;
+		if (this.directory) {
+			int slot = chunkY * this.chunkColumns + chunkX;
+			this.chunks[slot] = chunk;
+			return slot;
+		}
+		// Keep the table at most half full.
+		if (2 * this.chunkCount > this.keys.length) {
+			growTable();
+		}
+		long key = (long) chunkY << 32 | chunkX;
+		int slot = insert(key, chunk, 0);
+		this.lastKey = key;
+		this.lastSlot = slot;
+		return slot;
+	}
+
+	/**
+	 * Gives up the chunk in a slot.
+	 */
+	private void removeChunk(final int slot) {
+		addSpareChunk(this.chunks[slot]);
+		this.chunks[slot] = null;
+		this.chunkCount--;
+		if (this.directory) {
+			return;
+		}
+		// Move the keys after the hole which would no longer be found past
+		// it back into it, so that every key stays reachable from its first
+		// slot.
+		int mask = this.keys.length - 1;
+		int hole = slot;
+		for (int next = (hole + 1) & mask; this.keys[next] != NO_KEY;
+				next = (next + 1) & mask) {
+			int first = hash(this.keys[next]) & mask;
+			if (((next - first) & mask) >= ((next - hole) & mask)) {
+				this.keys[hole] = this.keys[next];
+				this.chunks[hole] = this.chunks[next];
+				this.filledCells[hole] = this.filledCells[next];
+				this.chunks[next] = null;
+				hole = next;
+			}
+		}
+		this.keys[hole] = NO_KEY;
+		this.filledCells[hole] = 0;
+		this.lastKey = NO_KEY;
+	}
+
+	/**
+	 * Puts a chunk into the first free slot for its key.
+	 *
+	 * @return the slot.
+	 */
+	private int insert(final long key, final byte[] chunk, final int filled) {
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.keys[slot] != NO_KEY) {
+			slot = (slot + 1) & mask;
+		}
+		this.keys[slot] = key;
+		this.chunks[slot] = chunk;
+		this.filledCells[slot] = filled;
+		return slot;
+	}
+
+	/**
+	 * Doubles the number of slots of the hash table.
+	 */
+	private void growTable() {
+		long[] oldKeys = this.keys;
+		byte[][] oldChunks = this.chunks;
+		int[] oldFilledCells = this.filledCells;
+		this.keys = new long[oldKeys.length * 2];
+		Arrays.fill(this.keys, NO_KEY);
+		this.chunks = new byte[oldKeys.length * 2][];
+		this.filledCells = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != NO_KEY) {
+				insert(oldKeys[i], oldChunks[i], oldFilledCells[i]);
+			}
+		}
+		this.lastKey = NO_KEY;
+	}
+
+	/**
+	 * Keeps a chunk given up for reuse, unless enough are kept already.
+	 */
+	private void addSpareChunk(final byte[] chunk) {
+		if (this.spareCount == MAX_SPARE_CHUNKS) {
+			return;
+		}
+		if (this.spareCount == this.spareChunks.length) {
+			this.spareChunks = Arrays.copyOf(this.spareChunks,
+					Math.max(16, 2 * this.spareCount));
+		}
+		this.spareChunks[this.spareCount++] = chunk;
+	}
+
+	/**
+	 * Spreads the bits of a key over the low bits used to pick a slot.
+	 */
+	private static int hash(final long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+}
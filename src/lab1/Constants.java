@@ -2,7 +2,7 @@ package lab1;
 
 import java.awt.Dimension;
 
-/** Provides a fixed size for various games. */
+/** Provides the default size for various games. */
 public enum Constants {
 	;
 	// Safe Singleton pattern, prevent instantiation.
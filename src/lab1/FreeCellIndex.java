@@ -0,0 +1,154 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the free cells of a gameboard.
+ *
+ * The cells are stored densely in an array, together with a back-pointer
+ * from every cell to its slot in that array. This makes adding, removing,
+ * testing and picking a random free cell constant time operations, no matter
+ * how large or how full the gameboard is.
+ *
+ * Cells are identified by their row-major index, <code>y * width + x</code>.
+ */
+public class FreeCellIndex {
+
+	/** Marks a cell which is not in the index. */
+	private static final int NO_SLOT = -1;
+
+	/** The width of the indexed gameboard. */
+	private final int width;
+
+	/** The free cells, stored in slots 0 to size - 1. */
+	private final int[] cells;
+
+	/** The slot of every cell in the cells array, or NO_SLOT. */
+	private final int[] slots;
+
+	/** The number of free cells. */
+	private int size;
+
+	/**
+	 * Creates an empty index for a gameboard of the given size.
+	 *
+	 * @param width
+	 *            The width of the gameboard.
+	 * @param height
+	 *            The height of the gameboard.
+	 */
+	public FreeCellIndex(final int width, final int height) {
+		this.width = width;
+		this.cells = new int[width * height];
+		this.slots = new int[width * height];
+		Arrays.fill(this.slots, NO_SLOT);
+		this.size = 0;
+	}
+
+	/**
+	 * Marks the cell (x,y) as free. Does nothing if it already is.
+	 */
+	public void add(final int x, final int y) {
+		int cell = y * this.width + x;
+		if (this.slots[cell] != NO_SLOT) {
+			return;
+		}
+		this.cells[this.size] = cell;
+		this.slots[cell] = this.size;
+		this.size++;
+	}
+
+	/**
+	 * Marks the cell (x,y) as occupied. Does nothing if it already is.
+	 */
+	public void remove(final int x, final int y) {
+		int cell = y * this.width + x;
+		int slot = this.slots[cell];
+		if (slot == NO_SLOT) {
+			return;
+		}
+		// Move the last free cell into the hole left by the removed one.
+		this.size--;
+		int last = this.cells[this.size];
+		this.cells[slot] = last;
+		this.slots[last] = slot;
+		this.slots[cell] = NO_SLOT;
+	}
+
+	/**
+	 * Marks all cells as free, adding them column by column, in the order a
+	 * loop over x and then y calling add() would.
+	 */
+	public void addAll() {
+		int height = this.cells.length / this.width;
+		int slot = 0;
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < height; y++) {
+				int cell = y * this.width + x;
+				this.cells[slot] = cell;
+				this.slots[cell] = slot;
+				slot++;
+			}
+		}
+		this.size = slot;
+	}
+
+	/**
+	 * Marks all cells as occupied.
+	 */
+	public void clear() {
+		for (int slot = 0; slot < this.size; slot++) {
+			this.slots[this.cells[slot]] = NO_SLOT;
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * @return true if the cell (x,y) is free.
+	 */
+	public boolean contains(final int x, final int y) {
+		return this.slots[y * this.width + x] != NO_SLOT;
+	}
+
+	/**
+	 * @return true if there are no free cells left.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @return The number of free cells.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the row-major index of the free cell in the given slot. Picking
+	 * a uniformly random slot in [0, size) picks a uniformly random free cell.
+	 *
+	 * @param slot
+	 *            A slot in the range [0, size).
+	 */
+	public int get(final int slot) {
+		if (slot < 0 || slot >= this.size) {
+			throw new IndexOutOfBoundsException("No such slot: " + slot);
+		}
+		return this.cells[slot];
+	}
+
+	/**
+	 * @return The x coordinate of a row-major cell index.
+	 */
+	public int cellX(final int cell) {
+		return cell % this.width;
+	}
+
+	/**
+	 * @return The y coordinate of a row-major cell index.
+	 */
+	public int cellY(final int cell) {
+		return cell / this.width;
+	}
+}
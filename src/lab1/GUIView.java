@@ -2,12 +2,16 @@ package lab1;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 
 /**
  * This panel is meant to be the base of a window or applet. It will add a new
@@ -31,7 +35,13 @@ public class GUIView extends JPanel {
 	private final GameController gameController;
 
 	/** The game view on this panel */
-	private final GameView gameView;
+	private final Component gameView;
+
+	/** The largest size of the gameboard in pixels, in either direction */
+	private static final int MAX_BOARD_PIXELS = 800;
+
+	/** The largest size of a tile in pixels */
+	private static final int MAX_TILE_SIDE = 40;
 
 	/** The panel with the gui-gadgets on this panel */
 	private final JPanel guiPanel;
@@ -39,20 +49,65 @@ public class GUIView extends JPanel {
 	/** This is the factory which creates GameModels for us */
 	private final IGameFactory gameFactory;
 
+	/** The size of the gameboard of new games */
+	private final Dimension boardSize;
+
+	/** The game started last, or null */
+	private GameModel currentGame;
+
+	/** The name of the game started last, or null */
+	private String currentGameName;
+
 	/**
 	 * Create a new GUIView. This will create a GameView and a GameController.
 	 * @param factory The factory to use for creating games.
 	 */
 
 	public GUIView(IGameFactory factory) {
-		// Create a new GameView
-		this.gameView = new GameView();
+		this(factory, Constants.getGameSize());
+	}
+
+	/**
+	 * Create a new GUIView. This will create a GameView and a GameController.
+	 * @param factory The factory to use for creating games.
+	 * @param boardSize The size of the gameboard of new games.
+	 */
+	public GUIView(IGameFactory factory, Dimension boardSize) {
+		this(factory, boardSize, false);
+	}
 
-		// Create a new GameController connected to the GameView
-		this.gameController = new GameController(this.gameView);
+	/**
+	 * Create a new GUIView. This will create a GameView, or an
+	 * ActiveGameView, and a GameController. The tiles are made small enough
+	 * for the gameboard to fit on the screen. A GameView is put in a scroll
+	 * pane, and can be zoomed further.
+	 * @param factory The factory to use for creating games.
+	 * @param boardSize The size of the gameboard of new games.
+	 * @param activeRendering True to render from a render thread of its own,
+	 *            false to let Swing paint the game.
+	 */
+	public GUIView(IGameFactory factory, Dimension boardSize,
+			boolean activeRendering) {
+		// Create a new GameView, and a GameController connected to it
+		if (activeRendering) {
+			int tileSide = Math.max(1, Math.min(MAX_TILE_SIDE,
+					MAX_BOARD_PIXELS / Math.max(boardSize.width,
+							boardSize.height)));
+			ActiveGameView view = new ActiveGameView(tileSide,
+					ActiveGameView.DEFAULT_FRAME_RATE);
+			this.gameView = view;
+			this.gameController = new GameController(view);
+		} else {
+			GameView view = new GameView();
+			view.setBoard(null, boardSize);
+			view.zoomToFit(new Dimension(MAX_BOARD_PIXELS, MAX_BOARD_PIXELS));
+			this.gameView = view;
+			this.gameController = new GameController(view);
+		}
 
 		// Create a new GameFactory
 		this.gameFactory = factory;
+		this.boardSize = new Dimension(boardSize);
 
 		// Set the background on the GameView
 		this.gameView.setBackground(Color.white);
@@ -76,8 +131,19 @@ public class GUIView extends JPanel {
 		this.gameChooser = new JComboBox<Object>(this.gameFactory.getGameNames());
 		this.guiPanel.add(this.gameChooser);
 
-		// Add both the new panel and the GameView to myself
-		add(this.gameView, BorderLayout.CENTER);
+		// Add both the new panel and the GameView to myself, the GameView
+		// scrolling once zoomed in beyond the window
+		if (this.gameView instanceof GameView) {
+			JScrollPane scrollPane = new JScrollPane(this.gameView);
+			// The score is drawn at the top of the visible area, so scrolling
+			// must repaint rather than copy.
+			scrollPane.getViewport().setScrollMode(
+					JViewport.SIMPLE_SCROLL_MODE);
+			scrollPane.setBorder(null);
+			add(scrollPane, BorderLayout.CENTER);
+		} else {
+			add(this.gameView, BorderLayout.CENTER);
+		}
 		add(this.guiPanel, BorderLayout.SOUTH);
 	}
 
@@ -103,12 +169,22 @@ public class GUIView extends JPanel {
 				// Get the name of the game selected in the Choice
 				String gameName =
 						GUIView.this.gameChooser.getSelectedItem().toString();
-				GameModel gameModel =
-						GUIView.this.gameFactory.createGame(gameName);
 
-				// Stop current game (if any) and start a new game with the
-				// new game model
+				// Stop current game (if any) and hand it back to the
+				// factory, which may reuse it for the new game
 				GUIView.this.gameController.stopGame();
+				if (GUIView.this.currentGame != null) {
+					GUIView.this.gameFactory.releaseGame(
+							GUIView.this.currentGameName,
+							GUIView.this.currentGame);
+				}
+
+				// Start a new game with the new game model
+				GameModel gameModel =
+						GUIView.this.gameFactory.createGame(gameName,
+								GUIView.this.boardSize);
+				GUIView.this.currentGameName = gameName;
+				GUIView.this.currentGame = gameModel;
 				GUIView.this.gameController.startGame(gameModel);
 				GUIView.this.gameView.requestFocus();
 			}
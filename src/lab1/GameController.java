@@ -3,8 +3,6 @@ package lab1;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * The controller class of the framework. Listens to user keystrokes and
@@ -14,47 +12,64 @@ import java.util.List;
 public class GameController implements Runnable {
 
 	/** The view this controller is connected to. */
-	private final GameView view;
+	private final IGameView view;
 
 	/** The game model describes the running game. */
 	private GameModel gameModel;
 
-	/** The timeout interval between each update. (millis) */
-	private final int updateInterval;
+	/** The default interval between each update. (millis) */
+	private static final int UPDATE_INTERVAL = 150;
+
+	/** Paces the updates of the game. */
+	private final TickScheduler scheduler;
 
 	/** True when game is running. */
-	private boolean isRunning;
+	private volatile boolean isRunning;
 
 	/** Listener for key events to the game. */
 	private final KeyListener keyListener;
 
+	/** The largest number of keypresses waiting to be processed */
+	private static final int KEY_QUEUE_CAPACITY = 3;
+
 	/** A queue for all keypresses which so far haven't been processed */
-	private final List<Integer> keypresses;
-
-	/*
-	 * The declaration of keypresses above uses the language feature 'generic
-	 * types'. It can be declared in the old way like this: private
-	 * java.util.List keypresses This will however result in a warning at
-	 * compilation "Integer" in this case is the type of the objects that are
-	 * going to be used in the List
-	 */
+	private final KeyQueue keypresses;
 
 	/** The thread which the game runs in. */
 	private Thread gameThread;
 
+	/** Counters and latency histograms of the game. */
+	private final GameMetrics metrics;
+
+	/** The score shown by the view after the last update. */
+	private int shownScore;
+
+	/** Hands the gameboard over to the view after every update. */
+	private BoardExchange board;
+
+	/** Streams the game to remote clients, or null. */
+	private volatile StateServer stateServer;
+
 	/**
 	 * Creats a new GameContoller associated with supplied view.
 	 */
-	public GameController(final GameView view) {
+	public GameController(final IGameView view) {
 		this.view = view;
 		this.gameModel = null;
 		this.isRunning = false;
-		this.updateInterval = 150;
+		this.scheduler = new TickScheduler(UPDATE_INTERVAL,
+				TickScheduler.LatePolicy.CATCH_UP);
 
-		this.keypresses = new LinkedList<Integer>();
+		this.keypresses =
+				new KeyQueue(KEY_QUEUE_CAPACITY, KeyQueue.Policy.COALESCE);
 
 		this.gameThread = null;
 
+		// Measure the game loop and the painting. They are published over
+		// JMX while a game is shown.
+		this.metrics = new GameMetrics();
+		this.view.setMetrics(this.metrics);
+
 		// Create the key listener which will listen for gamekeys
 		this.keyListener = new KeyAdapter() {
 			@SuppressWarnings("synthetic-access")
@@ -67,24 +82,56 @@ public class GameController implements Runnable {
 	}
 
 	/**
-	 * Add a key press to the end of the queue
+	 * Returns the scheduler pacing the game, which can be used to change the
+	 * tick rate and the late policy while a game is running, and to read the
+	 * lateness statistics.
+	 */
+	public TickScheduler getScheduler() {
+		return this.scheduler;
+	}
+
+	/**
+	 * Returns the counters and latency histograms of the game.
+	 */
+	public GameMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Sets the server streaming every update of the game to remote clients.
+	 * 
+	 * @param stateServer
+	 *            The server, or null to stop streaming.
+	 */
+	public void setStateServer(final StateServer stateServer) {
+		this.stateServer = stateServer;
+	}
+
+	/**
+	 * Returns the queue of key presses, which can be used to change how
+	 * repeated keys and bursts of keys are handled.
+	 */
+	public KeyQueue getKeyQueue() {
+		return this.keypresses;
+	}
+
+	/**
+	 * Add a key press to the end of the queue. Called on the event dispatch
+	 * thread only.
 	 */
-	private synchronized void enqueueKeyPress(final int key) {
-		this.keypresses.add(Integer.valueOf(key));
+	private void enqueueKeyPress(final int key) {
+		this.keypresses.offer(key);
 	}
 
 	/**
 	 * Get a key press, and remove it from the queue. Returns 0 if no key press
-	 * is available.
+	 * is available. Called on the game thread only.
 	 * 
 	 * 
 	 * @return 0 or next unprocessed key press.
 	 */
-	private synchronized int nextKeyPress() {
-		if (this.keypresses.isEmpty()) {
-			return 0;
-		}
-		return this.keypresses.remove(0).intValue();
+	private int nextKeyPress() {
+		return this.keypresses.poll();
 	}
 
 	/**
@@ -101,11 +148,16 @@ public class GameController implements Runnable {
 		// Start listening for key events
 		this.view.addKeyListener(this.keyListener);
 
+		// Publish the metrics until the game is stopped.
+		this.metrics.register();
+
 		// Tell the view what to paint...
-		this.view.setModel(gameModel);
+		this.board = new BoardExchange(gameModel);
+		this.view.setBoard(this.board, gameModel.getGameboardSize());
 
 		// Actually start the game
 		this.gameModel = gameModel;
+		this.shownScore = gameModel.getScore();
 		this.isRunning = true;
 
 		// Create the new thread and start it...
@@ -122,21 +174,58 @@ public class GameController implements Runnable {
 		this.isRunning = false;
 
 		// Unset the game model...
-		this.view.setModel(null);
+		this.view.setBoard(null, null);
 
 		// Stop listening for events
 		this.view.removeKeyListener(this.keyListener);
 
-		// Make sure we wait until the thread has stopped...
+		// Wake the thread if it is waiting for the next tick, and make sure
+		// we wait until it has stopped. It is not interrupted, which would
+		// close the channels of the state server if it is streaming.
 		if (this.gameThread != null) {
+			this.scheduler.cancel();
+			boolean interrupted = false;
 			while (this.gameThread.isAlive()) {
 				try {
-					Thread.sleep(100);
+					this.gameThread.join();
 				} catch (InterruptedException ie) {
-					// Pass the call on.
-					Thread.currentThread().interrupt();
+					interrupted = true;
 				}
 			}
+			this.gameThread = null;
+			if (interrupted) {
+				// Pass the call on.
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		// Leave nothing behind in the MBean server.
+		this.metrics.unregister();
+	}
+
+	/**
+	 * Hands a copy of the gameboard over to the view, and asks it to repaint
+	 * the tiles which have changed since the last update, and the score if it
+	 * has changed. The view paints from the copy, so it never sees an update
+	 * half done.
+	 */
+	private void repaintChanges() {
+		this.board.publish(this.gameModel);
+
+		if (this.gameModel.allCellsChanged()) {
+			this.view.repaint();
+		} else {
+			int width = this.gameModel.getGameboardSize().width;
+			for (int i = 0; i < this.gameModel.getChangedCellCount(); i++) {
+				int cell = this.gameModel.getChangedCell(i);
+				this.view.repaintTile(cell % width, cell / width);
+			}
+		}
+		this.gameModel.clearChangedCells();
+
+		if (this.gameModel.getScore() != this.shownScore) {
+			this.shownScore = this.gameModel.getScore();
+			this.view.repaintScore();
 		}
 	}
 
@@ -145,22 +234,50 @@ public class GameController implements Runnable {
 	 */
 	@Override
 	public void run() {
+		// Forget keys pressed while no game was running.
+		this.keypresses.clear();
+		this.scheduler.start();
 		while (this.isRunning) {
 			try {
+				// Wait for the next tick, keeping a steady pace regardless
+				// of how long the previous update and repaint took.
+				this.metrics.getTickLateness().record(
+						this.scheduler.awaitNextTick());
+
 				// Tell model to update, send next key press.
 				// or 0 if no new keypress since last update.
-				this.gameModel.gameUpdate(nextKeyPress());
+				int key = nextKeyPress();
+				long start = System.nanoTime();
+				this.gameModel.gameUpdate(key);
+				long updated = System.nanoTime();
+				this.metrics.getTickDuration().record(updated - start);
+				this.metrics.countTick();
+				if (key != 0) {
+					this.metrics.getInputLatency().record(
+							updated - this.keypresses.getPolledKeyTime());
+				}
 
-				this.view.repaint();
+				// Stream the changes before they are cleared.
+				StateServer server = this.stateServer;
+				if (server != null) {
+					server.publish(this.gameModel);
+				}
 
-				Thread.sleep(this.updateInterval);
+				repaintChanges();
+				this.metrics.getRepaintDuration().record(
+						System.nanoTime() - updated);
 			} catch (GameOverException e) {
 				// we got a game over signal, time to exit...
 				// The current implementation ignores the game score
 				this.isRunning = false;
+				this.metrics.countGameOver();
+				StateServer server = this.stateServer;
+				if (server != null) {
+					server.publishGameOver(e.getScore());
+				}
 				System.out.println("Game over: " + e.getScore());
 			} catch (InterruptedException e) {
-				// if we get this exception, we're asked to terminate ourselves
+				// The schedule was cancelled, time to exit...
 				this.isRunning = false;
 			}
 		}
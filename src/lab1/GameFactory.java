@@ -1,5 +1,7 @@
 package lab1;
 
+import java.awt.Dimension;
+
 /**
  * Factory class for available games.
  */
@@ -11,7 +13,7 @@ public class GameFactory implements IGameFactory {
 	 */
 	@Override
 	public String[] getGameNames() {
-		return new String[] { "Gold", "Snake" };
+		return new String[] { "Gold", "Snake", "WrapSnake", "Arena" };
 	}
 
 	/**
@@ -24,14 +26,69 @@ public class GameFactory implements IGameFactory {
 	 */
 	@Override
 	public GameModel createGame(final String gameName) {
+		return createGame(gameName, Constants.getGameSize());
+	}
+
+	/**
+	 * Returns a new model object for the game corresponding to its Name, with
+	 * a gameboard of the given size.
+	 * 
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @param boardSize
+	 *            The size of the gameboard
+	 * @throws IllegalArgumentException
+	 *             if no such game, or if the size is invalid
+	 */
+	@Override
+	public GameModel createGame(final String gameName,
+			final Dimension boardSize) {
+		return createGame(gameName, boardSize, GameModel.newSeed());
+	}
+
+	/**
+	 * Returns a new model object for the game corresponding to its Name, with
+	 * a gameboard of the given size and a seeded random generator.
+	 * 
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @param boardSize
+	 *            The size of the gameboard
+	 * @param seed
+	 *            The seed of the random generator of the game
+	 * @throws IllegalArgumentException
+	 *             if no such game, or if the size is invalid
+	 */
+	@Override
+	public GameModel createGame(final String gameName,
+			final Dimension boardSize, final long seed) {
 		if (gameName.equals("Gold")) {
-			return new GoldModel();
+			return new GoldModel(boardSize, GoldModel.COIN_START_AMOUNT, seed);
 		}
 		
 		else if (gameName.equals("Snake")) {
-			return new SnakeModel();
+			return new SnakeModel(boardSize, SnakeModel.INITIAL_SNAKE_LENGTH,
+					seed);
+		}
+
+		else if (gameName.equals("WrapSnake")) {
+			return new SnakeModel(boardSize, SnakeModel.INITIAL_SNAKE_LENGTH,
+					seed, true);
+		}
+
+		else if (gameName.equals("Arena")) {
+			return new ArenaModel(boardSize,
+					ArenaModel.defaultSnakeCount(boardSize), seed);
 		}
 
 		throw new IllegalArgumentException("No such game: " + gameName);
 	}
+
+	/**
+	 * Does nothing, games are never reused by this factory.
+	 */
+	@Override
+	public void releaseGame(final String gameName, final GameModel model) {
+		// Leave the model to the garbage collector.
+	}
 }
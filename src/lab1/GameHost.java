@@ -0,0 +1,423 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many headless games in one JVM.
+ *
+ * A GameController runs one game on a thread of its own, which does not
+ * scale to thousands of games. The host instead splits its sessions over a
+ * few shards, normally one per core. Each shard is a single thread which
+ * waits for a tick and then updates all of its sessions one after another,
+ * so a session costs a model and a key queue but no thread.
+ * <p>
+ * New sessions are admitted only while the host has room for them: there
+ * is a limit on the number of sessions, and a session is refused if even the
+ * least busy shard already spends too much of each tick updating games.
+ */
+public class GameHost {
+
+	/** The default interval between each update. (millis) */
+	public static final int DEFAULT_TICK_INTERVAL = 150;
+
+	/** The default largest share of a tick a shard may be busy. */
+	public static final double DEFAULT_MAX_LOAD = 0.75;
+
+	/** The factory creating and recycling the models. */
+	private final IGameFactory gameFactory;
+
+	/** The shards, each updating its own sessions. */
+	private final Shard[] shards;
+
+	/** The largest number of sessions hosted at the same time. */
+	private final int maxSessions;
+
+	/** The largest share of a tick the least busy shard may be busy. */
+	private final double maxLoad;
+
+	/** The number of sessions hosted, including those not started yet. */
+	private final AtomicInteger sessionCount = new AtomicInteger();
+
+	/** The number of sessions refused by the admission control. */
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/** The number of the last session opened. */
+	private final AtomicLong lastSessionId = new AtomicLong();
+
+	/**
+	 * True until the host is shut down. Only changed while holding
+	 * shutdownLock, so that no session is handed to a shard which has
+	 * already closed its sessions.
+	 */
+	private volatile boolean isRunning = true;
+
+	/** Guards isRunning and the hand-over of new sessions to the shards. */
+	private final Object shutdownLock = new Object();
+
+	/**
+	 * Creates a host with one shard per core, updating every
+	 * DEFAULT_TICK_INTERVAL ms.
+	 *
+	 * @param gameFactory
+	 *            The factory creating the models, which should be a
+	 *            PooledGameFactory if sessions come and go.
+	 * @param maxSessions
+	 *            The largest number of sessions hosted at the same time.
+	 */
+	public GameHost(final IGameFactory gameFactory, final int maxSessions) {
+		this(gameFactory, Runtime.getRuntime().availableProcessors(),
+				maxSessions, DEFAULT_TICK_INTERVAL, DEFAULT_MAX_LOAD);
+	}
+
+	/**
+	 * Creates a host and starts its shards.
+	 *
+	 * @param gameFactory
+	 *            The factory creating the models.
+	 * @param shardCount
+	 *            The number of threads updating the sessions.
+	 * @param maxSessions
+	 *            The largest number of sessions hosted at the same time.
+	 * @param tickInterval
+	 *            The time between two updates of a session. (millis)
+	 * @param maxLoad
+	 *            The largest share of a tick the least busy shard may spend
+	 *            updating games before new sessions are refused.
+	 * @throws IllegalArgumentException
+	 *             if a count, the interval or the load is not positive.
+	 */
+	public GameHost(final IGameFactory gameFactory, final int shardCount,
+			final int maxSessions, final long tickInterval,
+			final double maxLoad) {
+		if (shardCount <= 0) {
+			throw new IllegalArgumentException("Invalid shard count: "
+					+ shardCount);
+		}
+		if (maxSessions <= 0) {
+			throw new IllegalArgumentException("Invalid session limit: "
+					+ maxSessions);
+		}
+		if (!(maxLoad > 0)) {
+			throw new IllegalArgumentException("Invalid load limit: "
+					+ maxLoad);
+		}
+		this.gameFactory = gameFactory;
+		this.maxSessions = maxSessions;
+		this.maxLoad = maxLoad;
+		this.shards = new Shard[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			this.shards[i] = new Shard(new TickScheduler(tickInterval,
+					TickScheduler.LatePolicy.SKIP));
+		}
+		for (int i = 0; i < shardCount; i++) {
+			Thread thread = new Thread(this.shards[i], "GameHost shard " + i);
+			thread.setDaemon(true);
+			this.shards[i].thread = thread;
+			thread.start();
+		}
+	}
+
+	/**
+	 * Opens a session played through GameSession.pressKey().
+	 *
+	 * @see #openSession(String, Dimension, long, KeySource)
+	 */
+	public GameSession openSession(final String gameName,
+			final Dimension boardSize, final long seed) {
+		return openSession(gameName, boardSize, seed, null);
+	}
+
+	/**
+	 * Opens a session, if the host has room for it. The game starts on the
+	 * next tick of its shard.
+	 *
+	 * @param gameName
+	 *            The name of the game as given by the factory.
+	 * @param boardSize
+	 *            The size of the gameboard.
+	 * @param seed
+	 *            The seed of the random generator of the game.
+	 * @param keySource
+	 *            The keystrokes to play, or null to play the keys passed to
+	 *            GameSession.pressKey().
+	 * @return the new session, or null if it was refused.
+	 * @throws IllegalArgumentException
+	 *             if no such game, or if the size is invalid.
+	 * @throws IllegalStateException
+	 *             if the host has been shut down.
+	 */
+	public GameSession openSession(final String gameName,
+			final Dimension boardSize, final long seed,
+			final KeySource keySource) {
+		if (!this.isRunning) {
+			throw new IllegalStateException("Host is shut down");
+		}
+		Shard shard = leastBusyShard();
+		if (shard.load > this.maxLoad || !reserveSession()) {
+			this.rejectedCount.incrementAndGet();
+			return null;
+		}
+		GameSession session;
+		try {
+			GameModel model =
+					this.gameFactory.createGame(gameName, boardSize, seed);
+			session = new GameSession(this.lastSessionId.incrementAndGet(),
+					gameName, model, keySource);
+		} catch (RuntimeException e) {
+			this.sessionCount.decrementAndGet();
+			throw e;
+		}
+		synchronized (this.shutdownLock) {
+			if (this.isRunning) {
+				shard.sessionCount.incrementAndGet();
+				shard.newSessions.add(session);
+				return session;
+			}
+		}
+		// The host was shut down meanwhile, and its shards won't close the
+		// session any more.
+		sessionEnded(session);
+		throw new IllegalStateException("Host is shut down");
+	}
+
+	/**
+	 * Counts a new session if that stays within the limit.
+	 */
+	private boolean reserveSession() {
+		while (true) {
+			int count = this.sessionCount.get();
+			if (count >= this.maxSessions) {
+				return false;
+			}
+			if (this.sessionCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the shard with the fewest sessions.
+	 */
+	private Shard leastBusyShard() {
+		Shard best = this.shards[0];
+		for (int i = 1; i < this.shards.length; i++) {
+			if (this.shards[i].sessionCount.get() < best.sessionCount.get()) {
+				best = this.shards[i];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Stops all shards and closes the sessions which are still running. No
+	 * session may be opened while the host is shutting down.
+	 */
+	public void shutdown() {
+		synchronized (this.shutdownLock) {
+			this.isRunning = false;
+		}
+		boolean interrupted = false;
+		for (Shard shard : this.shards) {
+			shard.thread.interrupt();
+			while (shard.thread.isAlive()) {
+				try {
+					shard.thread.join();
+				} catch (InterruptedException ie) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			// Pass the call on.
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** @return the number of sessions hosted. */
+	public int getSessionCount() {
+		return this.sessionCount.get();
+	}
+
+	/** @return the number of sessions refused by the admission control. */
+	public long getRejectedCount() {
+		return this.rejectedCount.get();
+	}
+
+	/** @return the number of shards. */
+	public int getShardCount() {
+		return this.shards.length;
+	}
+
+	/**
+	 * Returns the number of ticks whose updates were not done by the deadline
+	 * of the next tick, or which were dropped altogether, summed over all
+	 * shards.
+	 */
+	public long getMissedTickCount() {
+		long missed = 0;
+		for (Shard shard : this.shards) {
+			missed += shard.overrunCount
+					+ shard.scheduler.getSkippedTickCount();
+		}
+		return missed;
+	}
+
+	/** @return the number of ticks released, summed over all shards. */
+	public long getTickCount() {
+		long ticks = 0;
+		for (Shard shard : this.shards) {
+			ticks += shard.scheduler.getTickCount();
+		}
+		return ticks;
+	}
+
+	/** @return the largest lateness of a tick of any shard. (nanos) */
+	public long getMaxLatenessNanos() {
+		long max = 0;
+		for (Shard shard : this.shards) {
+			max = Math.max(max, shard.scheduler.getMaxLatenessNanos());
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the largest share of its last tick a shard spent updating its
+	 * sessions.
+	 */
+	public double getMaxLoad() {
+		double max = 0;
+		for (Shard shard : this.shards) {
+			max = Math.max(max, shard.load);
+		}
+		return max;
+	}
+
+	/**
+	 * Called by a shard when a session has ended: the session no longer
+	 * counts, and its model is handed back to the factory.
+	 */
+	void sessionEnded(final GameSession session) {
+		this.sessionCount.decrementAndGet();
+		this.gameFactory.releaseGame(session.getGameName(),
+				session.getModel());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d sessions on %d shards, %d refused, "
+				+ "%d of %d ticks missed, max lateness %.3f ms, load %.0f%%",
+				getSessionCount(), getShardCount(), getRejectedCount(),
+				getMissedTickCount(), getTickCount(),
+				getMaxLatenessNanos() / 1e6, getMaxLoad() * 100);
+	}
+
+	/**
+	 * A thread updating a share of the sessions on every tick.
+	 */
+	private class Shard implements Runnable {
+
+		/** Paces the updates of the shard. */
+		final TickScheduler scheduler;
+
+		/** Sessions opened, waiting to be picked up by the shard thread. */
+		final Queue<GameSession> newSessions =
+				new ConcurrentLinkedQueue<GameSession>();
+
+		/** The number of sessions of the shard, including the new ones. */
+		final AtomicInteger sessionCount = new AtomicInteger();
+
+		/** The sessions updated by the shard. Only used by the thread. */
+		private final List<GameSession> sessions =
+				new ArrayList<GameSession>();
+
+		/** The share of the last tick spent updating sessions. */
+		volatile double load;
+
+		/** The number of ticks which took longer than a tick. */
+		volatile long overrunCount;
+
+		/** The thread of the shard. */
+		Thread thread;
+
+		Shard(final TickScheduler scheduler) {
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		public void run() {
+			this.scheduler.start();
+			try {
+				while (GameHost.this.isRunning) {
+					long lateness = this.scheduler.awaitNextTick();
+					long start = System.nanoTime();
+					long period = this.scheduler.getPeriodNanos();
+
+					GameSession session;
+					while ((session = this.newSessions.poll()) != null) {
+						this.sessions.add(session);
+					}
+					updateSessions();
+
+					long busy = System.nanoTime() - start;
+					this.load = (double) busy / period;
+					if (lateness + busy > period) {
+						// The next tick is due before this one is done.
+						this.overrunCount++;
+					}
+				}
+			} catch (InterruptedException e) {
+				// We're asked to terminate ourselves.
+			}
+			closeSessions();
+		}
+
+		/**
+		 * Updates every session once, dropping the ones which have ended.
+		 */
+		private void updateSessions() {
+			int i = 0;
+			while (i < this.sessions.size()) {
+				GameSession session = this.sessions.get(i);
+				if (session.tick()) {
+					i++;
+				} else {
+					// Move the last session into the gap, the order of the
+					// updates within a tick doesn't matter.
+					GameSession last =
+							this.sessions.remove(this.sessions.size() - 1);
+					if (last != session) {
+						this.sessions.set(i, last);
+					}
+					end(session);
+				}
+			}
+		}
+
+		/**
+		 * Closes all sessions when the host is shut down.
+		 */
+		private void closeSessions() {
+			GameSession session;
+			while ((session = this.newSessions.poll()) != null) {
+				this.sessions.add(session);
+			}
+			for (GameSession open : this.sessions) {
+				open.close();
+				open.tick();
+				end(open);
+			}
+			this.sessions.clear();
+		}
+
+		private void end(final GameSession session) {
+			this.sessionCount.decrementAndGet();
+			sessionEnded(session);
+		}
+	}
+}
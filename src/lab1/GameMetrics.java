@@ -0,0 +1,204 @@
+package lab1;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of a running game, published through the
+ * platform MBean server so that live sessions can be watched with standard
+ * JMX tools such as jconsole.
+ *
+ * The counters are registered as
+ * <code>lab1:type=GameMetrics,id=N</code> and each histogram as
+ * <code>lab1:type=GameMetrics,id=N,histogram=NAME</code>, from register()
+ * until unregister().
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+	/** The number of GameMetrics created, used to name them. */
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+	/** The time each GameModel.gameUpdate takes. */
+	private final LatencyHistogram tickDuration = new LatencyHistogram();
+
+	/** The time it takes to ask the view to repaint after an update. */
+	private final LatencyHistogram repaintDuration = new LatencyHistogram();
+
+	/** The time each frame takes to paint. */
+	private final LatencyHistogram paintDuration = new LatencyHistogram();
+
+	/** The time from the start of a frame to the start of the next. */
+	private final LatencyHistogram frameInterval = new LatencyHistogram();
+
+	/** The time from a key press until the update it was given to is done. */
+	private final LatencyHistogram inputLatency = new LatencyHistogram();
+
+	/** How late each tick was released by the scheduler. */
+	private final LatencyHistogram tickLateness = new LatencyHistogram();
+
+	/** The number of game updates made. */
+	private final AtomicLong ticks = new AtomicLong();
+
+	/** The number of frames painted while a game was shown. */
+	private final AtomicLong frames = new AtomicLong();
+
+	/** The number of frames painted again since their buffer was lost. */
+	private final AtomicLong lostFrames = new AtomicLong();
+
+	/** The number of games which have ended. */
+	private final AtomicLong gameOvers = new AtomicLong();
+
+	/** The number of this instance, used to name its MBeans. */
+	private final int id = INSTANCES.incrementAndGet();
+
+	/** The names of the MBeans registered, or null if there are none. */
+	private ObjectName[] registeredNames;
+
+	/**
+	 * Publishes the counters and histograms in the platform MBean server,
+	 * unless they are already. If that fails, the metrics are still
+	 * recorded, just not published.
+	 */
+	public synchronized void register() {
+		if (this.registeredNames != null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		String name = "lab1:type=GameMetrics,id=" + this.id;
+		Object[] mbeans = { this, this.tickDuration, this.repaintDuration,
+				this.paintDuration, this.frameInterval, this.inputLatency,
+				this.tickLateness };
+		String[] names = { name, histogramName(name, "tickDuration"),
+				histogramName(name, "repaintDuration"),
+				histogramName(name, "paintDuration"),
+				histogramName(name, "frameInterval"),
+				histogramName(name, "inputLatency"),
+				histogramName(name, "tickLateness") };
+		this.registeredNames = new ObjectName[mbeans.length];
+		try {
+			for (int i = 0; i < mbeans.length; i++) {
+				ObjectName objectName = new ObjectName(names[i]);
+				server.registerMBean(mbeans[i], objectName);
+				this.registeredNames[i] = objectName;
+			}
+		} catch (JMException e) {
+			System.err.println("Could not publish game metrics: " + e);
+		}
+	}
+
+	/**
+	 * Takes the counters and histograms out of the platform MBean server,
+	 * if they are registered. The metrics are still recorded.
+	 */
+	public synchronized void unregister() {
+		if (this.registeredNames == null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName objectName : this.registeredNames) {
+			if (objectName == null) {
+				continue;
+			}
+			try {
+				server.unregisterMBean(objectName);
+			} catch (JMException e) {
+				System.err.println("Could not unpublish game metrics: " + e);
+			}
+		}
+		this.registeredNames = null;
+	}
+
+	private static String histogramName(final String name,
+			final String histogram) {
+		return name + ",histogram=" + histogram;
+	}
+
+	/** Returns the histogram of the time each game update takes. */
+	public LatencyHistogram getTickDuration() {
+		return this.tickDuration;
+	}
+
+	/** Returns the histogram of the time it takes to request repaints. */
+	public LatencyHistogram getRepaintDuration() {
+		return this.repaintDuration;
+	}
+
+	/** Returns the histogram of the time each paint takes. */
+	public LatencyHistogram getPaintDuration() {
+		return this.paintDuration;
+	}
+
+	/** Returns the histogram of the time between the starts of frames. */
+	public LatencyHistogram getFrameInterval() {
+		return this.frameInterval;
+	}
+
+	/** Returns the histogram of the time from key press to applied update. */
+	public LatencyHistogram getInputLatency() {
+		return this.inputLatency;
+	}
+
+	/** Returns the histogram of how late the ticks were. */
+	public LatencyHistogram getTickLateness() {
+		return this.tickLateness;
+	}
+
+	/** Counts a game update. */
+	public void countTick() {
+		this.ticks.incrementAndGet();
+	}
+
+	/** Counts a painted frame. */
+	public void countFrame() {
+		this.frames.incrementAndGet();
+	}
+
+	/** Counts a frame which had to be painted again. */
+	public void countLostFrame() {
+		this.lostFrames.incrementAndGet();
+	}
+
+	/** Counts an ended game. */
+	public void countGameOver() {
+		this.gameOvers.incrementAndGet();
+	}
+
+	@Override
+	public long getTicks() {
+		return this.ticks.get();
+	}
+
+	@Override
+	public long getFrames() {
+		return this.frames.get();
+	}
+
+	@Override
+	public long getLostFrames() {
+		return this.lostFrames.get();
+	}
+
+	@Override
+	public long getGameOvers() {
+		return this.gameOvers.get();
+	}
+
+	@Override
+	public void reset() {
+		this.tickDuration.reset();
+		this.repaintDuration.reset();
+		this.paintDuration.reset();
+		this.frameInterval.reset();
+		this.inputLatency.reset();
+		this.tickLateness.reset();
+		this.ticks.set(0);
+		this.frames.set(0);
+		this.lostFrames.set(0);
+		this.gameOvers.set(0);
+	}
+}
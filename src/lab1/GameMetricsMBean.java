@@ -0,0 +1,22 @@
+package lab1;
+
+/**
+ * Management interface of the GameMetrics of a GameController, as shown by
+ * JMX tools. The histograms are published as separate MBeans.
+ */
+public interface GameMetricsMBean {
+	/** Returns the number of game updates made. */
+	public long getTicks();
+
+	/** Returns the number of frames painted while a game was shown. */
+	public long getFrames();
+
+	/** Returns the number of frames painted again since their buffer was lost. */
+	public long getLostFrames();
+
+	/** Returns the number of games which have ended. */
+	public long getGameOvers();
+
+	/** Forgets all counters and histograms. */
+	public void reset();
+}
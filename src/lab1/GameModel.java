@@ -1,28 +1,178 @@
 package lab1;
 
 import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Common superclass for all game model classes.
  * 
  * Constructors of subclasses should initiate matrix elements and additional,
- * game-dependent fields.
+ * game-dependent fields. The gameboard is stored in chunks allocated on first
+ * use, so filling it with fillGameboard() and setting the few cells which
+ * differ costs nothing per cell, and sparse gameboards far larger than the
+ * memory can be played.
  */
 public abstract class GameModel {
 
-	/** A Matrix containing the state of the gameboard. */
-	private final GameTile[][] gameboardState;
+	/**
+	 * The largest number of cells of a gameboard whose cells can be packed
+	 * as <code>y * width + x</code> into an int. Only such gameboards can be
+	 * copied, snapshot and drawn, and have their changes recorded cell by
+	 * cell.
+	 */
+	protected static final long MAX_INDEXED_CELLS = Integer.MAX_VALUE;
+
+	/**
+	 * The state of the gameboard as TileRegistry IDs, in chunks which are
+	 * only allocated once a tile other than the one the gameboard was last
+	 * filled with is set in them.
+	 */
+	private final ChunkedBoard gameboardState;
+
+	/** True if the gameboard has at most MAX_INDEXED_CELLS cells. */
+	private final boolean cellsIndexed;
 
 	/** The size of the state matrix. */
-	private final Dimension gameboardSize = Constants.getGameSize();
+	private final Dimension gameboardSize;
+
+	/**
+	 * The largest number of changed cells which are recorded one by one. If
+	 * more cells change between two frames, the whole gameboard is considered
+	 * changed.
+	 */
+	private static final int MAX_CHANGED_CELLS = 1024;
+
+	/** The cells changed since clearChangedCells(), in row-major order. */
+	private final int[] changedCells = new int[MAX_CHANGED_CELLS];
+
+	/** The number of recorded changed cells. */
+	private int changedCellCount;
+
+	/** True if too many cells have changed to record them one by one. */
+	private boolean allCellsChanged = true;
+
+	/** The seed of the random generator. */
+	private long seed;
+
+	/** The random generator of this model only. */
+	private final GameRandom random;
+
+	/**
+	 * Create a new game model of the default size. As GameModel is an abstract
+	 * class, this is only intended for subclasses.
+	 */
+	protected GameModel() {
+		this(Constants.getGameSize());
+	}
+
+	/**
+	 * Create a new game model with a random seed. As GameModel is an abstract
+	 * class, this is only intended for subclasses.
+	 * 
+	 * @param size
+	 *            The size of the gameboard.
+	 * @throws IllegalArgumentException
+	 *             if the size is empty.
+	 */
+	protected GameModel(final Dimension size) {
+		this(size, newSeed());
+	}
 
 	/**
 	 * Create a new game model. As GameModel is an abstract class, this is only
 	 * intended for subclasses.
+	 * 
+	 * @param size
+	 *            The size of the gameboard.
+	 * @param seed
+	 *            The seed of the random generator. A game is fully determined
+	 *            by its seed and the keys it is given.
+	 * @throws IllegalArgumentException
+	 *             if the size is empty.
 	 */
-	protected GameModel() {
-		this.gameboardState =
-				new GameTile[this.gameboardSize.width][this.gameboardSize.height];
+	protected GameModel(final Dimension size, final long seed) {
+		if (size.width <= 0 || size.height <= 0) {
+			throw new IllegalArgumentException("Invalid gameboard size: "
+					+ size.width + "x" + size.height);
+		}
+		// Dimension is a mutable class, copy to prevent mutation.
+		this.gameboardSize = new Dimension(size);
+		// Nothing is allocated per cell, however large the gameboard.
+		this.gameboardState = new ChunkedBoard(size.width, size.height);
+		this.cellsIndexed =
+				(long) size.width * size.height <= MAX_INDEXED_CELLS;
+		this.seed = seed;
+		this.random = new GameRandom(seed);
+	}
+
+	/**
+	 * Checks that the cells of a gameboard can be packed as
+	 * <code>y * width + x</code> into an int. For the constructors of games
+	 * which keep something for every cell.
+	 * 
+	 * @return the size.
+	 * @throws IllegalArgumentException
+	 *             if the gameboard has more than MAX_INDEXED_CELLS cells.
+	 */
+	protected static Dimension requireIndexedSize(final Dimension size) {
+		if ((long) size.width * size.height > MAX_INDEXED_CELLS) {
+			throw new IllegalArgumentException("Invalid gameboard size: "
+					+ size.width + "x" + size.height);
+		}
+		return size;
+	}
+
+	/**
+	 * Puts the game back in its starting state with a new seed, reusing the
+	 * gameboard and everything else already allocated. A reset game plays out
+	 * exactly like a new game created with the same seed.
+	 * 
+	 * @param newSeed
+	 *            The seed of the random generator.
+	 * @throws UnsupportedOperationException
+	 *             if the game can't be reset.
+	 */
+	public void reset(final long newSeed) {
+		this.seed = newSeed;
+		this.random.setState(newSeed);
+		resetGame();
+		// Whatever was drawn before is out of date.
+		this.changedCellCount = 0;
+		this.allCellsChanged = true;
+	}
+
+	/**
+	 * Puts the game in its starting state. Called by reset() once the random
+	 * generator has been seeded again. Games which support reset() must
+	 * override this.
+	 */
+	protected void resetGame() {
+		throw new UnsupportedOperationException(getClass().getName()
+				+ " can't be reset");
+	}
+
+	/**
+	 * Returns a seed for a game which doesn't need to be reproducible.
+	 */
+	protected static long newSeed() {
+		return ThreadLocalRandom.current().nextLong();
+	}
+
+	/**
+	 * Returns the random generator of this model. Games must use it, rather
+	 * than Math.random(), for everything random.
+	 */
+	protected GameRandom getRandom() {
+		return this.random;
+	}
+
+	/**
+	 * Returns the seed the game was created or reset with, or restored from
+	 * a snapshot of.
+	 */
+	public long getSeed() {
+		return this.seed;
 	}
 
 	/**
@@ -49,7 +199,76 @@ public abstract class GameModel {
 	 */
 	protected void setGameboardState(final int x, final int y,
 			final GameTile tile) {
-		this.gameboardState[x][y] = tile;
+		if (this.gameboardState.set(x, y, tile.getId())) {
+			recordChangedCell(x, y);
+		}
+	}
+
+	/**
+	 * Sets every cell of the gameboard to the same tile. Takes as long as
+	 * the number of chunks of the gameboard in use, not its area, and
+	 * doesn't go through setGameboardState().
+	 * 
+	 * @param tile
+	 *            The type of tile to paint everywhere.
+	 */
+	protected void fillGameboard(final GameTile tile) {
+		this.gameboardState.fill(tile.getId());
+		this.changedCellCount = 0;
+		this.allCellsChanged = true;
+	}
+
+	/**
+	 * Remembers that a cell has changed since the last frame.
+	 */
+	private void recordChangedCell(final int x, final int y) {
+		if (this.allCellsChanged) {
+			return;
+		}
+		if (this.changedCellCount == MAX_CHANGED_CELLS) {
+			this.allCellsChanged = true;
+			return;
+		}
+		this.changedCells[this.changedCellCount++] =
+				y * this.gameboardSize.width + x;
+	}
+
+	/**
+	 * Returns the number of cells which have changed since the last call to
+	 * clearChangedCells(). Only meaningful if allCellsChanged() is false.
+	 */
+	public int getChangedCellCount() {
+		return this.changedCellCount;
+	}
+
+	/**
+	 * Returns a cell which has changed since the last call to
+	 * clearChangedCells(), as the row-major index <code>y * width + x</code>.
+	 * A cell may be returned more than once.
+	 * 
+	 * @param i
+	 *            A number in the range [0, getChangedCellCount()).
+	 */
+	public int getChangedCell(final int i) {
+		return this.changedCells[i];
+	}
+
+	/**
+	 * Returns true if the whole gameboard should be considered changed since
+	 * the last call to clearChangedCells(). This is the case for a new model,
+	 * if too many cells have changed to record them one by one, and always
+	 * for gameboards of more than MAX_INDEXED_CELLS cells.
+	 */
+	public boolean allCellsChanged() {
+		return this.allCellsChanged;
+	}
+
+	/**
+	 * Forgets all changes. Called once the changes have been drawn.
+	 */
+	public void clearChangedCells() {
+		this.changedCellCount = 0;
+		this.allCellsChanged = !this.cellsIndexed;
 	}
 
 	/**
@@ -71,7 +290,50 @@ public abstract class GameModel {
 	 *            Coordinate in the gameboard matrix.
 	 */
 	public GameTile getGameboardState(final int x, final int y) {
-		return this.gameboardState[x][y];
+		return TileRegistry.getTile(getGameboardTileId(x, y));
+	}
+
+	/**
+	 * Returns the TileRegistry ID of the tile in logical position (x,y) of
+	 * the gameboard.
+	 * 
+	 * @param x
+	 *            Coordinate in the gameboard matrix.
+	 * @param y
+	 *            Coordinate in the gameboard matrix.
+	 */
+	public int getGameboardTileId(final int x, final int y) {
+		return this.gameboardState.get(x, y);
+	}
+
+	/**
+	 * Returns the TileRegistry ID of the tile of a cell, packed as
+	 * <code>y * width + x</code>. Only for gameboards of at most
+	 * MAX_INDEXED_CELLS cells.
+	 */
+	int getCellTileId(final int cell) {
+		int width = this.gameboardSize.width;
+		return this.gameboardState.get(cell % width, cell / width);
+	}
+
+	/**
+	 * Copies the gameboard, as TileRegistry IDs row by row, into an array of
+	 * at least width * height entries.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the gameboard has more than MAX_INDEXED_CELLS cells.
+	 */
+	void copyGameboard(final byte[] into) {
+		this.gameboardState.copyTo(into);
+	}
+
+	/**
+	 * Returns the number of chunks of ChunkedBoard.CHUNK_SIDE by
+	 * ChunkedBoard.CHUNK_SIDE cells the gameboard keeps in memory. The rest
+	 * of the gameboard holds the tile it was last filled with.
+	 */
+	public int getGameboardChunkCount() {
+		return this.gameboardState.getChunkCount();
 	}
 
 	/**
@@ -81,6 +343,127 @@ public abstract class GameModel {
 		return this.gameboardSize;
 	}
 
+	/**
+	 * Writes the whole state of the game: the seed and the state of the
+	 * random generator, the gameboard with each tile packed into as few bits
+	 * as the game needs, and whatever writeGameState() adds.
+	 * <p>
+	 * The game itself is left as it is, so it continues exactly like a game
+	 * restored from the snapshot would, and writing the same game twice
+	 * gives the same snapshot. A game which is over can't be snapshot.
+	 * 
+	 * @param out
+	 *            Where to write the snapshot.
+	 * @throws UnsupportedOperationException
+	 *             if the game can't be snapshot, or the gameboard has more
+	 *             than MAX_INDEXED_CELLS cells.
+	 */
+	public void writeSnapshot(final SnapshotWriter out) {
+		requireIndexedCells();
+		GameTile[] tiles = getSnapshotTiles();
+		int[] codes = new int[TileRegistry.MAX_ID + 1];
+		Arrays.fill(codes, -1);
+		for (int i = 0; i < tiles.length; i++) {
+			codes[tiles[i].getId()] = i;
+		}
+		int tileBits = SnapshotWriter.bitsFor(tiles.length);
+
+		out.writeLong(this.seed);
+		out.writeLong(this.random.getState());
+		Dimension size = this.gameboardSize;
+		out.setCellCount(size.width * size.height);
+		for (int y = 0; y < size.height; y++) {
+			for (int x = 0; x < size.width; x++) {
+				int id = this.gameboardState.get(x, y);
+				if (codes[id] < 0) {
+					throw new IllegalStateException(
+							"No snapshot code for tile " + id);
+				}
+				out.writeBits(codes[id], tileBits);
+			}
+		}
+		writeGameState(out);
+		out.align();
+	}
+
+	/**
+	 * Replaces the whole state of the game with a snapshot written by a game
+	 * of the same kind and size.
+	 * 
+	 * @param in
+	 *            Where to read the snapshot from.
+	 * @throws SnapshotException
+	 *             if the snapshot is invalid.
+	 * @throws UnsupportedOperationException
+	 *             if the game can't be snapshot, or the gameboard has more
+	 *             than MAX_INDEXED_CELLS cells.
+	 */
+	public void readSnapshot(final SnapshotReader in) throws SnapshotException {
+		requireIndexedCells();
+		GameTile[] tiles = getSnapshotTiles();
+		int tileBits = SnapshotWriter.bitsFor(tiles.length);
+
+		this.seed = in.readLong();
+		this.random.setState(in.readLong());
+		Dimension size = this.gameboardSize;
+		in.setCellCount(size.width * size.height);
+		for (int y = 0; y < size.height; y++) {
+			for (int x = 0; x < size.width; x++) {
+				int code = in.readBits(tileBits);
+				if (code >= tiles.length) {
+					throw new SnapshotException("Invalid tile code: " + code);
+				}
+				setGameboardState(x, y, tiles[code]);
+			}
+		}
+		readGameState(in);
+		in.align();
+		// Whatever was drawn before is out of date.
+		this.changedCellCount = 0;
+		this.allCellsChanged = true;
+	}
+
+	/**
+	 * Fails unless the cells of the gameboard can be packed into an int.
+	 */
+	private void requireIndexedCells() {
+		if (!this.cellsIndexed) {
+			throw new UnsupportedOperationException("Gameboard too large: "
+					+ this.gameboardSize.width + "x"
+					+ this.gameboardSize.height);
+		}
+	}
+
+	/**
+	 * Returns all tiles the gameboard of the game may hold. A tile is stored
+	 * in a snapshot as its index in this array, so the order must never
+	 * change. Games which support snapshots must override this.
+	 */
+	protected GameTile[] getSnapshotTiles() {
+		throw new UnsupportedOperationException(getClass().getName()
+				+ " can't be snapshot");
+	}
+
+	/**
+	 * Writes the state of the game which isn't on the gameboard. Called by
+	 * writeSnapshot() once the gameboard has been written.
+	 */
+	protected void writeGameState(final SnapshotWriter out) {
+		// No state beside the gameboard.
+	}
+
+	/**
+	 * Reads what writeGameState() has written. Called by readSnapshot() once
+	 * the gameboard has been read.
+	 * 
+	 * @throws SnapshotException
+	 *             if the snapshot is invalid.
+	 */
+	protected void readGameState(final SnapshotReader in)
+			throws SnapshotException {
+		// No state beside the gameboard.
+	}
+
 	/**
 	 * This method is called repeatedly so that the game can update it's state.
 	 * 
@@ -0,0 +1,28 @@
+package lab1;
+
+/**
+ * A way of playing a game without a player, such as pressing random keys or
+ * steering with an autopilot. A policy creates a KeySource for every game it
+ * plays.
+ *
+ * @see TournamentEvaluator
+ */
+public interface GamePolicy {
+	/**
+	 * Returns the name of the policy, as used in reports.
+	 */
+	public String getName();
+
+	/**
+	 * Creates the keystrokes of a single game. The same model state and seed
+	 * must always give the same keystrokes, so that games can be replayed.
+	 *
+	 * @param model
+	 *            The game to play, which may be inspected but not updated.
+	 * @param seed
+	 *            The seed of any randomness of the keystrokes.
+	 * @throws IllegalArgumentException
+	 *             if the policy can't play this game.
+	 */
+	public KeySource createKeySource(GameModel model, long seed);
+}
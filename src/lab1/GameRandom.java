@@ -0,0 +1,135 @@
+package lab1;
+
+/**
+ * The random generator of a game: SplitMix64, the algorithm of
+ * SplittableRandom, with a state which can be read and set again.
+ *
+ * A generator created with a seed returns exactly the numbers a
+ * SplittableRandom created with the same seed would. Its whole state is a
+ * single long, so a game can write it into a snapshot and carry on without
+ * touching the generator, and a game restored from the snapshot continues
+ * with the same numbers.
+ * <p>
+ * Not thread-safe; every model has its own.
+ */
+public final class GameRandom {
+
+	/** The increment of the state, as in SplittableRandom. */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/** The state, advanced by GOLDEN_GAMMA for every number drawn. */
+	private long state;
+
+	/**
+	 * Creates a generator.
+	 *
+	 * @param seed
+	 *            The seed, as given to SplittableRandom.
+	 */
+	public GameRandom(final long seed) {
+		this.state = seed;
+	}
+
+	/**
+	 * Returns the state of the generator, to be passed to setState() to
+	 * draw the same numbers again.
+	 */
+	public long getState() {
+		return this.state;
+	}
+
+	/**
+	 * Sets the state of the generator, as returned by getState(). Setting
+	 * the state to a seed starts over like a new generator with that seed.
+	 */
+	public void setState(final long state) {
+		this.state = state;
+	}
+
+	/**
+	 * @return a random int.
+	 */
+	public int nextInt() {
+		return mix32(nextSeed());
+	}
+
+	/**
+	 * @return a random long.
+	 */
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	/**
+	 * Returns a random int from 0, inclusive, to a bound, exclusive.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the bound is not positive.
+	 */
+	public int nextInt(final int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Invalid bound: " + bound);
+		}
+		int r = nextInt();
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			// A power of two: the low bits are as good as any.
+			return r & m;
+		}
+		// Reject the values of the last, incomplete, range of bound values.
+		for (int u = r >>> 1; u + m - (r = u % bound) < 0;
+				u = nextInt() >>> 1) {
+			// Draw again.
+		}
+		return r;
+	}
+
+	/**
+	 * Returns a random long from 0, inclusive, to a bound, exclusive.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the bound is not positive.
+	 */
+	public long nextLong(final long bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Invalid bound: " + bound);
+		}
+		long r = nextLong();
+		long m = bound - 1;
+		if ((bound & m) == 0) {
+			return r & m;
+		}
+		for (long u = r >>> 1; u + m - (r = u % bound) < 0;
+				u = nextLong() >>> 1) {
+			// Draw again.
+		}
+		return r;
+	}
+
+	/**
+	 * Advances the state and returns it.
+	 */
+	private long nextSeed() {
+		this.state += GOLDEN_GAMMA;
+		return this.state;
+	}
+
+	/**
+	 * Mixes the bits of a state into a long, as SplittableRandom does.
+	 */
+	private static long mix64(final long state) {
+		long z = state;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Mixes the bits of a state into an int, as SplittableRandom does.
+	 */
+	private static int mix32(final long state) {
+		long z = state;
+		z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+		return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+	}
+}
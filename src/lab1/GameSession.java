@@ -0,0 +1,173 @@
+package lab1;
+
+/**
+ * A headless game hosted by a GameHost.
+ *
+ * The model of a session is only ever touched by the shard thread which
+ * updates it. Other threads talk to the session through pressKey() and
+ * close(), and read its progress through the getters, which return copies
+ * published after every update.
+ */
+public class GameSession {
+
+	/** The life cycle of a session. */
+	public enum State {
+		/** Waiting to be picked up by its shard. */
+		STARTING,
+		/** Being updated on every tick. */
+		RUNNING,
+		/** The game has ended by itself. */
+		OVER,
+		/** The game was closed before it ended. */
+		CLOSED
+	}
+
+	/** The largest number of keypresses waiting to be processed. */
+	private static final int KEY_QUEUE_CAPACITY = 3;
+
+	/** The number of this session, unique within its host. */
+	private final long id;
+
+	/** The name of the game, as given by the factory. */
+	private final String gameName;
+
+	/** The game. Only used by the shard thread. */
+	private final GameModel model;
+
+	/** Keystrokes to play instead of the key queue, or null. */
+	private final KeySource keySource;
+
+	/** The key presses which so far haven't been processed. */
+	private final KeyQueue keypresses =
+			new KeyQueue(KEY_QUEUE_CAPACITY, KeyQueue.Policy.COALESCE);
+
+	/** Where the session is in its life cycle. */
+	private volatile State state = State.STARTING;
+
+	/** Set by close(), acted on by the shard thread. */
+	private volatile boolean closeRequested;
+
+	/** The score after the last update. */
+	private volatile int score;
+
+	/** The number of updates made. */
+	private volatile long tickCount;
+
+	GameSession(final long id, final String gameName, final GameModel model,
+			final KeySource keySource) {
+		this.id = id;
+		this.gameName = gameName;
+		this.model = model;
+		this.keySource = keySource;
+		this.score = model.getScore();
+	}
+
+	/**
+	 * Passes a key press on to the next update of the game. May be called
+	 * from any thread.
+	 *
+	 * @param key
+	 *            The key code, which must not be 0.
+	 * @return true if the key was queued, false if it was dropped because
+	 *         the session has ended or too many keys are waiting.
+	 */
+	public boolean pressKey(final int key) {
+		if (isEnded() || this.closeRequested) {
+			return false;
+		}
+		// The key queue has a single producer, one key at a time.
+		synchronized (this.keypresses) {
+			return this.keypresses.offer(key);
+		}
+	}
+
+	/**
+	 * Ends the session. The game is stopped before its next update. May be
+	 * called from any thread.
+	 */
+	public void close() {
+		this.closeRequested = true;
+	}
+
+	/** @return the number of this session, unique within its host. */
+	public long getId() {
+		return this.id;
+	}
+
+	/** @return the name of the game. */
+	public String getGameName() {
+		return this.gameName;
+	}
+
+	/** @return where the session is in its life cycle. */
+	public State getState() {
+		return this.state;
+	}
+
+	/** @return true if the game is over or has been closed. */
+	public boolean isEnded() {
+		State current = this.state;
+		return current == State.OVER || current == State.CLOSED;
+	}
+
+	/** @return the score after the last update. */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return the number of updates made. */
+	public long getTickCount() {
+		return this.tickCount;
+	}
+
+	/** @return the number of key presses which were dropped. */
+	public long getDroppedKeyCount() {
+		return this.keypresses.getDroppedKeyCount();
+	}
+
+	/**
+	 * Returns the model, for the shard thread to release it once the session
+	 * has ended.
+	 */
+	GameModel getModel() {
+		return this.model;
+	}
+
+	/**
+	 * Makes one update of the game. Only called by the shard thread.
+	 *
+	 * @return false if the session has ended and should not be updated
+	 *         again.
+	 */
+	boolean tick() {
+		if (this.closeRequested) {
+			this.state = State.CLOSED;
+			return false;
+		}
+		if (this.state == State.STARTING) {
+			this.state = State.RUNNING;
+		}
+		int key = this.keySource != null ? this.keySource.nextKey()
+				: this.keypresses.poll();
+		try {
+			this.model.gameUpdate(key);
+		} catch (GameOverException e) {
+			this.score = e.getScore();
+			this.tickCount++;
+			this.state = State.OVER;
+			return false;
+		}
+		// Nobody repaints a hosted game.
+		this.model.clearChangedCells();
+		this.score = this.model.getScore();
+		this.tickCount++;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return this.gameName + " session " + this.id + ": " + this.state
+				+ ", score " + this.score + " after " + this.tickCount
+				+ " ticks";
+	}
+}
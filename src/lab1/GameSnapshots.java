@@ -0,0 +1,223 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checkpoints many games into a single file and restores them, through
+ * memory-mapped buffers so that the games are written straight into the
+ * page cache instead of being copied through streams.
+ *
+ * The file starts with a header, followed by one record per game. All
+ * numbers are big-endian:
+ *
+ * <pre>
+ * int    MAGIC
+ * short  VERSION
+ * int    number of games
+ * per game:
+ *   int    length of the rest of the record
+ *   short  length of the game name, then the name in UTF-8
+ *   int    width, int height
+ *   the bits written by GameModel.writeSnapshot, padded to whole bytes
+ * </pre>
+ *
+ * Snapshots must be written on the thread which updates the games. Writing
+ * a snapshot leaves the game as it was.
+ */
+public final class GameSnapshots {
+
+	/** The first four bytes of a snapshot file, "L1SN". */
+	public static final int MAGIC = 0x4C31534E;
+
+	/**
+	 * The version of the format written. Version 2 added the state of the
+	 * random generator after the seed, version 3 the free cells of Gold.
+	 */
+	public static final short VERSION = 3;
+
+	/** The bytes of the magic number, the version and the game count. */
+	private static final int HEADER_SIZE = 4 + 2 + 4;
+
+	/** The least number of bytes mapped at a time while writing. */
+	private static final int MIN_WINDOW_SIZE = 1 << 20;
+
+	/** The bytes of a record before the name and the snapshot. */
+	private static final int RECORD_HEADER_SIZE = 4 + 2 + 4 + 4;
+
+	private GameSnapshots() {
+		// Only static methods.
+	}
+
+	/**
+	 * Writes the snapshots of a number of games to a file, replacing it.
+	 *
+	 * @param file
+	 *            The file to write.
+	 * @param gameNames
+	 *            The name of each game, as given by the factory.
+	 * @param models
+	 *            The games, in the same order as their names.
+	 * @throws IOException
+	 *             if the file can't be written.
+	 * @throws IllegalArgumentException
+	 *             if there are not as many names as games, or a record is
+	 *             too large to be mapped.
+	 */
+	public static void save(final Path file, final String[] gameNames,
+			final GameModel[] models) throws IOException {
+		if (gameNames.length != models.length) {
+			throw new IllegalArgumentException(gameNames.length
+					+ " names for " + models.length + " games");
+		}
+		FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			long windowStart = 0;
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE,
+					windowStart, MIN_WINDOW_SIZE);
+			window.putInt(MAGIC);
+			window.putShort(VERSION);
+			window.putInt(models.length);
+			for (int i = 0; i < models.length; i++) {
+				byte[] name = gameNames[i].getBytes(StandardCharsets.UTF_8);
+				long size = recordSize(name, models[i]);
+				if (size > window.remaining()) {
+					// Map a window from the start of the record, large
+					// enough for it.
+					if (size > Integer.MAX_VALUE) {
+						throw new IllegalArgumentException(
+								"Snapshot too large: " + size + " bytes");
+					}
+					window.force();
+					windowStart += window.position();
+					window = channel.map(FileChannel.MapMode.READ_WRITE,
+							windowStart, Math.max(MIN_WINDOW_SIZE, size));
+				}
+				writeRecord(window, name, models[i]);
+			}
+			window.force();
+			// Mapping grows the file to the end of the window.
+			channel.truncate(windowStart + window.position());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the record of a single game, by writing
+	 * its snapshot without keeping it.
+	 */
+	private static long recordSize(final byte[] name, final GameModel model) {
+		SnapshotWriter counter = new SnapshotWriter();
+		model.writeSnapshot(counter);
+		return RECORD_HEADER_SIZE + name.length + counter.getByteCount();
+	}
+
+	/**
+	 * Writes the record of a single game.
+	 */
+	private static void writeRecord(final ByteBuffer out, final byte[] name,
+			final GameModel model) {
+		int start = out.position();
+		Dimension size = model.getGameboardSize();
+		out.putInt(0);
+		out.putShort((short) name.length);
+		out.put(name);
+		out.putInt(size.width);
+		out.putInt(size.height);
+		model.writeSnapshot(new SnapshotWriter(out));
+		out.putInt(start, out.position() - start - 4);
+	}
+
+	/**
+	 * Restores all games of a snapshot file.
+	 *
+	 * @param file
+	 *            The file to read.
+	 * @param gameFactory
+	 *            The factory creating the games, which are then overwritten
+	 *            with their snapshots.
+	 * @return the games, in the order they were saved.
+	 * @throws SnapshotException
+	 *             if the file is not a valid snapshot file.
+	 * @throws IOException
+	 *             if the file can't be read.
+	 */
+	public static GameModel[] load(final Path file,
+			final IGameFactory gameFactory) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new SnapshotException("Snapshot file too large: "
+						+ channel.size());
+			}
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			try {
+				if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+					throw new SnapshotException("Not a snapshot file");
+				}
+				short version = in.getShort();
+				if (version != VERSION) {
+					throw new SnapshotException("Unknown snapshot version: "
+							+ version);
+				}
+				int count = in.getInt();
+				if (count < 0) {
+					throw new SnapshotException("Invalid game count: " + count);
+				}
+				GameModel[] models = new GameModel[count];
+				for (int i = 0; i < count; i++) {
+					models[i] = readRecord(in, gameFactory);
+				}
+				return models;
+			} catch (BufferUnderflowException e) {
+				throw new SnapshotException("Snapshot file is truncated");
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads the record of a single game.
+	 */
+	private static GameModel readRecord(final ByteBuffer in,
+			final IGameFactory gameFactory) throws SnapshotException {
+		int length = in.getInt();
+		if (length < 0 || length > in.remaining()) {
+			throw new SnapshotException("Invalid record length: " + length);
+		}
+		ByteBuffer record = in.slice();
+		record.limit(length);
+		in.position(in.position() + length);
+
+		byte[] name = new byte[record.getShort() & 0xFFFF];
+		record.get(name);
+		String gameName = new String(name, StandardCharsets.UTF_8);
+		Dimension size = new Dimension(record.getInt(), record.getInt());
+
+		GameModel model;
+		try {
+			model = gameFactory.createGame(gameName, size, 0L);
+		} catch (IllegalArgumentException e) {
+			throw new SnapshotException("Can't restore " + gameName + " "
+					+ size.width + "x" + size.height + ": " + e.getMessage());
+		}
+		model.readSnapshot(new SnapshotReader(record));
+		if (record.hasRemaining()) {
+			throw new SnapshotException("Invalid record of " + gameName);
+		}
+		return model;
+	}
+}
@@ -1,5 +1,6 @@
 package lab1;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 
@@ -11,6 +12,24 @@ import java.awt.Graphics;
  */
 public class GameTile {
 
+	/** The ID of this tile in the TileRegistry. */
+	private final int id = TileRegistry.register(this);
+
+	/**
+	 * Returns the ID this tile is stored as in the gameboard.
+	 */
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the colour of the tile when cells are shown a pixel or less
+	 * large, or null if the tile is transparent.
+	 */
+	public Color getMinimapColor() {
+		return null;
+	}
+
 	/**
 	 * Draws itself in a given graphics context, position and size.
 	 * 
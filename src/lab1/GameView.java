@@ -1,32 +1,78 @@
 package lab1;
 
 import java.awt.Color;
+import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
+import javax.swing.AbstractAction;
 import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 
 /**
  * A view Component suitable for inclusion in an AWT Frame. Paints itself by
  * consulting its model.
+ * <p>
+ * Only the tiles inside the clip are painted, so inside a JScrollPane the
+ * cost of painting follows the visible area rather than the gameboard. The
+ * view can be zoomed, with Ctrl and the mouse wheel or Ctrl +/-, from large
+ * tiles down to a pixel per cell. Below that, the coarser levels of detail of
+ * the BoardFrame are shown, one pixel per block of cells.
  */
-public class GameView extends JComponent {
+public class GameView extends JComponent implements IGameView {
 
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1534474796794225462L;
 
+	/** Height of the area at the top of the view where the score is shown */
+	private static final int SCORE_AREA_HEIGHT = 28;
+
+	/** Pixels around a tile which are repainted together with it */
+	private static final int TILE_MARGIN = 2;
+
+	/** The tile sides zoomed through before showing levels of detail */
+	private static final int[] ZOOM_TILE_SIDES =
+			{ 48, 40, 32, 24, 16, 12, 8, 6, 4, 3, 2 };
+
 	/** Size of game model */
-	private final Dimension modelSize;
+	private Dimension modelSize;
 
 	/** Size of every tile in the model */
 	private final Dimension tileSize;
 
-	/** The game model which is drawn */
-	private GameModel model;
+	/**
+	 * The level of detail shown a pixel per cell, or -1 if tiles of tileSize
+	 * are shown instead.
+	 */
+	private int detailLevel = -1;
+
+	/** Holds the pixels of the level of detail being painted */
+	private BufferedImage detailImage;
+
+	/** The copies of the gameboard which are drawn, or null */
+	private BoardExchange board;
+
+	/** Where the time spent painting is recorded, or null */
+	private GameMetrics metrics;
+
+	/** When the last frame with a game started painting (nanos), or 0 */
+	private long lastFrameStart;
+
+	/** Pre-rasterized images of the tiles, at the current tile size */
+	private final TileSpriteCache sprites = new TileSpriteCache(TILE_MARGIN);
 
 	/** The offscreen buffer */
 	private Graphics offscreenGraphics;
@@ -49,31 +95,285 @@ public class GameView extends JComponent {
 	 */
 	public GameView(final int tileSide) {
 		this.tileSize = new Dimension(tileSide, tileSide);
-		this.modelSize = Constants.getGameSize();
-		Dimension preferredSize =
-				new Dimension(this.modelSize.width * tileSide,
-						this.modelSize.height * tileSide);
-		setPreferredSize(preferredSize);
+		setModelSize(Constants.getGameSize());
+
+		getInputMap().put(KeyStroke.getKeyStroke("ctrl EQUALS"), "zoomIn");
+		getInputMap().put(KeyStroke.getKeyStroke("ctrl PLUS"), "zoomIn");
+		getInputMap().put(KeyStroke.getKeyStroke("ctrl ADD"), "zoomIn");
+		getInputMap().put(KeyStroke.getKeyStroke("ctrl MINUS"), "zoomOut");
+		getInputMap().put(KeyStroke.getKeyStroke("ctrl SUBTRACT"), "zoomOut");
+		getActionMap().put("zoomIn", new AbstractAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				zoom(-1);
+			}
+		});
+		getActionMap().put("zoomOut", new AbstractAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				zoom(1);
+			}
+		});
+		addMouseWheelListener(new MouseWheelListener() {
+			@Override
+			public void mouseWheelMoved(final MouseWheelEvent e) {
+				if (e.isControlDown()) {
+					zoom(e.getWheelRotation() > 0 ? 1 : -1);
+				} else if (getParent() != null) {
+					// Listening to the wheel keeps it from scrolling, so pass
+					// it on.
+					getParent().dispatchEvent(SwingUtilities.convertMouseEvent(
+							GameView.this, e, getParent()));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Updates the view with the gameboard of a new game. Called on the event
+	 * dispatch thread only.
+	 * 
+	 * @param board
+	 *            Hands over the gameboard after every update, or null if no
+	 *            game is running.
+	 * @param size
+	 *            The size of the gameboard, or null to keep the size.
+	 */
+	@Override
+	public void setBoard(final BoardExchange board, final Dimension size) {
+		this.board = board;
+		if (board != null) {
+			board.setLevelsWanted(this.detailLevel > 0);
+		}
+		this.lastFrameStart = 0;
+		if (size != null && !size.equals(this.modelSize)) {
+			setModelSize(size);
+			revalidate();
+		}
+		repaint();
+	}
+
+	/**
+	 * Sets where the number of frames and the time spent painting them are
+	 * recorded.
+	 * 
+	 * @param metrics
+	 *            the metrics to record into, or null.
+	 */
+	@Override
+	public void setMetrics(final GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Changes the size of every GameObject, and shows tiles rather than a
+	 * level of detail.
+	 * 
+	 * @param tileSide
+	 *            side length in pixels of each GameObject.
+	 */
+	public void setTileSide(final int tileSide) {
+		if (tileSide <= 0) {
+			throw new IllegalArgumentException("Invalid tile side: "
+					+ tileSide);
+		}
+		this.tileSize.setSize(tileSide, tileSide);
+		this.detailLevel = -1;
+		zoomChanged();
+	}
+
+	/**
+	 * Shows a level of detail of the gameboard, a pixel per block of
+	 * 2^level by 2^level cells, rather than tiles.
+	 * 
+	 * @param level
+	 *            the level of detail, 0 for a pixel per cell. Levels beyond
+	 *            the coarsest of the gameboard show the coarsest.
+	 */
+	public void setDetailLevel(final int level) {
+		if (level < 0) {
+			throw new IllegalArgumentException("Invalid level of detail: "
+					+ level);
+		}
+		this.detailLevel = Math.min(level, BoardFrame.getLevelCount(
+				this.modelSize.width, this.modelSize.height) - 1);
+		zoomChanged();
+	}
+
+	/**
+	 * Picks the largest zoom at which the whole gameboard fits into an area.
+	 * 
+	 * @param area
+	 *            the size of the area in pixels.
+	 */
+	public void zoomToFit(final Dimension area) {
+		for (int tileSide : ZOOM_TILE_SIDES) {
+			if ((long) this.modelSize.width * tileSide <= area.width
+					&& (long) this.modelSize.height * tileSide <= area.height) {
+				setTileSide(tileSide);
+				return;
+			}
+		}
+		int levels = BoardFrame.getLevelCount(this.modelSize.width,
+				this.modelSize.height);
+		int level = 0;
+		while (level < levels - 1 && (detailWidth(level) > area.width
+				|| detailHeight(level) > area.height)) {
+			level++;
+		}
+		setDetailLevel(level);
+	}
+
+	/**
+	 * Zooms in or out by a number of steps, going through ZOOM_TILE_SIDES and
+	 * then the levels of detail.
+	 * 
+	 * @param steps
+	 *            the number of steps, positive to zoom out.
+	 */
+	public void zoom(final int steps) {
+		int levels = BoardFrame.getLevelCount(this.modelSize.width,
+				this.modelSize.height);
+		int current;
+		if (this.detailLevel >= 0) {
+			current = ZOOM_TILE_SIDES.length + this.detailLevel;
+		} else {
+			current = 0;
+			while (current < ZOOM_TILE_SIDES.length - 1
+					&& ZOOM_TILE_SIDES[current] > this.tileSize.width) {
+				current++;
+			}
+		}
+		int next = Math.max(0, Math.min(ZOOM_TILE_SIDES.length + levels - 1,
+				current + steps));
+		if (next == current) {
+			return;
+		}
+
+		// Keep the centre of what is shown in the centre.
+		Container parent = getParent();
+		JViewport viewport = parent instanceof JViewport
+				? (JViewport) parent : null;
+		double centerX = 0.5;
+		double centerY = 0.5;
+		if (viewport != null && getWidth() > 0 && getHeight() > 0) {
+			Rectangle visible = viewport.getViewRect();
+			centerX = (visible.x + visible.width / 2.0) / getWidth();
+			centerY = (visible.y + visible.height / 2.0) / getHeight();
+		}
+		if (next < ZOOM_TILE_SIDES.length) {
+			setTileSide(ZOOM_TILE_SIDES[next]);
+		} else {
+			setDetailLevel(next - ZOOM_TILE_SIDES.length);
+		}
+		if (viewport != null) {
+			Dimension size = getPreferredSize();
+			viewport.setViewSize(size);
+			Dimension extent = viewport.getExtentSize();
+			viewport.setViewPosition(new Point(
+					clamp((int) (centerX * size.width) - extent.width / 2,
+							size.width - extent.width),
+					clamp((int) (centerY * size.height) - extent.height / 2,
+							size.height - extent.height)));
+		}
+	}
+
+	private static int clamp(final int value, final int max) {
+		return Math.max(0, Math.min(value, max));
 	}
 
 	/**
-	 * Updates the view with a new model.
+	 * Updates the preferred size after a change of zoom, and repaints.
 	 */
-	public void setModel(final GameModel model) {
-		this.model = model;
+	private void zoomChanged() {
+		if (this.board != null) {
+			this.board.setLevelsWanted(this.detailLevel > 0);
+		}
+		setModelSize(this.modelSize);
+		revalidate();
 		repaint();
 	}
 
+	/** Returns the width in pixels of a level of detail. */
+	private int detailWidth(final int level) {
+		return (int) ((this.modelSize.width + (1L << level) - 1) >> level);
+	}
+
+	/** Returns the height in pixels of a level of detail. */
+	private int detailHeight(final int level) {
+		return (int) ((this.modelSize.height + (1L << level) - 1) >> level);
+	}
+
+	/**
+	 * Sets the size of the gameboard and the preferred size of the view.
+	 */
+	private void setModelSize(final Dimension size) {
+		// Dimension is a mutable class, copy to prevent mutation.
+		this.modelSize = new Dimension(size);
+		Dimension preferredSize;
+		if (this.detailLevel >= 0) {
+			this.detailLevel = Math.min(this.detailLevel, BoardFrame
+					.getLevelCount(size.width, size.height) - 1);
+			preferredSize = new Dimension(detailWidth(this.detailLevel),
+					detailHeight(this.detailLevel));
+		} else {
+			preferredSize = new Dimension(
+					(int) Math.min(Integer.MAX_VALUE,
+							(long) this.modelSize.width * this.tileSize.width),
+					(int) Math.min(Integer.MAX_VALUE,
+							(long) this.modelSize.height * this.tileSize.height));
+		}
+		setPreferredSize(preferredSize);
+	}
+
+	/**
+	 * Schedules a repaint of a single tile of the gameboard.
+	 * 
+	 * @param x
+	 *            Coordinate in the gameboard matrix.
+	 * @param y
+	 *            Coordinate in the gameboard matrix.
+	 */
+	@Override
+	public void repaintTile(final int x, final int y) {
+		if (this.detailLevel >= 0) {
+			repaint(x >> this.detailLevel, y >> this.detailLevel, 1, 1);
+			return;
+		}
+		// Include a margin, since thick strokes may reach outside a tile.
+		repaint(x * this.tileSize.width - TILE_MARGIN,
+				y * this.tileSize.height - TILE_MARGIN,
+				this.tileSize.width + 2 * TILE_MARGIN,
+				this.tileSize.height + 2 * TILE_MARGIN);
+	}
+
+	/**
+	 * Schedules a repaint of the area where the score is shown.
+	 */
+	@Override
+	public void repaintScore() {
+		Rectangle visible = getVisibleRect();
+		repaint(visible.x, visible.y, visible.width, SCORE_AREA_HEIGHT);
+	}
+
 	/**
 	 * This method ensures that the painting is performed double-buffered. This
 	 * means there won't be any flicker when repainting all the time.
 	 */
 	@Override
 	public void update(final Graphics g) {
-		// Create an offscreen buffer (if we don't have one)
-		if (this.offscreenImage == null) {
-			Dimension size = getSize();
-
+		// Create an offscreen buffer (if we don't have one of the right size)
+		Dimension size = getSize();
+		if (this.offscreenImage == null
+				|| this.offscreenImage.getWidth(null) != size.width
+				|| this.offscreenImage.getHeight(null) != size.height) {
+			if (this.offscreenGraphics != null) {
+				this.offscreenGraphics.dispose();
+			}
 			this.offscreenImage = createImage(size.width, size.height);
 			this.offscreenGraphics = this.offscreenImage.getGraphics();
 		}
@@ -86,38 +386,66 @@ public class GameView extends JComponent {
 	}
 
 	/**
-	 * Consults the model to paint the game matrix. If model is null, draws a
-	 * default text.
+	 * Paints the latest copy of the gameboard. If no game is running, draws a
+	 * default text. Only the tiles inside the clip of the graphics context are
+	 * drawn, and the score is drawn at the top of the visible area.
 	 */
 	@Override
 	public void paintComponent(final Graphics g) {
 		// Check if we have a running game
 		super.paintComponent(g);
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
 		g.setColor(this.getBackground());
-		g.fillRect(0, 0, getWidth(), getHeight());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
 
-		if (this.model != null) {
+		if (this.board != null) {
+			long start = System.nanoTime();
+			BoardFrame frame = this.board.latest();
 			
 			/*
-			 * Show the current score in the graphics context. Requires a
-			 * getter method in the model (forced by having an abstract
-			 * 'getScore' method in GameModel).
+			 * Show the current score in the graphics context, as copied
+			 * from the model (forced by having an abstract 'getScore'
+			 * method in GameModel).
 			 */
+			if (this.detailLevel >= 0) {
+				// Opaque, so drawn below the score.
+				paintDetailLevel(g, frame, clip);
+			}
 			g.setColor(Color.BLACK);
 			g.setFont(new Font("Sans", Font.BOLD, 14));
 			
-			String scoreString = (this.model.getScore() == 1) ? "point" : "points";
-			g.drawString(this.model.getScore() + " " + scoreString, 10, 20);
-			
-			// Draw all tiles by going over them x-wise and y-wise.
-			for (int i = 0; i < this.modelSize.width; i++) {
-				for (int j = 0; j < this.modelSize.height; j++) {
-					GameTile tile = this.model.getGameboardState(i, j);
-					tile.draw(g, i * this.tileSize.width, j
-							* this.tileSize.height,
-							this.tileSize);
+			String scoreString = (frame.getScore() == 1) ? "point" : "points";
+			Rectangle visible = getVisibleRect();
+			g.drawString(frame.getScore() + " " + scoreString,
+					visible.x + 10, visible.y + 20);
+
+			if (this.detailLevel >= 0) {
+				recordFrame(start);
+				return;
+			}
+
+			// Draw the tiles reaching into the clip by going over them
+			// x-wise and y-wise.
+			int firstColumn = Math.max(0,
+					(clip.x - TILE_MARGIN) / this.tileSize.width);
+			int firstRow = Math.max(0,
+					(clip.y - TILE_MARGIN) / this.tileSize.height);
+			int lastColumn = Math.min(frame.getWidth() - 1,
+					(clip.x + clip.width + TILE_MARGIN) / this.tileSize.width);
+			int lastRow = Math.min(frame.getHeight() - 1,
+					(clip.y + clip.height + TILE_MARGIN) / this.tileSize.height);
+			this.sprites.prepare(g, this.tileSize);
+			for (int i = firstColumn; i <= lastColumn; i++) {
+				for (int j = firstRow; j <= lastRow; j++) {
+					this.sprites.draw(g, frame.getTileId(i, j),
+							i * this.tileSize.width, j * this.tileSize.height);
 				}
 			}
+
+			recordFrame(start);
 		} else {
 			g.setFont(new Font("Sans", Font.BOLD, 24));
 			g.setColor(Color.BLACK);
@@ -125,4 +453,61 @@ public class GameView extends JComponent {
 			g.drawChars(message, 0, message.length, 50, 50);
 		}
 	}
+
+	/**
+	 * Paints the part of the current level of detail inside the clip, a pixel
+	 * per cell of the level. The pixels are written straight into an image,
+	 * which is drawn at once.
+	 */
+	private void paintDetailLevel(final Graphics g, final BoardFrame frame,
+			final Rectangle clip) {
+		int level = Math.min(this.detailLevel, frame.getLevelCount() - 1);
+		int left = Math.max(0, clip.x);
+		int top = Math.max(0, clip.y);
+		int right = Math.min(frame.getLevelWidth(level), clip.x + clip.width);
+		int bottom = Math.min(frame.getLevelHeight(level), clip.y + clip.height);
+		if (left >= right || top >= bottom) {
+			return;
+		}
+		int width = right - left;
+		int height = bottom - top;
+		if (this.detailImage == null || this.detailImage.getWidth() < width
+				|| this.detailImage.getHeight() < height) {
+			this.detailImage = new BufferedImage(
+					Math.max(width, getVisibleRect().width),
+					Math.max(height, getVisibleRect().height),
+					BufferedImage.TYPE_INT_RGB);
+		}
+		int[] pixels = ((DataBufferInt) this.detailImage.getRaster()
+				.getDataBuffer()).getData();
+		int stride = this.detailImage.getWidth();
+		int background = getBackground() == null ? Color.WHITE.getRGB()
+				: getBackground().getRGB();
+		for (int y = 0; y < height; y++) {
+			int row = y * stride;
+			for (int x = 0; x < width; x++) {
+				int color = frame.getMinimapColor(
+						frame.getLevelTileId(level, left + x, top + y));
+				pixels[row + x] = color == 0 ? background : color;
+			}
+		}
+		g.drawImage(this.detailImage, left, top, right, bottom, 0, 0, width,
+				height, null);
+	}
+
+	/**
+	 * Records the time spent painting a frame, and the time since the
+	 * previous one.
+	 */
+	private void recordFrame(final long start) {
+		if (this.metrics != null) {
+			this.metrics.getPaintDuration().record(System.nanoTime() - start);
+			if (this.lastFrameStart != 0) {
+				this.metrics.getFrameInterval().record(
+						start - this.lastFrameStart);
+			}
+			this.metrics.countFrame();
+		}
+		this.lastFrameStart = start;
+	}
 }
@@ -3,8 +3,6 @@ package lab1;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.event.KeyEvent;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Sample game for illustration. Intentionally stupid; more interesting
@@ -15,6 +13,11 @@ import java.util.List;
  * coin is randomly moved to a new position every n moves, where n is the number
  * of remaining coins. The game is won when all coins are collected and lost when
  * collector leaves game board.
+ * <p>
+ * Nothing is kept for every cell beside the chunks of the gameboard in use,
+ * so even a board of a million by a million cells starts at once. The cells
+ * a coin may be placed on are kept in a SparseFreeCellIndex, so moving a
+ * coin takes constant time however large or full the gameboard is.
  */
 public class GoldModel extends GameModel {
 	public enum Directions {
@@ -43,7 +46,8 @@ public class GoldModel extends GameModel {
 	
 	
 
-	private static final int COIN_START_AMOUNT = 20;
+	/** The default number of coins on the gameboard */
+	static final int COIN_START_AMOUNT = 20;
 
 	/*
 	 * The following GameTile objects are used only
@@ -68,19 +72,38 @@ public class GoldModel extends GameModel {
 	/** Graphical representation of a blank tile. */
 	private static final GameTile BLANK_TILE = new GameTile();
 
-	/** A list containing the positions of all coins. */
-	private final List<Position> coins = new ArrayList<Position>();
-	/*
-	 * The declaration and object creation above uses the new language feature
-	 * 'generic types'. It can be declared in the old way like this:
-	 * private java.util.List coins = new ArrayList();
-	 * This will however result in a warning at compilation
-	 * "Position" in this case is the type of the objects that are going
-	 * to be used in the List
+	/** The tiles in the order they are stored in snapshots. */
+	private static final GameTile[] SNAPSHOT_TILES =
+			{ BLANK_TILE, COLLECTOR_TILE, COIN_TILE };
+
+	/**
+	 * The cells of all coins, oldest first, each as its x coordinate followed
+	 * by its y coordinate. A collected coin stays in the queue until it
+	 * reaches the front, where it is skipped.
 	 */
+	private final IntRingBuffer coins;
+
+	/**
+	 * 1 at the cells of collected coins which are still in the queue, 0
+	 * elsewhere. No new coin is placed on such a cell until its old coin has
+	 * left the queue.
+	 */
+	private final ChunkedBoard collectedCells;
+
+	/** The cells a new coin may be placed on. */
+	private final SparseFreeCellIndex freeCells;
+
+	/** The number of coins on the gameboard. */
+	private int coinCount;
 
-	/** The position of the collector. */
-	private Position collectorPos;
+	/** The number of coins at the start of the game. */
+	private final int coinAmount;
+
+	/** The x coordinate of the collector. */
+	private int collectorX;
+
+	/** The y coordinate of the collector. */
+	private int collectorY;
 
 	/** The direction of the collector. */
 	private Directions direction = Directions.NORTH;
@@ -89,24 +112,90 @@ public class GoldModel extends GameModel {
 	private int score;
 
 	/**
-	 * Create a new model for the gold game.
+	 * Create a new model for the gold game, using the default size.
 	 */
 	public GoldModel() {
+		this(Constants.getGameSize());
+	}
+
+	/**
+	 * Create a new model for the gold game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 */
+	public GoldModel(final Dimension boardSize) {
+		this(boardSize, COIN_START_AMOUNT);
+	}
+
+	/**
+	 * Create a new model for the gold game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param coinAmount
+	 *            The number of coins on the game board.
+	 * @throws IllegalArgumentException
+	 *             if the coins don't fit beside the collector.
+	 */
+	public GoldModel(final Dimension boardSize, final int coinAmount) {
+		this(boardSize, coinAmount, newSeed());
+	}
+
+	/**
+	 * Create a new model for the gold game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param coinAmount
+	 *            The number of coins on the game board.
+	 * @param seed
+	 *            The seed of the random coin placement.
+	 * @throws IllegalArgumentException
+	 *             if the coins don't fit beside the collector.
+	 */
+	public GoldModel(final Dimension boardSize, final int coinAmount,
+			final long seed) {
+		super(boardSize, seed);
+		if (coinAmount < 0
+				|| coinAmount >= (long) boardSize.width * boardSize.height) {
+			throw new IllegalArgumentException("Invalid coin amount: "
+					+ coinAmount);
+		}
+		this.coinAmount = coinAmount;
+		this.coins = new IntRingBuffer(2 * coinAmount);
+		this.collectedCells =
+				new ChunkedBoard(boardSize.width, boardSize.height);
+		this.freeCells =
+				new SparseFreeCellIndex(boardSize.width, boardSize.height);
+		resetGame();
+	}
+
+	/**
+	 * Puts the collector back in the middle of a blank gameboard, with new
+	 * coins.
+	 */
+	@Override
+	protected void resetGame() {
 		Dimension size = getGameboardSize();
 
 		// Blank out the whole gameboard
-		for (int i = 0; i < size.width; i++) {
-			for (int j = 0; j < size.height; j++) {
-				setGameboardState(i, j, BLANK_TILE);
-			}
-		}
+		fillGameboard(BLANK_TILE);
+		this.collectedCells.fill(0);
+		this.freeCells.addAll();
 
 		// Insert the collector in the middle of the gameboard.
-		this.collectorPos = new Position(size.width / 2, size.height / 2);
-		setGameboardState(this.collectorPos, COLLECTOR_TILE);
+		this.collectorX = size.width / 2;
+		this.collectorY = size.height / 2;
+		setGameboardState(this.collectorX, this.collectorY, COLLECTOR_TILE);
+		this.freeCells.remove(this.collectorX, this.collectorY);
+		this.direction = Directions.NORTH;
+		this.score = 0;
 
 		// Insert coins into the gameboard.
-		for (int i = 0; i < COIN_START_AMOUNT; i++) {
+		this.coins.clear();
+		this.coinCount = 0;
+		for (int i = 0; i < this.coinAmount; i++) {
 			addCoin();
 		}
 	}
@@ -115,28 +204,108 @@ public class GoldModel extends GameModel {
 	 * Insert another coin into the gameboard.
 	 */
 	private void addCoin() {
-		Position newCoinPos;
-		Dimension size = getGameboardSize();
-		// Loop until a blank position is found and ...
-		do {
-			newCoinPos = new Position((int) (Math.random() * size.width),
-										(int) (Math.random() * size.height));
-		} while (!isPositionEmpty(newCoinPos));
+		// Pick a random free cell and ...
+		long free = this.freeCells.size();
+		long cell = this.freeCells.get(free <= Integer.MAX_VALUE
+				? getRandom().nextInt((int) free)
+				: getRandom().nextLong(free));
+		int x = this.freeCells.cellX(cell);
+		int y = this.freeCells.cellY(cell);
 
 		// ... add a new coin to the empty tile.
-		setGameboardState(newCoinPos, COIN_TILE);
-		this.coins.add(newCoinPos);
+		setGameboardState(x, y, COIN_TILE);
+		this.freeCells.remove(x, y);
+		this.coins.addLast(x);
+		this.coins.addLast(y);
+		this.coinCount++;
 	}
 
 	/**
-	 * Return whether the specified position is empty.
+	 * Return whether a new coin may be placed on the specified cell.
 	 * 
-	 * @param pos
-	 *            The position to test.
-	 * @return true if position is empty.
+	 * @param x
+	 *            The x coordinate of the cell to test.
+	 * @param y
+	 *            The y coordinate of the cell to test.
+	 * @return true if the cell is empty.
+	 */
+	private boolean isCellEmpty(final int x, final int y) {
+		return getGameboardState(x, y) == BLANK_TILE
+				&& this.collectedCells.get(x, y) == 0;
+	}
+
+	/**
+	 * Adds a cell to the free cells or removes it, after its tile or its
+	 * collected coin has changed.
+	 */
+	private void updateFreeCell(final int x, final int y) {
+		if (isCellEmpty(x, y)) {
+			this.freeCells.add(x, y);
+		} else {
+			this.freeCells.remove(x, y);
+		}
+	}
+
+	@Override
+	protected GameTile[] getSnapshotTiles() {
+		return SNAPSHOT_TILES.clone();
+	}
+
+	/**
+	 * Writes the direction, the score, the collector, the queue of coins,
+	 * each with a bit telling whether it has been collected, and the free
+	 * cells, so that a restored game places its coins on the same cells.
 	 */
-	private boolean isPositionEmpty(final Position pos) {
-		return (getGameboardState(pos) == BLANK_TILE);
+	@Override
+	protected void writeGameState(final SnapshotWriter out) {
+		out.writeBits(this.direction.ordinal(), 3);
+		out.writeInt(this.score);
+		int width = getGameboardSize().width;
+		out.writeCell(this.collectorY * width + this.collectorX);
+		out.writeInt(this.coins.size() / 2);
+		for (int i = 0; i < this.coins.size(); i += 2) {
+			int x = this.coins.get(i);
+			int y = this.coins.get(i + 1);
+			out.writeCell(y * width + x);
+			out.writeBoolean(this.collectedCells.get(x, y) != 0);
+		}
+		this.freeCells.writeState(out);
+	}
+
+	@Override
+	protected void readGameState(final SnapshotReader in)
+			throws SnapshotException {
+		Directions[] directions = Directions.values();
+		int ordinal = in.readBits(3);
+		if (ordinal >= directions.length) {
+			throw new SnapshotException("Invalid direction: " + ordinal);
+		}
+		this.direction = directions[ordinal];
+		this.score = in.readInt();
+		int width = getGameboardSize().width;
+		int collector = in.readCell();
+		this.collectorX = collector % width;
+		this.collectorY = collector / width;
+		int queued = in.readInt();
+		if (queued < 0) {
+			throw new SnapshotException("Invalid coin count: " + queued);
+		}
+		this.coins.clear();
+		this.collectedCells.fill(0);
+		this.coinCount = 0;
+		for (int i = 0; i < queued; i++) {
+			int cell = in.readCell();
+			int x = cell % width;
+			int y = cell / width;
+			this.coins.addLast(x);
+			this.coins.addLast(y);
+			if (in.readBoolean()) {
+				this.collectedCells.set(x, y, 1);
+			} else {
+				this.coinCount++;
+			}
+		}
+		this.freeCells.readState(in);
 	}
 
 	/**
@@ -164,14 +333,6 @@ public class GoldModel extends GameModel {
 		}
 	}
 
-	/**
-	 * Get next position of the collector.
-	 */
-	private Position getNextCollectorPos() {
-		return new Position(
-				this.collectorPos.getX() + this.direction.getXDelta(),
-				this.collectorPos.getY() + this.direction.getYDelta());
-	}
 
 	/**
 	 * This method is called repeatedly so that the
@@ -185,44 +346,66 @@ public class GoldModel extends GameModel {
 		updateDirection(lastKey);
 
 		// Erase the previous position.
-		setGameboardState(this.collectorPos, BLANK_TILE);
+		setGameboardState(this.collectorX, this.collectorY, BLANK_TILE);
+		updateFreeCell(this.collectorX, this.collectorY);
 		// Change collector position.
-		this.collectorPos = getNextCollectorPos();
+		this.collectorX += this.direction.getXDelta();
+		this.collectorY += this.direction.getYDelta();
 
-		if (isOutOfBounds(this.collectorPos)) {
+		if (isOutOfBounds(this.collectorX, this.collectorY)) {
 			throw new GameOverException(this.score);
 		}
-		// Draw collector at new position.
-		setGameboardState(this.collectorPos, COLLECTOR_TILE);
 
 		// Remove the coin at the new collector position (if any)
-		if (this.coins.remove(this.collectorPos)) {
+		if (getGameboardState(this.collectorX, this.collectorY) == COIN_TILE) {
+			this.collectedCells.set(this.collectorX, this.collectorY, 1);
+			this.coinCount--;
 			this.score+=2;
 		}
 
+		// Draw collector at new position.
+		setGameboardState(this.collectorX, this.collectorY, COLLECTOR_TILE);
+		this.freeCells.remove(this.collectorX, this.collectorY);
+
 		// Check if all coins are found
-		if (this.coins.isEmpty()) {
+		if (this.coinCount == 0) {
 			throw new GameOverException(this.score + 5);
 		}
 
-		// Remove one of the coins
-		Position oldCoinPos = this.coins.get(0);
-		this.coins.remove(0);
-		setGameboardState(oldCoinPos, BLANK_TILE);
+		moveOldestCoin();
+	}
+
+	/**
+	 * Moves the oldest coin to a new random position. Package-private so that
+	 * coin placement can be benchmarked on its own.
+	 */
+	void moveOldestCoin() {
+		// Remove one of the coins, skipping the ones already collected
+		int x = this.coins.removeFirst();
+		int y = this.coins.removeFirst();
+		while (this.collectedCells.get(x, y) != 0) {
+			this.collectedCells.set(x, y, 0);
+			updateFreeCell(x, y);
+			x = this.coins.removeFirst();
+			y = this.coins.removeFirst();
+		}
+		setGameboardState(x, y, BLANK_TILE);
+		this.freeCells.add(x, y);
+		this.coinCount--;
 
 		// Add a new coin (simulating moving one coin)
 		addCoin();
-
 	}
 
 	/**
 	 * 
-	 * @param pos The position to test.
-	 * @return <code>false</code> if the position is outside the playing field, <code>true</code> otherwise.
+	 * @param x The x coordinate of the position to test.
+	 * @param y The y coordinate of the position to test.
+	 * @return <code>true</code> if the position is outside the playing field, <code>false</code> otherwise.
 	 */
-	private boolean isOutOfBounds(Position pos) {
-		return pos.getX() < 0 || pos.getX() >= getGameboardSize().width
-				|| pos.getY() < 0 || pos.getY() >= getGameboardSize().height;
+	private boolean isOutOfBounds(final int x, final int y) {
+		return x < 0 || x >= getGameboardSize().width
+				|| y < 0 || y >= getGameboardSize().height;
 	}
 	
 	public int getScore(){
@@ -0,0 +1,337 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs games without a view, as fast as the CPU allows.
+ *
+ * Every game gets its own model and its own KeySource, and is updated until
+ * it is over or a maximum number of updates has been made. Independent games
+ * are spread over all cores by a fork-join pool shared by all runs. The
+ * common pool is not used, since it leaves one core to the thread waiting
+ * for the run. The workers of the shared pool are daemon threads which end
+ * when idle, so nothing needs to be shut down.
+ * <p>
+ * Nothing here touches the screen, so it can be run with
+ * <code>java.awt.headless=true</code>.
+ */
+public class HeadlessRunner {
+
+	/** Runs the games of every run, with a worker for every core. */
+	private static final ForkJoinPool POOL =
+			new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	/** The factory creating the models to run. */
+	private final IGameFactory gameFactory;
+
+	/** The name of the game to run, as given by the factory. */
+	private final String gameName;
+
+	/** The size of the gameboard of every game. */
+	private final Dimension boardSize;
+
+	/** The largest number of updates made to a single game. */
+	private final int maxTicks;
+
+	/** The seed the seeds of the games and their keystrokes derive from. */
+	private final long seed;
+
+	/** The keystrokes to play, or null to generate random keystrokes. */
+	private final int[] script;
+
+	/**
+	 * Creates a runner which plays randomly generated keystrokes. The seeds of
+	 * game number <code>i</code> and of its keystrokes are derived from
+	 * <code>seed + i</code>, so every run with the same seed plays out the
+	 * same way.
+	 *
+	 * @param gameFactory
+	 *            The factory creating the models to run.
+	 * @param gameName
+	 *            The name of the game to run, as given by the factory.
+	 * @param boardSize
+	 *            The size of the gameboard of every game.
+	 * @param maxTicks
+	 *            The largest number of updates made to a single game.
+	 * @param seed
+	 *            The seed the games and their keystrokes derive from.
+	 */
+	public HeadlessRunner(final IGameFactory gameFactory,
+			final String gameName, final Dimension boardSize,
+			final int maxTicks, final long seed) {
+		this(gameFactory, gameName, boardSize, maxTicks, seed, null);
+	}
+
+	/**
+	 * Creates a runner which plays the same script in every game. The seed of
+	 * game number <code>i</code> is derived from <code>i</code>.
+	 *
+	 * @param gameFactory
+	 *            The factory creating the models to run.
+	 * @param gameName
+	 *            The name of the game to run, as given by the factory.
+	 * @param boardSize
+	 *            The size of the gameboard of every game.
+	 * @param maxTicks
+	 *            The largest number of updates made to a single game.
+	 * @param script
+	 *            The keystrokes to play, 0 meaning no key.
+	 */
+	public HeadlessRunner(final IGameFactory gameFactory,
+			final String gameName, final Dimension boardSize,
+			final int maxTicks, final int[] script) {
+		this(gameFactory, gameName, boardSize, maxTicks, 0L, script);
+	}
+
+	private HeadlessRunner(final IGameFactory gameFactory,
+			final String gameName, final Dimension boardSize,
+			final int maxTicks, final long seed, final int[] script) {
+		if (maxTicks <= 0) {
+			throw new IllegalArgumentException("Invalid tick limit: "
+					+ maxTicks);
+		}
+		this.gameFactory = gameFactory;
+		this.gameName = gameName;
+		this.boardSize = new Dimension(boardSize);
+		this.maxTicks = maxTicks;
+		this.seed = seed;
+		this.script = script == null ? null : script.clone();
+	}
+
+	/**
+	 * Runs a number of games to completion and measures the throughput.
+	 *
+	 * @param games
+	 *            The number of games to run.
+	 * @return the number of updates made and the time it took.
+	 */
+	public Result run(final int games) {
+		long start = System.nanoTime();
+		long ticks = runAll(games, new GameJob() {
+			@Override
+			public long play(final int index) {
+				return runGame(index);
+			}
+		});
+		return new Result(games, ticks, System.nanoTime() - start);
+	}
+
+	/**
+	 * Plays games number 0 to <code>games - 1</code> on all cores, in
+	 * parallel and in no particular order.
+	 *
+	 * @param games
+	 *            The number of games to play.
+	 * @param job
+	 *            Plays a single game.
+	 * @return the number of updates made, summed over all games.
+	 */
+	static long runAll(final int games, final GameJob job) {
+		return POOL.invoke(new GameBatch(job, 0, games)).longValue();
+	}
+
+	/**
+	 * Updates a game until it is over or a number of updates has been made.
+	 *
+	 * @param model
+	 *            The game to play.
+	 * @param keys
+	 *            The keystrokes to play.
+	 * @param maxTicks
+	 *            The largest number of updates to make.
+	 * @param results
+	 *            Where the final score and the number of updates are stored,
+	 *            in this order. The score of a game which is over includes
+	 *            what was awarded at its end.
+	 */
+	static void playGame(final GameModel model, final KeySource keys,
+			final int maxTicks, final int[] results) {
+		int ticks = 0;
+		int score;
+		try {
+			while (ticks < maxTicks) {
+				ticks++;
+				model.gameUpdate(keys.nextKey());
+			}
+			score = model.getScore();
+		} catch (GameOverException e) {
+			// The game is over, the update which ended it is counted.
+			score = e.getScore();
+		}
+		results[0] = score;
+		results[1] = ticks;
+	}
+
+	/**
+	 * Runs a single game to completion.
+	 *
+	 * @param index
+	 *            The number of the game.
+	 * @return the number of updates made.
+	 */
+	long runGame(final int index) {
+		SplittableRandom seeds = new SplittableRandom(this.seed + index);
+		GameModel model = this.gameFactory.createGame(this.gameName,
+				this.boardSize, seeds.nextLong());
+		KeySource keys = createKeySource(seeds.nextLong());
+		int[] results = new int[2];
+		try {
+			playGame(model, keys, this.maxTicks, results);
+		} finally {
+			// Hand the model back even if an update failed.
+			this.gameFactory.releaseGame(this.gameName, model);
+		}
+		return results[1];
+	}
+
+	/**
+	 * Creates the keystrokes of a game.
+	 *
+	 * @param keySeed
+	 *            The seed of generated keystrokes.
+	 */
+	private KeySource createKeySource(final long keySeed) {
+		if (this.script != null) {
+			return new ScriptedKeySource(this.script);
+		}
+		return new RandomKeySource(keySeed);
+	}
+
+	/**
+	 * Plays a single game of a run.
+	 */
+	interface GameJob {
+		/**
+		 * Plays game number index to completion.
+		 *
+		 * @return the number of updates made.
+		 */
+		long play(int index);
+	}
+
+	/**
+	 * Runs a range of games, splitting it in halves until a single game is
+	 * left, so that idle workers can steal the other half.
+	 */
+	private static class GameBatch extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 2467009214359478811L;
+
+		/** Plays a single game. */
+		private final GameJob job;
+
+		/** The first game of the range. */
+		private final int from;
+
+		/** One past the last game of the range. */
+		private final int to;
+
+		GameBatch(final GameJob job, final int from, final int to) {
+			this.job = job;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Long compute() {
+			if (this.to - this.from <= 1) {
+				long ticks = 0;
+				for (int i = this.from; i < this.to; i++) {
+					ticks += this.job.play(i);
+				}
+				return Long.valueOf(ticks);
+			}
+			int middle = (this.from + this.to) >>> 1;
+			GameBatch second = new GameBatch(this.job, middle, this.to);
+			second.fork();
+			long ticks =
+					new GameBatch(this.job, this.from, middle).compute()
+							.longValue();
+			return Long.valueOf(ticks + second.join().longValue());
+		}
+	}
+
+	/**
+	 * The outcome of a run: how much was done and how long it took.
+	 */
+	public static class Result {
+		/** The number of games run. */
+		private final int games;
+
+		/** The total number of updates made. */
+		private final long ticks;
+
+		/** The wall-clock time of the run. (nanos) */
+		private final long elapsedNanos;
+
+		Result(final int games, final long ticks, final long elapsedNanos) {
+			this.games = games;
+			this.ticks = ticks;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/** @return the number of games run. */
+		public int getGames() {
+			return this.games;
+		}
+
+		/** @return the total number of updates made. */
+		public long getTicks() {
+			return this.ticks;
+		}
+
+		/** @return the wall-clock time of the run in nanoseconds. */
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		/** @return the number of updates made per second. */
+		public double getTicksPerSecond() {
+			return this.ticks * 1e9 / Math.max(1L, this.elapsedNanos);
+		}
+
+		/** @return the number of games run per second. */
+		public double getGamesPerSecond() {
+			return this.games * 1e9 / Math.max(1L, this.elapsedNanos);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d games, %d ticks in %.3f s: "
+					+ "%.0f ticks/s, %.0f games/s", this.games, this.ticks,
+					this.elapsedNanos / 1e9, getTicksPerSecond(),
+					getGamesPerSecond());
+		}
+	}
+
+	/**
+	 * Runs games from the command line and prints the throughput.
+	 * <p>
+	 * Arguments: game name, board width, board height, number of games,
+	 * maximum updates per game and seed. All are optional.
+	 */
+	public static void main(final String[] args) {
+		// Never open a window, even if a display happens to be available.
+		System.setProperty("java.awt.headless", "true");
+
+		String gameName = args.length > 0 ? args[0] : "Snake";
+		Dimension size = Constants.getGameSize();
+		if (args.length > 2) {
+			size = new Dimension(Integer.parseInt(args[1]),
+					Integer.parseInt(args[2]));
+		}
+		int games = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+		int maxTicks = args.length > 4 ? Integer.parseInt(args[4]) : 10000;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 0L;
+
+		IGameFactory factory = new PooledGameFactory(new GameFactory(),
+				Runtime.getRuntime().availableProcessors());
+		HeadlessRunner runner =
+				new HeadlessRunner(factory, gameName, size, maxTicks, seed);
+		System.out.println(gameName + " " + size.width + "x" + size.height
+				+ " on " + Runtime.getRuntime().availableProcessors()
+				+ " cores: " + runner.run(games));
+	}
+}
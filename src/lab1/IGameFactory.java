@@ -1,5 +1,7 @@
 package lab1;
 
+import java.awt.Dimension;
+
 /**
  * Factory interface for available games.
  */
@@ -19,4 +21,46 @@ public interface IGameFactory {
 	 *             if no such game
 	 */
 	public GameModel createGame(final String gameName);
+
+	/**
+	 * Returns a new model object for the game corresponding to its Name, with
+	 * a gameboard of the given size.
+	 * 
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @param boardSize
+	 *            The size of the gameboard
+	 * @throws IllegalArgumentException
+	 *             if no such game, or if the size is invalid
+	 */
+	public GameModel createGame(final String gameName, final Dimension boardSize);
+
+	/**
+	 * Returns a new model object for the game corresponding to its Name, with
+	 * a gameboard of the given size and a seeded random generator. Two games
+	 * created with the same arguments and given the same keys play out
+	 * exactly the same.
+	 * 
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @param boardSize
+	 *            The size of the gameboard
+	 * @param seed
+	 *            The seed of the random generator of the game
+	 * @throws IllegalArgumentException
+	 *             if no such game, or if the size is invalid
+	 */
+	public GameModel createGame(final String gameName,
+			final Dimension boardSize, final long seed);
+
+	/**
+	 * Hands a finished game back to the factory, which may reuse it for a
+	 * later createGame. The caller must not use the model afterwards.
+	 * 
+	 * @param gameName
+	 *            The name the game was created with
+	 * @param model
+	 *            The finished game
+	 */
+	public void releaseGame(final String gameName, final GameModel model);
 }
@@ -0,0 +1,62 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.awt.event.KeyListener;
+
+/**
+ * What a GameController needs from the component showing the game. Views
+ * paint from the copies of the gameboard handed over by a BoardExchange, and
+ * are told which parts have changed after every update.
+ */
+public interface IGameView {
+	/**
+	 * Updates the view with the gameboard of a new game. Called on the event
+	 * dispatch thread only.
+	 *
+	 * @param board
+	 *            Hands over the gameboard after every update, or null if no
+	 *            game is running.
+	 * @param size
+	 *            The size of the gameboard, or null to keep the size.
+	 */
+	public void setBoard(BoardExchange board, Dimension size);
+
+	/**
+	 * Sets where the number of frames and the time spent painting them are
+	 * recorded.
+	 *
+	 * @param metrics
+	 *            the metrics to record into, or null.
+	 */
+	public void setMetrics(GameMetrics metrics);
+
+	/**
+	 * Schedules a repaint of the whole view.
+	 */
+	public void repaint();
+
+	/**
+	 * Schedules a repaint of a single tile of the gameboard.
+	 *
+	 * @param x
+	 *            Coordinate in the gameboard matrix.
+	 * @param y
+	 *            Coordinate in the gameboard matrix.
+	 */
+	public void repaintTile(int x, int y);
+
+	/**
+	 * Schedules a repaint of the area where the score is shown.
+	 */
+	public void repaintScore();
+
+	/**
+	 * Starts passing key events on the view to a listener.
+	 */
+	public void addKeyListener(KeyListener listener);
+
+	/**
+	 * Stops passing key events on the view to a listener.
+	 */
+	public void removeKeyListener(KeyListener listener);
+}
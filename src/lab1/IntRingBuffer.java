@@ -0,0 +1,131 @@
+package lab1;
+
+/**
+ * A double-ended queue of primitive ints, stored in a ring buffer.
+ * 
+ * Adding and removing at either end never allocates, unless the buffer is
+ * full, in which case it doubles its capacity in place. This makes it
+ * suitable for bodies and queues which are updated every game tick.
+ */
+public class IntRingBuffer {
+
+	/** The stored elements. The capacity is always a power of two. */
+	private int[] elements;
+
+	/** The index of the first element. */
+	private int head;
+
+	/** The number of stored elements. */
+	private int size;
+
+	/**
+	 * Creates an empty buffer.
+	 * 
+	 * @param initialCapacity
+	 *            The number of elements which can be stored before growing.
+	 */
+	public IntRingBuffer(final int initialCapacity) {
+		int capacity = 1;
+		while (capacity < initialCapacity) {
+			capacity <<= 1;
+		}
+		this.elements = new int[capacity];
+		this.head = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Appends an element after the last one.
+	 */
+	public void addLast(final int value) {
+		if (this.size == this.elements.length) {
+			grow();
+		}
+		this.elements[(this.head + this.size) & (this.elements.length - 1)] =
+				value;
+		this.size++;
+	}
+
+	/**
+	 * Removes and returns the first element.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the buffer is empty.
+	 */
+	public int removeFirst() {
+		if (this.size == 0) {
+			throw new IllegalStateException("Buffer is empty");
+		}
+		int value = this.elements[this.head];
+		this.head = (this.head + 1) & (this.elements.length - 1);
+		this.size--;
+		return value;
+	}
+
+	/**
+	 * Returns the first element.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the buffer is empty.
+	 */
+	public int getFirst() {
+		return get(0);
+	}
+
+	/**
+	 * Returns the last element.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the buffer is empty.
+	 */
+	public int getLast() {
+		return get(this.size - 1);
+	}
+
+	/**
+	 * Returns the element at the given index, counted from the first.
+	 * 
+	 * @throws IllegalStateException
+	 *             if there is no such element.
+	 */
+	public int get(final int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IllegalStateException("No element at " + index);
+		}
+		return this.elements[(this.head + index) & (this.elements.length - 1)];
+	}
+
+	/**
+	 * @return The number of stored elements.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return true if no elements are stored.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all elements, keeping the capacity.
+	 */
+	public void clear() {
+		this.head = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Doubles the capacity, moving the elements to the start of the new array.
+	 */
+	private void grow() {
+		int[] grown = new int[this.elements.length * 2];
+		int firstPart = this.elements.length - this.head;
+		System.arraycopy(this.elements, this.head, grown, 0, firstPart);
+		System.arraycopy(this.elements, 0, grown, firstPart, this.head);
+		this.elements = grown;
+		this.head = 0;
+	}
+}
@@ -0,0 +1,197 @@
+package lab1;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of key codes, passed from one producer thread (the event
+ * dispatch thread) to one consumer thread (the game thread).
+ *
+ * The keys are stored as plain ints in a ring buffer. Only the producer
+ * writes the tail. The head is moved on by the consumer, and also by the
+ * producer when it pushes out the oldest key to make room for a new one, so
+ * it is only ever moved by compareAndSet(). Neither side ever locks or waits
+ * for the other, and nothing is boxed.
+ * <p>
+ * The queue holds at most a fixed number of keys. What happens to repeated
+ * keys and to keys beyond that is decided by a Policy, so that a burst of
+ * key presses can't build up a backlog which makes the game lag behind.
+ */
+public class KeyQueue {
+
+	/** How keys are queued. */
+	public enum Policy {
+		/** Queue every key, dropping keys which don't fit. */
+		QUEUE,
+		/**
+		 * Like QUEUE, but a key equal to the key queued just before it is
+		 * dropped while that one is still waiting, so that a held down key
+		 * only counts once.
+		 */
+		COALESCE,
+		/**
+		 * Only the most recent key counts. The consumer skips all older keys
+		 * which are still waiting, and a key offered to a full queue pushes
+		 * out the oldest one instead of being dropped.
+		 */
+		LATEST
+	}
+
+	/** The queued keys. */
+	private final int[] keys;
+
+	/** The System.nanoTime() at which each queued key was offered. */
+	private final long[] offerTimes;
+
+	/** The time the key last returned by poll() was offered. */
+	private long polledKeyTime;
+
+	/**
+	 * The number of keys taken by the consumer or pushed out by the producer.
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/** The number of keys offered by the producer. Written by the producer. */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** The number of keys which were dropped or skipped. */
+	private final AtomicLong droppedKeys = new AtomicLong();
+
+	/** How keys are queued. */
+	private volatile Policy policy;
+
+	/**
+	 * Creates an empty queue.
+	 *
+	 * @param capacity
+	 *            The largest number of keys waiting at the same time.
+	 * @param policy
+	 *            How keys are queued.
+	 */
+	public KeyQueue(final int capacity, final Policy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.keys = new int[capacity];
+		this.offerTimes = new long[capacity];
+		setPolicy(policy);
+	}
+
+	/**
+	 * Sets how keys are queued. Applies from the next key.
+	 */
+	public void setPolicy(final Policy policy) {
+		if (policy == null) {
+			throw new IllegalArgumentException("No policy");
+		}
+		this.policy = policy;
+	}
+
+	/**
+	 * Returns how keys are queued.
+	 */
+	public Policy getPolicy() {
+		return this.policy;
+	}
+
+	/**
+	 * Adds a key to the end of the queue. May only be called by the producer
+	 * thread.
+	 *
+	 * @param key
+	 *            The key code, which must not be 0.
+	 * @return true if the key was queued, false if it was dropped.
+	 */
+	public boolean offer(final int key) {
+		Policy current = this.policy;
+		long t = this.tail.get();
+		// The previous key can only be compared while it hasn't been taken,
+		// which is checked again once it has been read.
+		if (current == Policy.COALESCE && this.head.get() < t
+				&& this.keys[slot(t - 1)] == key && this.head.get() < t) {
+			this.droppedKeys.incrementAndGet();
+			return false;
+		}
+		long h = this.head.get();
+		while (t - h == this.keys.length) {
+			if (current != Policy.LATEST) {
+				this.droppedKeys.incrementAndGet();
+				return false;
+			}
+			// Push out the oldest key, unless the consumer has just taken it.
+			if (this.head.compareAndSet(h, h + 1)) {
+				this.droppedKeys.incrementAndGet();
+				break;
+			}
+			h = this.head.get();
+		}
+		this.keys[slot(t)] = key;
+		this.offerTimes[slot(t)] = System.nanoTime();
+		// Publish the key only after it has been written.
+		this.tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Takes the next key from the queue. May only be called by the consumer
+	 * thread.
+	 *
+	 * @return 0 or the next key.
+	 */
+	public int poll() {
+		while (true) {
+			long h = this.head.get();
+			long t = this.tail.get();
+			if (h == t) {
+				return 0;
+			}
+			long next = h;
+			if (this.policy == Policy.LATEST) {
+				next = t - 1;
+			}
+			int key = this.keys[slot(next)];
+			long offerTime = this.offerTimes[slot(next)];
+			// Free the slot only after it has been read. If the producer has
+			// pushed out a key meanwhile, the slot may have been written
+			// again while it was read, so read again.
+			if (this.head.compareAndSet(h, next + 1)) {
+				this.droppedKeys.addAndGet(next - h);
+				this.polledKeyTime = offerTime;
+				return key;
+			}
+		}
+	}
+
+	/**
+	 * Returns the System.nanoTime() at which the key last returned by poll()
+	 * was offered. May only be called by the consumer thread.
+	 */
+	public long getPolledKeyTime() {
+		return this.polledKeyTime;
+	}
+
+	/**
+	 * Drops all waiting keys. May only be called by the consumer thread.
+	 */
+	public void clear() {
+		while (true) {
+			long h = this.head.get();
+			if (this.head.compareAndSet(h, this.tail.get())) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of keys which were dropped or skipped.
+	 */
+	public long getDroppedKeyCount() {
+		return this.droppedKeys.get();
+	}
+
+	/**
+	 * Returns the slot in the ring buffer of a key.
+	 */
+	private int slot(final long index) {
+		return (int) (index % this.keys.length);
+	}
+}
@@ -0,0 +1,13 @@
+package lab1;
+
+/**
+ * Supplies the keystrokes of a game which is run without a GameController,
+ * one per game update.
+ */
+public interface KeySource {
+	/**
+	 * Returns the keystroke for the next game update, or 0 if no key is
+	 * pressed.
+	 */
+	public int nextKey();
+}
@@ -0,0 +1,128 @@
+package lab1;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, cheap enough to be updated on every tick and
+ * every frame.
+ *
+ * Durations are counted in buckets whose bounds are powers of two
+ * nanoseconds, so recording is a few instructions and never allocates, at
+ * the price of percentiles being accurate to within a factor of two. The
+ * count, mean and maximum are exact. Any thread may record and read.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	/**
+	 * The number of values in each bucket. Bucket b holds the values whose
+	 * highest set bit is bit b - 1, i.e. values in [2^(b-1), 2^b).
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+
+	/** The number of recorded values. */
+	private final AtomicLong count = new AtomicLong();
+
+	/** The sum of the recorded values. (nanos) */
+	private final AtomicLong sum = new AtomicLong();
+
+	/** The largest recorded value. (nanos) */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration. Negative durations are recorded as 0.
+	 *
+	 * @param nanos
+	 *            The duration in nanoseconds.
+	 */
+	public void record(final long nanos) {
+		long value = Math.max(0L, nanos);
+		this.buckets.incrementAndGet(Long.SIZE
+				- Long.numberOfLeadingZeros(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long previous = this.max.get();
+		while (value > previous && !this.max.compareAndSet(previous, value)) {
+			previous = this.max.get();
+		}
+	}
+
+	@Override
+	public long getCount() {
+		return this.count.get();
+	}
+
+	@Override
+	public double getMeanMicros() {
+		long n = this.count.get();
+		return n == 0 ? 0.0 : this.sum.get() / 1e3 / n;
+	}
+
+	@Override
+	public double getP50Micros() {
+		return getPercentileNanos(0.50) / 1e3;
+	}
+
+	@Override
+	public double getP90Micros() {
+		return getPercentileNanos(0.90) / 1e3;
+	}
+
+	@Override
+	public double getP99Micros() {
+		return getPercentileNanos(0.99) / 1e3;
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return this.max.get() / 1e3;
+	}
+
+	/**
+	 * Returns an upper bound of a percentile of the recorded values. The
+	 * bound is the upper end of the bucket holding the percentile, capped by
+	 * the largest value.
+	 *
+	 * @param fraction
+	 *            The percentile as a fraction in [0, 1].
+	 * @return the percentile in nanoseconds, or 0 if nothing is recorded.
+	 */
+	public long getPercentileNanos(final double fraction) {
+		long total = 0;
+		long[] counts = new long[this.buckets.length()];
+		for (int b = 0; b < counts.length; b++) {
+			counts[b] = this.buckets.get(b);
+			total += counts[b];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int b = 0; b < counts.length; b++) {
+			seen += counts[b];
+			if (seen >= rank) {
+				long upper = b >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+				return Math.min(upper, this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+	@Override
+	public void reset() {
+		for (int b = 0; b < this.buckets.length(); b++) {
+			this.buckets.set(b, 0);
+		}
+		this.count.set(0);
+		this.sum.set(0);
+		this.max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.1fus p50<=%.1fus p99<=%.1fus "
+				+ "max=%.1fus", getCount(), getMeanMicros(), getP50Micros(),
+				getP99Micros(), getMaxMicros());
+	}
+}
@@ -0,0 +1,28 @@
+package lab1;
+
+/**
+ * Management interface of a LatencyHistogram, as shown by JMX tools. All
+ * times are in microseconds.
+ */
+public interface LatencyHistogramMBean {
+	/** Returns the number of recorded values. */
+	public long getCount();
+
+	/** Returns the mean of the recorded values. */
+	public double getMeanMicros();
+
+	/** Returns the median of the recorded values. */
+	public double getP50Micros();
+
+	/** Returns the 90th percentile of the recorded values. */
+	public double getP90Micros();
+
+	/** Returns the 99th percentile of the recorded values. */
+	public double getP99Micros();
+
+	/** Returns the largest recorded value. */
+	public double getMaxMicros();
+
+	/** Forgets all recorded values. */
+	public void reset();
+}
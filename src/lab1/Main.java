@@ -1,16 +1,49 @@
 package lab1;
 
+import java.awt.Dimension;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
 import javax.swing.JFrame;
 
 /**
  * This class creates an AWT window which will contain the game.
+ * <p>
+ * The size of the gameboard may be given as two arguments, width and height.
+ * Otherwise the default size from Constants is used.
+ * <p>
+ * If the system property <code>lab1.statePort</code> is set, the running game
+ * is also streamed on that port, see StateServer. If the system property
+ * <code>lab1.activeRendering</code> is true, the game is rendered by a
+ * render thread of its own, see ActiveGameView.
  */
 public class Main {
 	public static void main(final String[] args) {
+		Dimension boardSize = Constants.getGameSize();
+		if (args.length >= 2) {
+			boardSize = new Dimension(Integer.parseInt(args[0]),
+					Integer.parseInt(args[1]));
+		}
+
 		// Create a new frame (a window)
 		JFrame frame = new JFrame();
 
-		GUIView guiView = new GUIView(new GameFactory());
+		GUIView guiView =
+				new GUIView(new PooledGameFactory(new GameFactory(), 1),
+						boardSize, Boolean.getBoolean("lab1.activeRendering"));
+
+		String statePort = System.getProperty("lab1.statePort");
+		if (statePort != null) {
+			try {
+				StateServer server = new StateServer(
+						new InetSocketAddress(Integer.parseInt(statePort)));
+				guiView.getGameController().setStateServer(server);
+				System.out.println("Streaming game state on port "
+						+ server.getPort());
+			} catch (IOException e) {
+				System.err.println("Could not stream game state: " + e);
+			}
+		}
 
 		frame.setTitle("Games 2.0");
 
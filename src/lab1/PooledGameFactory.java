@@ -0,0 +1,117 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Factory which recycles finished games instead of allocating new ones.
+ *
+ * Games handed back with releaseGame are kept in a pool per game name. When a
+ * game of the same name and size is created, a pooled game is reset with the
+ * new seed instead, which costs no allocation. New games are created by
+ * another factory.
+ */
+public class PooledGameFactory implements IGameFactory {
+
+	/** The factory creating the games which aren't in the pool. */
+	private final IGameFactory gameFactory;
+
+	/** The largest number of idle games kept per game name. */
+	private final int maxIdleGames;
+
+	/** The idle games, per game name. */
+	private final Map<String, Deque<GameModel>> pool =
+			new HashMap<String, Deque<GameModel>>();
+
+	/**
+	 * Creates a pool in front of another factory.
+	 * 
+	 * @param gameFactory
+	 *            The factory creating the games which aren't in the pool.
+	 * @param maxIdleGames
+	 *            The largest number of idle games kept per game name.
+	 */
+	public PooledGameFactory(final IGameFactory gameFactory,
+			final int maxIdleGames) {
+		this.gameFactory = gameFactory;
+		this.maxIdleGames = maxIdleGames;
+	}
+
+	@Override
+	public String[] getGameNames() {
+		return this.gameFactory.getGameNames();
+	}
+
+	@Override
+	public GameModel createGame(final String gameName) {
+		return createGame(gameName, Constants.getGameSize());
+	}
+
+	@Override
+	public GameModel createGame(final String gameName,
+			final Dimension boardSize) {
+		return createGame(gameName, boardSize, GameModel.newSeed());
+	}
+
+	/**
+	 * Returns a pooled game of the right name and size, reset with the given
+	 * seed, or a new game if there is none.
+	 * 
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @param boardSize
+	 *            The size of the gameboard
+	 * @param seed
+	 *            The seed of the random generator of the game
+	 * @throws IllegalArgumentException
+	 *             if no such game, or if the size is invalid
+	 */
+	@Override
+	public GameModel createGame(final String gameName,
+			final Dimension boardSize, final long seed) {
+		GameModel model = takeIdleGame(gameName, boardSize);
+		if (model == null) {
+			return this.gameFactory.createGame(gameName, boardSize, seed);
+		}
+		model.reset(seed);
+		return model;
+	}
+
+	/**
+	 * Keeps a finished game for reuse, unless the pool for its name is full.
+	 */
+	@Override
+	public synchronized void releaseGame(final String gameName,
+			final GameModel model) {
+		Deque<GameModel> idle = this.pool.get(gameName);
+		if (idle == null) {
+			idle = new ArrayDeque<GameModel>();
+			this.pool.put(gameName, idle);
+		}
+		if (idle.size() < this.maxIdleGames) {
+			idle.push(model);
+		}
+	}
+
+	/**
+	 * Removes and returns an idle game of the given name and size, or null.
+	 * Idle games of another size are left in the pool.
+	 */
+	private synchronized GameModel takeIdleGame(final String gameName,
+			final Dimension boardSize) {
+		Deque<GameModel> idle = this.pool.get(gameName);
+		if (idle == null) {
+			return null;
+		}
+		for (GameModel model : idle) {
+			if (model.getGameboardSize().equals(boardSize)) {
+				idle.remove(model);
+				return model;
+			}
+		}
+		return null;
+	}
+}
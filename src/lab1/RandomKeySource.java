@@ -0,0 +1,53 @@
+package lab1;
+
+import java.awt.event.KeyEvent;
+import java.util.SplittableRandom;
+
+/**
+ * Supplies randomly generated arrow keystrokes. The same seed always gives
+ * the same sequence of keystrokes.
+ */
+public class RandomKeySource implements KeySource {
+
+	/** The keys which can be generated. */
+	private static final int[] ARROW_KEYS = { KeyEvent.VK_LEFT,
+			KeyEvent.VK_UP, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN };
+
+	/** The generator of this source only, so sources never contend. */
+	private final SplittableRandom random;
+
+	/** The probability that a key is pressed in an update. */
+	private final double pressProbability;
+
+	/**
+	 * Creates a key source pressing a random arrow key in every fourth update
+	 * on average.
+	 * 
+	 * @param seed
+	 *            The seed of the keystroke sequence.
+	 */
+	public RandomKeySource(final long seed) {
+		this(seed, 0.25);
+	}
+
+	/**
+	 * Creates a key source pressing random arrow keys.
+	 * 
+	 * @param seed
+	 *            The seed of the keystroke sequence.
+	 * @param pressProbability
+	 *            The probability that a key is pressed in an update.
+	 */
+	public RandomKeySource(final long seed, final double pressProbability) {
+		this.random = new SplittableRandom(seed);
+		this.pressProbability = pressProbability;
+	}
+
+	@Override
+	public int nextKey() {
+		if (this.random.nextDouble() >= this.pressProbability) {
+			return 0;
+		}
+		return ARROW_KEYS[this.random.nextInt(ARROW_KEYS.length)];
+	}
+}
@@ -28,6 +28,14 @@ public class RectangularTile extends GameTile {
 		this.color = color;
 	}
 
+	/**
+	 * Returns the colour of the rectangle.
+	 */
+	@Override
+	public Color getMinimapColor() {
+		return this.color;
+	}
+
 	/**
 	 * Draws itself in a given graphics context, position and size.
 	 * 
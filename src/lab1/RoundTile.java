@@ -80,6 +80,14 @@ public class RoundTile extends GameTile {
 		this.scale = scale;
 	}
 
+	/**
+	 * Returns the colour the circle is filled with.
+	 */
+	@Override
+	public Color getMinimapColor() {
+		return this.fillColor;
+	}
+
 	/**
 	 * Draws itself in a given graphics context, position and size.
 	 * 
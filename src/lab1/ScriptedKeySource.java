@@ -0,0 +1,37 @@
+package lab1;
+
+/**
+ * Supplies keystrokes from a fixed script. When the end of the script is
+ * reached it starts over from the beginning.
+ */
+public class ScriptedKeySource implements KeySource {
+
+	/** The keystrokes to play, 0 meaning no key. */
+	private final int[] script;
+
+	/** The index of the next keystroke in the script. */
+	private int next;
+
+	/**
+	 * Creates a key source playing the given script.
+	 * 
+	 * @param script
+	 *            The keystrokes to play, 0 meaning no key.
+	 * @throws IllegalArgumentException
+	 *             if the script is empty.
+	 */
+	public ScriptedKeySource(final int[] script) {
+		if (script.length == 0) {
+			throw new IllegalArgumentException("Empty script");
+		}
+		this.script = script.clone();
+		this.next = 0;
+	}
+
+	@Override
+	public int nextKey() {
+		int key = this.script[this.next];
+		this.next = (this.next + 1) % this.script.length;
+		return key;
+	}
+}
@@ -0,0 +1,462 @@
+package lab1;
+
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+
+/**
+ * Plays a SnakeModel by itself, for soak tests and benchmarks.
+ *
+ * Before every update the autopilot searches the shortest path from the
+ * snake's head to the fruit with A*, and steers along its first step. That
+ * step is only taken if the snake still has room to move afterwards: the
+ * cells reachable from it must be at least as many as the snake is long.
+ * Otherwise the snake follows a Hamiltonian cycle through the whole
+ * gameboard, and if that is blocked too, it moves to the neighbour with the
+ * most room.
+ * <p>
+ * On a game board which wraps around, the edges are still treated as walls:
+ * the snake plays safely, only without the shortcuts across the edges.
+ * <p>
+ * All searches run over primitive arrays allocated once, sized to the
+ * gameboard, so deciding a move allocates nothing. The autopilot reads the
+ * model it plays, so it must be used on the thread updating that model.
+ */
+public class SnakeAutopilot implements KeySource {
+
+	/** The directions the snake may move in, in search order. */
+	private static final SnakeModel.Directions[] MOVES = {
+			SnakeModel.Directions.NORTH, SnakeModel.Directions.EAST,
+			SnakeModel.Directions.SOUTH, SnakeModel.Directions.WEST };
+
+	/** The key steering in each of the MOVES. */
+	private static final int[] MOVE_KEYS = { KeyEvent.VK_UP,
+			KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT };
+
+	/** Marks a cell without a move in firstMove. */
+	private static final byte NO_MOVE = -1;
+
+	/** The game played. */
+	private final SnakeModel model;
+
+	/** The width of the gameboard. */
+	private final int width;
+
+	/** The height of the gameboard. */
+	private final int height;
+
+	/** The cells waiting to be visited by a search. */
+	private final int[] queue;
+
+	/** The search which last visited each cell. */
+	private final int[] visited;
+
+	/** The search which last found the shortest path to each cell. */
+	private final int[] closed;
+
+	/** The length of the shortest path found so far to each cell. */
+	private final int[] distance;
+
+	/** The open set of the A* search, a binary heap of sort keys. */
+	private long[] heapKeys;
+
+	/** The cells of the open set, in the same order as heapKeys. */
+	private int[] heapCells;
+
+	/** The number of cells in the open set. */
+	private int heapSize;
+
+	/** The number of the current search. */
+	private int search;
+
+	/** The first move of the shortest path to each visited cell. */
+	private final byte[] firstMove;
+
+	/**
+	 * The next cell of each cell on a Hamiltonian cycle through the whole
+	 * gameboard, or null if the gameboard has none.
+	 */
+	private final int[] cycleNext;
+
+	/** The score when the last fruit was eaten. */
+	private int lastScore;
+
+	/** The number of moves made since the last fruit was eaten. */
+	private int movesSinceFruit;
+
+	/** The number of moves along a path to the fruit. */
+	private long pathMoves;
+
+	/** The number of moves along the Hamiltonian cycle. */
+	private long cycleMoves;
+
+	/** The number of moves to the neighbour with the most room. */
+	private long roomMoves;
+
+	/**
+	 * Creates an autopilot for a game.
+	 *
+	 * @param model
+	 *            The game to play.
+	 */
+	public SnakeAutopilot(final SnakeModel model) {
+		this.model = model;
+		this.width = model.getGameboardSize().width;
+		this.height = model.getGameboardSize().height;
+		int cells = this.width * this.height;
+		this.queue = new int[cells];
+		this.visited = new int[cells];
+		this.closed = new int[cells];
+		this.distance = new int[cells];
+		this.heapKeys = new long[cells];
+		this.heapCells = new int[cells];
+		this.firstMove = new byte[cells];
+		this.cycleNext = buildCycle(this.width, this.height);
+	}
+
+	/**
+	 * Returns the key which steers the snake in its next update.
+	 */
+	@Override
+	public int nextKey() {
+		int head = this.model.getHeadCell();
+		int back = indexOf(opposite(this.model.getDirection()));
+
+		if (this.model.getScore() != this.lastScore) {
+			this.lastScore = this.model.getScore();
+			this.movesSinceFruit = 0;
+		}
+		this.movesSinceFruit++;
+
+		// Going for the fruit is only safe if there is room to move on
+		// afterwards, but a snake which has circled the whole gameboard
+		// without finding a safe path risks it anyway rather than circling
+		// forever.
+		int move = searchFruit(head, back);
+		if (move != NO_MOVE
+				&& (this.movesSinceFruit > this.queue.length
+						|| hasRoom(step(head, move), this.model.getLength()))) {
+			this.pathMoves++;
+			return MOVE_KEYS[move];
+		}
+
+		move = cycleMove(head, back);
+		if (move != NO_MOVE) {
+			this.cycleMoves++;
+			return MOVE_KEYS[move];
+		}
+
+		this.roomMoves++;
+		return MOVE_KEYS[roomiestMove(head, back)];
+	}
+
+	/**
+	 * Searches the shortest path from the head to the fruit with A*, guided
+	 * by the Manhattan distance to the fruit. Among cells which look equally
+	 * good, the ones furthest from the head are tried first, so on an open
+	 * gameboard only the cells along the path are searched.
+	 *
+	 * @return the first move of the path, or NO_MOVE if there is none.
+	 */
+	private int searchFruit(final int head, final int back) {
+		int fruit = this.model.getFruitCell();
+		if (fruit < 0) {
+			return NO_MOVE;
+		}
+		int fruitX = fruit % this.width;
+		int fruitY = fruit / this.width;
+		int mark = nextSearch();
+		this.heapSize = 0;
+		this.visited[head] = mark;
+		this.closed[head] = mark;
+		for (int move = 0; move < MOVES.length; move++) {
+			int next = step(head, move);
+			if (move != back && next >= 0 && this.model.isCellOpen(next)) {
+				this.visited[next] = mark;
+				this.distance[next] = 1;
+				this.firstMove[next] = (byte) move;
+				push(next, 1 + manhattan(next, fruitX, fruitY), 1);
+			}
+		}
+		while (this.heapSize > 0) {
+			int cell = pop();
+			if (this.closed[cell] == mark) {
+				// Already reached on a shorter path.
+				continue;
+			}
+			if (cell == fruit) {
+				return this.firstMove[cell];
+			}
+			this.closed[cell] = mark;
+			int nextDistance = this.distance[cell] + 1;
+			for (int move = 0; move < MOVES.length; move++) {
+				int next = step(cell, move);
+				if (next >= 0 && this.closed[next] != mark
+						&& (this.visited[next] != mark
+								|| nextDistance < this.distance[next])
+						&& this.model.isCellOpen(next)) {
+					this.visited[next] = mark;
+					this.distance[next] = nextDistance;
+					this.firstMove[next] = this.firstMove[cell];
+					push(next, nextDistance + manhattan(next, fruitX, fruitY),
+							nextDistance);
+				}
+			}
+		}
+		return NO_MOVE;
+	}
+
+	/**
+	 * Returns the Manhattan distance from a cell to a position.
+	 */
+	private int manhattan(final int cell, final int x, final int y) {
+		return Math.abs(cell % this.width - x) + Math.abs(cell / this.width - y);
+	}
+
+	/**
+	 * Adds a cell to the open set of the A* search.
+	 *
+	 * @param cell
+	 *            The cell.
+	 * @param estimate
+	 *            The estimated length of the path through the cell.
+	 * @param distance
+	 *            The length of the path to the cell.
+	 */
+	private void push(final int cell, final int estimate, final int distance) {
+		if (this.heapSize == this.heapKeys.length) {
+			// Only if cells are reached again on shorter paths, very rare.
+			this.heapKeys = Arrays.copyOf(this.heapKeys, 2 * this.heapSize);
+			this.heapCells = Arrays.copyOf(this.heapCells, 2 * this.heapSize);
+		}
+		// Smaller estimates first, then longer distances.
+		long key = ((long) estimate << 32) | (Integer.MAX_VALUE - distance);
+		int i = this.heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.heapKeys[parent] <= key) {
+				break;
+			}
+			this.heapKeys[i] = this.heapKeys[parent];
+			this.heapCells[i] = this.heapCells[parent];
+			i = parent;
+		}
+		this.heapKeys[i] = key;
+		this.heapCells[i] = cell;
+	}
+
+	/**
+	 * Removes the most promising cell from the open set of the A* search.
+	 */
+	private int pop() {
+		int top = this.heapCells[0];
+		int size = --this.heapSize;
+		long key = this.heapKeys[size];
+		int cell = this.heapCells[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size
+					&& this.heapKeys[child + 1] < this.heapKeys[child]) {
+				child++;
+			}
+			if (key <= this.heapKeys[child]) {
+				break;
+			}
+			this.heapKeys[i] = this.heapKeys[child];
+			this.heapCells[i] = this.heapCells[child];
+			i = child;
+		}
+		this.heapKeys[i] = key;
+		this.heapCells[i] = cell;
+		return top;
+	}
+
+	/**
+	 * Returns true if at least a number of open cells can be reached from a
+	 * cell, which must be open itself.
+	 */
+	private boolean hasRoom(final int start, final int needed) {
+		return countRoom(start, needed) >= needed;
+	}
+
+	/**
+	 * Counts the open cells which can be reached from a cell, including the
+	 * cell itself, stopping once a limit is reached.
+	 */
+	private int countRoom(final int start, final int limit) {
+		int mark = nextSearch();
+		// The head will have moved on, but its cell is taken by the neck.
+		this.visited[this.model.getHeadCell()] = mark;
+		this.visited[start] = mark;
+		this.queue[0] = start;
+		int tail = 1;
+		for (int headOfQueue = 0; headOfQueue < tail && tail < limit;
+				headOfQueue++) {
+			int cell = this.queue[headOfQueue];
+			for (int move = 0; move < MOVES.length; move++) {
+				int next = step(cell, move);
+				if (next >= 0 && this.visited[next] != mark
+						&& this.model.isCellOpen(next)) {
+					this.visited[next] = mark;
+					this.queue[tail++] = next;
+				}
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * Returns the move to the next cell of the Hamiltonian cycle, or NO_MOVE
+	 * if there is no cycle or that cell is not safe.
+	 */
+	private int cycleMove(final int head, final int back) {
+		if (this.cycleNext == null) {
+			return NO_MOVE;
+		}
+		int next = this.cycleNext[head];
+		for (int move = 0; move < MOVES.length; move++) {
+			if (move != back && step(head, move) == next) {
+				return this.model.isCellOpen(next) ? move : NO_MOVE;
+			}
+		}
+		return NO_MOVE;
+	}
+
+	/**
+	 * Returns the open move after which the most cells can be reached, or
+	 * straight on if every move is deadly.
+	 */
+	private int roomiestMove(final int head, final int back) {
+		int best = indexOf(this.model.getDirection());
+		int bestRoom = 0;
+		int limit = this.model.getFreeCellCount() + 1;
+		for (int move = 0; move < MOVES.length; move++) {
+			int next = step(head, move);
+			if (move != back && next >= 0 && this.model.isCellOpen(next)) {
+				int room = countRoom(next, limit);
+				if (room > bestRoom) {
+					best = move;
+					bestRoom = room;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the cell reached by a move, or -1 if it leaves the gameboard.
+	 */
+	private int step(final int cell, final int move) {
+		int x = cell % this.width + MOVES[move].getXDelta();
+		int y = cell / this.width + MOVES[move].getYDelta();
+		if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+			return -1;
+		}
+		return y * this.width + x;
+	}
+
+	/**
+	 * Starts a new search, so that all cells count as unvisited.
+	 */
+	private int nextSearch() {
+		if (this.search == Integer.MAX_VALUE) {
+			Arrays.fill(this.visited, 0);
+			Arrays.fill(this.closed, 0);
+			this.search = 0;
+		}
+		return ++this.search;
+	}
+
+	/**
+	 * Returns the index of a direction in MOVES, or NO_MOVE.
+	 */
+	private static int indexOf(final SnakeModel.Directions direction) {
+		for (int move = 0; move < MOVES.length; move++) {
+			if (MOVES[move] == direction) {
+				return move;
+			}
+		}
+		return NO_MOVE;
+	}
+
+	private static SnakeModel.Directions opposite(
+			final SnakeModel.Directions direction) {
+		switch (direction) {
+			case NORTH:
+				return SnakeModel.Directions.SOUTH;
+			case SOUTH:
+				return SnakeModel.Directions.NORTH;
+			case EAST:
+				return SnakeModel.Directions.WEST;
+			case WEST:
+				return SnakeModel.Directions.EAST;
+			default:
+				return SnakeModel.Directions.NONE;
+		}
+	}
+
+	/**
+	 * Builds a Hamiltonian cycle through a gameboard: along the first row,
+	 * back and forth through the other rows leaving out the first column,
+	 * and up the first column home. This needs an even number of rows; with
+	 * an odd number the same is done with the columns. If both are odd, or
+	 * the gameboard is a single line, there is no cycle.
+	 *
+	 * @return the next cell of every cell, or null.
+	 */
+	static int[] buildCycle(final int width, final int height) {
+		boolean rows = height % 2 == 0;
+		if (!rows && width % 2 != 0 || Math.min(width, height) < 2) {
+			return null;
+		}
+		// Walk along the lines, each of the given length.
+		int lines = rows ? height : width;
+		int length = rows ? width : height;
+		int[] order = new int[width * height];
+		int count = 0;
+		for (int along = 0; along < length; along++) {
+			order[count++] = cellOf(rows, width, along, 0);
+		}
+		for (int line = 1; line < lines; line++) {
+			for (int i = 1; i < length; i++) {
+				int along = line % 2 == 1 ? length - i : i;
+				order[count++] = cellOf(rows, width, along, line);
+			}
+		}
+		for (int line = lines - 1; line >= 1; line--) {
+			order[count++] = cellOf(rows, width, 0, line);
+		}
+
+		int[] next = new int[width * height];
+		for (int i = 0; i < count; i++) {
+			next[order[i]] = order[(i + 1) % count];
+		}
+		return next;
+	}
+
+	/**
+	 * Returns the cell at a position along a line of the cycle.
+	 */
+	private static int cellOf(final boolean rows, final int width,
+			final int along, final int line) {
+		return rows ? line * width + along : along * width + line;
+	}
+
+	/** @return the number of moves along a path to the fruit. */
+	public long getPathMoves() {
+		return this.pathMoves;
+	}
+
+	/** @return the number of moves along the Hamiltonian cycle. */
+	public long getCycleMoves() {
+		return this.cycleMoves;
+	}
+
+	/** @return the number of moves to the neighbour with the most room. */
+	public long getRoomMoves() {
+		return this.roomMoves;
+	}
+}
@@ -3,7 +3,6 @@ package lab1;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.event.KeyEvent;
-import java.util.LinkedList;
 
 
 /**
@@ -12,6 +11,13 @@ import java.util.LinkedList;
  * If a fruit is eaten, a new one is randomly placed and the snake grows with
  * one tile. The game is over if the snake runs into its tail or hits the
  * game pane edges. 
+ * <p>
+ * In wrap-around mode the game pane has no edges: the snake leaving it on
+ * one side comes back on the opposite side.
+ * <p>
+ * Besides the gameboard, the blank cells, the cells of the snake and the
+ * cells of fruit are kept as bitboards, so that collisions are tested and
+ * blank cells counted and picked with bit operations on whole words.
  */
 public class SnakeModel extends GameModel {
 	public enum Directions {
@@ -60,63 +66,173 @@ public class SnakeModel extends GameModel {
 	/** Graphical representation of a blank tile. */
 	private static final GameTile BLANK_TILE = new GameTile();
 
-	/** A list containing the position of the snake (with it's tail). */
-	private final LinkedList<Position> snake = new LinkedList<Position>();
+	/** The tiles in the order they are stored in snapshots. */
+	private static final GameTile[] SNAPSHOT_TILES =
+			{ BLANK_TILE, SNAKE_TILE, SNAKE_HEAD_TILE, FRUIT_TILE };
+
+	/**
+	 * The cells of the snake, from the end of the tail to the head. Each cell
+	 * is packed into an int as <code>y * width + x</code>.
+	 */
+	private final IntRingBuffer snake;
 	
+	/** The default starting length of the snake */
+	static final int INITIAL_SNAKE_LENGTH = 20;
+
 	/** The starting length of the snake */
-	private final int INITIAL_SNAKE_LENGTH = 20;
+	private final int initialLength;
 	
 	/** The amount of fruit on the game pane */
 	private final int FRUIT_AMOUNT = 1;
 	
 	/** The size of the board */
 	private final int GAME_BOARD_SIZE = getGameboardSize().height * getGameboardSize().width;
-	
-	/*
-	 * The declaration and object creation above uses the new language feature
-	 * 'generic types'. It can be declared in the old way like this:
-	 * private java.util.List coins = new ArrayList();
-	 * This will however result in a warning at compilation
-	 * "Position" in this case is the type of the objects that are going
-	 * to be used in the List
+
+	/** The width of the game board. */
+	private final int width = getGameboardSize().width;
+
+	/** The height of the game board. */
+	private final int height = getGameboardSize().height;
+
+	/** True if the game board wraps around at its edges. */
+	private final boolean wrapAround;
+
+	/** The blank tiles of the game board, kept up to date by setGameboardState. */
+	private final Bitboard freeCells = new Bitboard(this.width, this.height);
+
+	/**
+	 * The cells of the snake, head included, kept up to date by
+	 * setGameboardState.
 	 */
+	private final Bitboard snakeCells = new Bitboard(this.width, this.height);
 
-	/** The position of the snake. */
-	private Position snakePos;
+	/** The cells of fruit, kept up to date by setGameboardState. */
+	private final Bitboard fruitCells = new Bitboard(this.width, this.height);
+	
+	/** The x coordinate of the snake's head. */
+	private int snakeX;
+
+	/** The y coordinate of the snake's head. */
+	private int snakeY;
 
 	/** The direction of the snake. */
 	private Directions direction = Directions.NORTH;
 
+	/** The cell of the fruit, packed by packCell, or -1 if there is none. */
+	private int fruitCell = -1;
+
 	/** The number of fruits found. */
 	private int score;
 
 	/**
-	 * Create a new model for the snake game.
+	 * Create a new model for the snake game, using the default size.
 	 */
 	public SnakeModel() {
-		Dimension size = getGameboardSize();
-		
+		this(Constants.getGameSize());
+	}
 
+	/**
+	 * Create a new model for the snake game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 */
+	public SnakeModel(final Dimension boardSize) {
+		this(boardSize, INITIAL_SNAKE_LENGTH);
+	}
 
-		// Blank out the whole game board
-		for (int i = 0; i < size.width; i++) {
-			for (int j = 0; j < size.height; j++) {
-				setGameboardState(i, j, BLANK_TILE);
-			}
+	/**
+	 * Create a new model for the snake game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param initialLength
+	 *            The starting length of the snake.
+	 * @throws IllegalArgumentException
+	 *             if the length is not positive.
+	 */
+	public SnakeModel(final Dimension boardSize, final int initialLength) {
+		this(boardSize, initialLength, newSeed());
+	}
+
+	/**
+	 * Create a new model for the snake game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param initialLength
+	 *            The starting length of the snake.
+	 * @param seed
+	 *            The seed of the random fruit placement.
+	 * @throws IllegalArgumentException
+	 *             if the length is not positive, or the board has more than
+	 *             MAX_INDEXED_CELLS cells.
+	 */
+	public SnakeModel(final Dimension boardSize, final int initialLength,
+			final long seed) {
+		this(boardSize, initialLength, seed, false);
+	}
+
+	/**
+	 * Create a new model for the snake game.
+	 * 
+	 * @param boardSize
+	 *            The size of the game board.
+	 * @param initialLength
+	 *            The starting length of the snake.
+	 * @param seed
+	 *            The seed of the random fruit placement.
+	 * @param wrapAround
+	 *            True if the snake leaving the game board on one side comes
+	 *            back on the opposite side, rather than hitting a wall.
+	 * @throws IllegalArgumentException
+	 *             if the length is not positive, or the board has more than
+	 *             MAX_INDEXED_CELLS cells.
+	 */
+	public SnakeModel(final Dimension boardSize, final int initialLength,
+			final long seed, final boolean wrapAround) {
+		super(requireIndexedSize(boardSize), seed);
+		this.wrapAround = wrapAround;
+		if (initialLength <= 0) {
+			throw new IllegalArgumentException("Invalid snake length: "
+					+ initialLength);
 		}
+		this.initialLength = initialLength;
+		this.snake = new IntRingBuffer(initialLength);
+		resetGame();
+	}
+
+	/**
+	 * Puts the snake back in the middle of a blank game board, with a new
+	 * fruit.
+	 */
+	@Override
+	protected void resetGame() {
+		Dimension size = getGameboardSize();
+
+		// Blank out the whole game board
+		fillGameboard(BLANK_TILE);
+		this.freeCells.addAll();
+		this.snakeCells.clear();
+		this.fruitCells.clear();
 
 		/*
 		 * Grow the snake to the size of the constant and place the snake's
 		 * head in the center of the game board.
 		 */
-		this.snakePos = new Position(size.width / 2, size.height / 2);
-		for(int i = 0; i < INITIAL_SNAKE_LENGTH; i++){
-			snake.push(this.snakePos);
-			setGameboardState(this.snakePos, SNAKE_TILE);
+		this.snake.clear();
+		this.snakeX = size.width / 2;
+		this.snakeY = size.height / 2;
+		this.direction = Directions.NORTH;
+		this.score = 0;
+		for(int i = 0; i < this.initialLength; i++){
+			this.snake.addLast(packCell(this.snakeX, this.snakeY));
+			setGameboardState(this.snakeX, this.snakeY, SNAKE_TILE);
 		}
 
 
 		// Insert the fruits to the game board.
+		this.fruitCell = -1;
 		for(int i = 0; i < FRUIT_AMOUNT; i++){
 			if(blankTilesExists()){
 				addFruit();			
@@ -129,29 +245,82 @@ public class SnakeModel extends GameModel {
 	 * Add a fruit to the game board at a random position.
 	 */
 	private void addFruit() {
-		Position newFruitPos;
-		Dimension size = getGameboardSize();
-		// Loop until a blank position is found and ...
-		do {
-			newFruitPos = new Position((int) (Math.random() * size.width),
-										(int) (Math.random() * size.height));
-		} while (!isPositionEmpty(newFruitPos));
+		// Pick one of the blank tiles uniformly at random and ...
+		int cell = this.freeCells.get(
+				getRandom().nextInt(this.freeCells.size()));
 
 		// ... add a new fruit to the empty tile.
-		setGameboardState(newFruitPos, FRUIT_TILE);
+		setCellState(cell, FRUIT_TILE);
+		this.fruitCell = cell;
+	}
+
+	/**
+	 * Set the tile on a specified position in the game board, and keep the
+	 * bitboards up to date.
+	 */
+	@Override
+	protected void setGameboardState(final int x, final int y,
+			final GameTile tile) {
+		super.setGameboardState(x, y, tile);
+		int cell = y * this.width + x;
+		if (tile == BLANK_TILE) {
+			this.freeCells.add(cell);
+			this.snakeCells.remove(cell);
+			this.fruitCells.remove(cell);
+		} else if (tile == FRUIT_TILE) {
+			this.freeCells.remove(cell);
+			this.snakeCells.remove(cell);
+			this.fruitCells.add(cell);
+		} else {
+			this.freeCells.remove(cell);
+			this.snakeCells.add(cell);
+			this.fruitCells.remove(cell);
+		}
 	}
-	
 	
 
+	@Override
+	protected GameTile[] getSnapshotTiles() {
+		return SNAPSHOT_TILES.clone();
+	}
+
 	/**
-	 * Return whether the specified position is empty.
-	 * 
-	 * @param pos
-	 *            The position to test.
-	 * @return true if position is empty.
+	 * Writes the direction, the score and the cells of the snake from the
+	 * tail to the head.
 	 */
-	private boolean isPositionEmpty(final Position pos) {
-		return (getGameboardState(pos) == BLANK_TILE);
+	@Override
+	protected void writeGameState(final SnapshotWriter out) {
+		out.writeBits(this.direction.ordinal(), 3);
+		out.writeInt(this.score);
+		out.writeInt(this.snake.size());
+		for (int i = 0; i < this.snake.size(); i++) {
+			out.writeCell(this.snake.get(i));
+		}
+	}
+
+	@Override
+	protected void readGameState(final SnapshotReader in)
+			throws SnapshotException {
+		Directions[] directions = Directions.values();
+		int ordinal = in.readBits(3);
+		if (ordinal >= directions.length) {
+			throw new SnapshotException("Invalid direction: " + ordinal);
+		}
+		this.direction = directions[ordinal];
+		this.score = in.readInt();
+		int length = in.readInt();
+		if (length <= 0) {
+			throw new SnapshotException("Invalid snake length: " + length);
+		}
+		this.snake.clear();
+		for (int i = 0; i < length; i++) {
+			this.snake.addLast(in.readCell());
+		}
+		this.snakeX = this.snake.getLast() % this.width;
+		this.snakeY = this.snake.getLast() / this.width;
+		// The bitboards have been filled while reading the gameboard.
+		this.fruitCell = this.fruitCells.isEmpty() ? -1
+				: this.fruitCells.get(this.fruitCells.size() - 1);
 	}
 
 	/**
@@ -198,28 +367,22 @@ public class SnakeModel extends GameModel {
 	 * @return True if blank tiles exist, otherwise false
 	 */
 	private boolean blankTilesExists(){
-		Dimension gameBoard = getGameboardSize();
-		
-		for(int i = 0; i < gameBoard.width; i++){
-			for(int j = 0; j < gameBoard.height; j++){
-				if(getGameboardState(i, j) == BLANK_TILE){
-					return true;
-				}
-			}
-			
-		}
-		
-		return false;
+		return !this.freeCells.isEmpty();
 	}
 	
 
 	/**
-	 * Get next position of the snake.
+	 * Packs a position of the game board into a single int.
 	 */
-	private Position getNextSnakePos() {
-		return new Position(
-				this.snakePos.getX() + this.direction.getXDelta(),
-				this.snakePos.getY() + this.direction.getYDelta());
+	private int packCell(final int x, final int y) {
+		return y * this.width + x;
+	}
+
+	/**
+	 * Sets the tile of a position which has been packed by packCell.
+	 */
+	private void setCellState(final int cell, final GameTile tile) {
+		setGameboardState(cell % this.width, cell / this.width, tile);
 	}
 
 	/**
@@ -234,15 +397,20 @@ public class SnakeModel extends GameModel {
 		
 		updateDirection(lastKey);
 		
-		this.snakePos = getNextSnakePos();
+		this.snakeX += this.direction.getXDelta();
+		this.snakeY += this.direction.getYDelta();
 		
-		// Checks if the snake hits a wall
-		if (isOutOfBounds(this.snakePos)) {
-			throw new GameOverException(this.score);
+		// Checks if the snake hits a wall, or comes back on the other side
+		if (isOutOfBounds(this.snakeX, this.snakeY)) {
+			if (!this.wrapAround) {
+				throw new GameOverException(this.score);
+			}
+			wrapHead();
 		}
+		int head = packCell(this.snakeX, this.snakeY);
 		
 		// The snake ate a fruit!
-		if(getGameboardState(this.snakePos) == FRUIT_TILE) {						
+		if (this.fruitCells.contains(head)) {
 			if(!blankTilesExists()){
 				throw new GameOverException(getScore());
 			}
@@ -252,9 +420,12 @@ public class SnakeModel extends GameModel {
 		}
 		
 		else{
-			// Erase the snake's tail.
-			setGameboardState(this.snake.get(0), BLANK_TILE);
-			this.snake.remove(0);
+			// Erase the snake's tail, unless the snake is still growing out
+			// of that cell at the start of the game.
+			int tail = this.snake.removeFirst();
+			if (this.snake.isEmpty() || this.snake.getFirst() != tail) {
+				setCellState(tail, BLANK_TILE);
+			}
 		}
 		
 		/* 
@@ -264,18 +435,18 @@ public class SnakeModel extends GameModel {
 		 * last snake tile (the end of the tail) from the previous update would
 		 * remain.
 		*/
-		if (getGameboardState(this.snakePos) == SNAKE_TILE) {
+		if (this.snakeCells.contains(head)) {
 			throw new GameOverException(this.score);
 		}
 		
 		// Changes the last head-tile to a tail-tile
-		setGameboardState(this.snake.getLast(), SNAKE_TILE);
+		setCellState(this.snake.getLast(), SNAKE_TILE);
 		
-		// Updates the snake list with the new head position.
-		this.snake.add(this.snakePos);
+		// Updates the snake with the new head position.
+		this.snake.addLast(head);
 		
 		// "Draws" the snake's head at the new position
-		setGameboardState(this.snake.getLast(), SNAKE_HEAD_TILE);
+		setGameboardState(this.snakeX, this.snakeY, SNAKE_HEAD_TILE);
 	}
 	
 	/**
@@ -288,12 +459,83 @@ public class SnakeModel extends GameModel {
 
 	/**
 	 * 
-	 * @param pos The position to test.
-	 * @return <code>false</code> if the position is outside the playing field, <code>true</code> otherwise.
+	 * @param x The x coordinate of the position to test.
+	 * @param y The y coordinate of the position to test.
+	 * @return <code>true</code> if the position is outside the playing field, <code>false</code> otherwise.
+	 */
+	private boolean isOutOfBounds(final int x, final int y) {
+		return x < 0 || x >= this.width || y < 0 || y >= this.height;
+	}
+
+	/**
+	 * Brings the head of a snake which has just left the game board back on
+	 * the opposite side.
+	 */
+	private void wrapHead() {
+		if (this.snakeX < 0) {
+			this.snakeX = this.width - 1;
+		} else if (this.snakeX == this.width) {
+			this.snakeX = 0;
+		}
+		if (this.snakeY < 0) {
+			this.snakeY = this.height - 1;
+		} else if (this.snakeY == this.height) {
+			this.snakeY = 0;
+		}
+	}
+
+	/**
+	 * Returns true if the game board wraps around at its edges.
+	 */
+	public boolean isWrapAround() {
+		return this.wrapAround;
+	}
+
+	/**
+	 * Returns the cell of the snake's head, packed as
+	 * <code>y * width + x</code>.
+	 */
+	int getHeadCell() {
+		return packCell(this.snakeX, this.snakeY);
+	}
+
+	/**
+	 * Returns the cell of the fruit, packed as <code>y * width + x</code>, or
+	 * -1 if there is none.
+	 */
+	int getFruitCell() {
+		return this.fruitCell;
+	}
+
+	/**
+	 * Returns the direction the snake moved in last.
+	 */
+	Directions getDirection() {
+		return this.direction;
+	}
+
+	/**
+	 * Returns the number of cells of the snake, counting cells it still
+	 * grows into at the start of the game.
+	 */
+	int getLength() {
+		return this.snake.size();
+	}
+
+	/**
+	 * Returns the number of blank tiles.
+	 */
+	int getFreeCellCount() {
+		return this.freeCells.size();
+	}
+
+	/**
+	 * Returns true if the snake can move onto a cell, packed as
+	 * <code>y * width + x</code>, without dying: the cell is blank or holds
+	 * the fruit.
 	 */
-	private boolean isOutOfBounds(Position pos) {
-		return pos.getX() < 0 || pos.getX() >= getGameboardSize().width
-				|| pos.getY() < 0 || pos.getY() >= getGameboardSize().height;
+	boolean isCellOpen(final int cell) {
+		return !this.snakeCells.contains(cell);
 	}
 
 	public int getGAME_BOARD_SIZE() {
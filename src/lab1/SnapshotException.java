@@ -0,0 +1,24 @@
+package lab1;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a snapshot of a game can't be read, because it is damaged or
+ * was written in an unknown format.
+ */
+public class SnapshotException extends IOException {
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 4318735620982471904L;
+
+	/**
+	 * Constructs a new exception.
+	 * 
+	 * @param message
+	 *            What is wrong with the snapshot.
+	 */
+	public SnapshotException(final String message) {
+		super(message);
+	}
+}
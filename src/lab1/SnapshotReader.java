@@ -0,0 +1,96 @@
+package lab1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the bits written by a SnapshotWriter from a ByteBuffer.
+ *
+ * @see SnapshotWriter
+ */
+public class SnapshotReader {
+
+	/** The buffer read from. */
+	private final ByteBuffer buffer;
+
+	/** Bits read from the buffer but not returned yet, in the low bits. */
+	private long bits;
+
+	/** The number of bits waiting in bits. */
+	private int bitCount;
+
+	/** The number of bits of a cell index. */
+	private int cellBits;
+
+	/** The number of cells of the gameboard. */
+	private int cellCount;
+
+	/**
+	 * Creates a reader starting at the position of a buffer.
+	 */
+	public SnapshotReader(final ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Sets the size of the gameboard, which decides how many bits a cell
+	 * takes.
+	 */
+	public void setCellCount(final int cellCount) {
+		this.cellCount = cellCount;
+		this.cellBits = SnapshotWriter.bitsFor(cellCount);
+	}
+
+	/**
+	 * Reads an unsigned value.
+	 *
+	 * @param count
+	 *            The number of bits to read, from 0 to 32.
+	 * @throws java.nio.BufferUnderflowException
+	 *             if the buffer ends first.
+	 */
+	public int readBits(final int count) {
+		while (this.bitCount < count) {
+			this.bits = (this.bits << 8) | (this.buffer.get() & 0xFF);
+			this.bitCount += 8;
+		}
+		this.bitCount -= count;
+		return (int) ((this.bits >>> this.bitCount) & ((1L << count) - 1));
+	}
+
+	/** Reads a single bit. */
+	public boolean readBoolean() {
+		return readBits(1) != 0;
+	}
+
+	/** Reads 32 bits. */
+	public int readInt() {
+		return readBits(32);
+	}
+
+	/** Reads 64 bits. */
+	public long readLong() {
+		long high = readBits(32) & 0xFFFFFFFFL;
+		return (high << 32) | (readBits(32) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Reads a cell of the gameboard.
+	 *
+	 * @throws SnapshotException
+	 *             if the cell is outside the gameboard.
+	 */
+	public int readCell() throws SnapshotException {
+		int cell = readBits(this.cellBits);
+		if (cell >= this.cellCount) {
+			throw new SnapshotException("Invalid cell: " + cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Skips the padding up to the next whole byte.
+	 */
+	public void align() {
+		this.bitCount -= this.bitCount % 8;
+	}
+}
@@ -0,0 +1,124 @@
+package lab1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the state of games as a stream of bits into a ByteBuffer, most
+ * significant bit first. Values take only as many bits as they need: a cell
+ * of the gameboard takes just enough bits for the largest cell index, and a
+ * tile just enough bits to tell the tiles of its game apart.
+ * <p>
+ * A writer without a buffer only counts the bytes, so that a buffer of the
+ * right size can be found before the state is written into it.
+ *
+ * @see SnapshotReader
+ */
+public class SnapshotWriter {
+
+	/** The buffer written to, or null if the bytes are only counted. */
+	private final ByteBuffer buffer;
+
+	/** The number of whole bytes written. */
+	private long byteCount;
+
+	/** Bits not written to the buffer yet, in the low bitCount bits. */
+	private long bits;
+
+	/** The number of bits waiting in bits, always less than 8. */
+	private int bitCount;
+
+	/** The number of bits of a cell index. */
+	private int cellBits;
+
+	/**
+	 * Creates a writer starting at the position of a buffer.
+	 */
+	public SnapshotWriter(final ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Creates a writer which writes nothing, and only counts the bytes it
+	 * would have written.
+	 */
+	public SnapshotWriter() {
+		this(null);
+	}
+
+	/**
+	 * Returns the number of whole bytes written so far. Bits which don't
+	 * fill a byte yet count once align() has been called.
+	 */
+	public long getByteCount() {
+		return this.byteCount;
+	}
+
+	/**
+	 * Sets the size of the gameboard, which decides how many bits a cell
+	 * takes.
+	 */
+	public void setCellCount(final int cellCount) {
+		this.cellBits = bitsFor(cellCount);
+	}
+
+	/**
+	 * Writes the low bits of a value.
+	 *
+	 * @param value
+	 *            The value to write.
+	 * @param count
+	 *            The number of bits to write, from 0 to 32.
+	 * @throws java.nio.BufferOverflowException
+	 *             if the buffer is full.
+	 */
+	public void writeBits(final int value, final int count) {
+		this.bits = (this.bits << count) | (value & ((1L << count) - 1));
+		this.bitCount += count;
+		while (this.bitCount >= 8) {
+			this.bitCount -= 8;
+			if (this.buffer != null) {
+				this.buffer.put((byte) (this.bits >>> this.bitCount));
+			}
+			this.byteCount++;
+		}
+	}
+
+	/** Writes a single bit. */
+	public void writeBoolean(final boolean value) {
+		writeBits(value ? 1 : 0, 1);
+	}
+
+	/** Writes 32 bits. */
+	public void writeInt(final int value) {
+		writeBits(value, 32);
+	}
+
+	/** Writes 64 bits. */
+	public void writeLong(final long value) {
+		writeBits((int) (value >>> 32), 32);
+		writeBits((int) value, 32);
+	}
+
+	/**
+	 * Writes a cell of the gameboard, packed as <code>y * width + x</code>.
+	 */
+	public void writeCell(final int cell) {
+		writeBits(cell, this.cellBits);
+	}
+
+	/**
+	 * Pads the bits written so far to a whole byte.
+	 */
+	public void align() {
+		if (this.bitCount > 0) {
+			writeBits(0, 8 - this.bitCount);
+		}
+	}
+
+	/**
+	 * Returns the number of bits needed to tell a number of values apart.
+	 */
+	static int bitsFor(final int values) {
+		return values <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(values - 1);
+	}
+}
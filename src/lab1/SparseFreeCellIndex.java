@@ -0,0 +1,397 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the free cells of a gameboard on which few cells are
+ * occupied, in memory proportional to the occupied cells rather than the
+ * area.
+ *
+ * Like FreeCellIndex, adding, removing, testing and picking a random free
+ * cell take constant time, however large or full the gameboard. With n cells
+ * of which size() are free, the free cells are numbered 0 to size() - 1 as
+ * follows. A free cell below size() keeps its own number. Every occupied cell
+ * below size() is paired with a free cell at or above size(), which takes
+ * its number. There are exactly as many of those as of these, so every free
+ * cell gets a number, and get() returns the cell itself or its partner.
+ * Occupying or freeing a cell moves the boundary by one cell, and mends the
+ * pairs with a constant number of steps.
+ * <p>
+ * Only occupied cells and cells with a partner are stored, in a hash table.
+ * Cells are identified by their row-major index, <code>y * width + x</code>,
+ * which may not fit into an int.
+ * <p>
+ * The pairs depend on the order the cells were added and removed in, so an
+ * index built again from the same free cells may number them differently.
+ * writeState() and readState() carry the pairs over into a snapshot.
+ */
+public class SparseFreeCellIndex {
+
+	/** Marks a free slot of the hash table. Never a valid cell. */
+	private static final long NO_CELL = -1;
+
+	/** The number of slots of a new hash table. A power of two. */
+	private static final int INITIAL_TABLE_SIZE = 16;
+
+	/** The width of the indexed gameboard. */
+	private final int width;
+
+	/** The number of cells of the gameboard. */
+	private final long cellCount;
+
+	/** The number of occupied cells. */
+	private long occupiedCount;
+
+	/** The cells of the hash table, or NO_CELL. */
+	private long[] cells;
+
+	/** The partner of the cell of each slot, or NO_CELL. */
+	private long[] partners;
+
+	/** True if the cell of a slot is occupied. */
+	private boolean[] occupied;
+
+	/** The number of cells stored in the hash table. */
+	private int stored;
+
+	/**
+	 * Creates an index for a gameboard of the given size, with every cell
+	 * free.
+	 *
+	 * @param width
+	 *            The width of the gameboard.
+	 * @param height
+	 *            The height of the gameboard.
+	 */
+	public SparseFreeCellIndex(final int width, final int height) {
+		this.width = width;
+		this.cellCount = (long) width * height;
+		this.cells = new long[INITIAL_TABLE_SIZE];
+		this.partners = new long[INITIAL_TABLE_SIZE];
+		this.occupied = new boolean[INITIAL_TABLE_SIZE];
+		addAll();
+	}
+
+	/**
+	 * Marks the cell (x,y) as free. Does nothing if it already is.
+	 */
+	public void add(final int x, final int y) {
+		long cell = (long) y * this.width + x;
+		if (!isOccupied(cell)) {
+			return;
+		}
+		long boundary = size();
+		setOccupied(cell, false);
+		// The one free cell at or above the boundary without a partner.
+		long loose;
+		if (cell < boundary) {
+			loose = getPartner(cell);
+			setPartner(cell, NO_CELL);
+			setPartner(loose, NO_CELL);
+		} else {
+			loose = cell;
+		}
+		this.occupiedCount--;
+		// The boundary cell now falls below the boundary.
+		if (isOccupied(boundary)) {
+			pair(boundary, loose);
+		} else if (boundary != loose) {
+			long orphan = getPartner(boundary);
+			setPartner(boundary, NO_CELL);
+			pair(orphan, loose);
+		}
+	}
+
+	/**
+	 * Marks the cell (x,y) as occupied. Does nothing if it already is.
+	 */
+	public void remove(final int x, final int y) {
+		long cell = (long) y * this.width + x;
+		if (isOccupied(cell)) {
+			return;
+		}
+		long boundary = size();
+		// The one occupied cell below the boundary without a partner.
+		long loose;
+		if (cell < boundary) {
+			loose = cell;
+		} else {
+			loose = getPartner(cell);
+			setPartner(cell, NO_CELL);
+			setPartner(loose, NO_CELL);
+		}
+		setOccupied(cell, true);
+		this.occupiedCount++;
+		// The last cell below the boundary now falls above it.
+		long last = boundary - 1;
+		if (!isOccupied(last)) {
+			pair(loose, last);
+		} else if (last != loose) {
+			long orphan = getPartner(last);
+			setPartner(last, NO_CELL);
+			pair(loose, orphan);
+		}
+	}
+
+	/**
+	 * Marks all cells as free.
+	 */
+	public void addAll() {
+		Arrays.fill(this.cells, NO_CELL);
+		Arrays.fill(this.partners, NO_CELL);
+		Arrays.fill(this.occupied, false);
+		this.stored = 0;
+		this.occupiedCount = 0;
+	}
+
+	/**
+	 * @return true if the cell (x,y) is free.
+	 */
+	public boolean contains(final int x, final int y) {
+		return !isOccupied((long) y * this.width + x);
+	}
+
+	/**
+	 * @return true if there are no free cells left.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return The number of free cells.
+	 */
+	public long size() {
+		return this.cellCount - this.occupiedCount;
+	}
+
+	/**
+	 * Returns the row-major index of the free cell numbered k. Picking a
+	 * uniformly random k in [0, size) picks a uniformly random free cell.
+	 *
+	 * @param k
+	 *            A number in the range [0, size).
+	 */
+	public long get(final long k) {
+		if (k < 0 || k >= size()) {
+			throw new IndexOutOfBoundsException("No such cell: " + k);
+		}
+		return isOccupied(k) ? getPartner(k) : k;
+	}
+
+	/**
+	 * Writes the occupied cells, each with its partner if it has one. Only
+	 * for gameboards whose cells fit into an int, as for all snapshots.
+	 */
+	void writeState(final SnapshotWriter out) {
+		out.writeInt((int) this.occupiedCount);
+		for (int slot = 0; slot < this.cells.length; slot++) {
+			if (this.cells[slot] != NO_CELL && this.occupied[slot]) {
+				out.writeCell((int) this.cells[slot]);
+				long partner = this.partners[slot];
+				out.writeBoolean(partner != NO_CELL);
+				if (partner != NO_CELL) {
+					out.writeCell((int) partner);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the contents of the index with what writeState() has
+	 * written, numbering the free cells exactly as the written index did.
+	 *
+	 * @throws SnapshotException
+	 *             if the cells don't make up a valid index.
+	 */
+	void readState(final SnapshotReader in) throws SnapshotException {
+		addAll();
+		int count = in.readInt();
+		if (count < 0 || count > this.cellCount) {
+			throw new SnapshotException("Invalid occupied cell count: "
+					+ count);
+		}
+		long[] occupiedCells = new long[count];
+		for (int i = 0; i < count; i++) {
+			long cell = in.readCell();
+			if (isOccupied(cell)) {
+				throw new SnapshotException("Cell occupied twice: " + cell);
+			}
+			setOccupied(cell, true);
+			this.occupiedCount++;
+			occupiedCells[i] = cell;
+			if (in.readBoolean()) {
+				long partner = in.readCell();
+				if (getPartner(partner) != NO_CELL) {
+					throw new SnapshotException("Cell paired twice: "
+							+ partner);
+				}
+				pair(cell, partner);
+			}
+		}
+		// Every occupied cell below the boundary must be paired with a free
+		// cell at or above it, and no other cell with anything.
+		long boundary = size();
+		for (long cell : occupiedCells) {
+			long partner = getPartner(cell);
+			boolean valid = cell < boundary
+					? partner >= boundary && !isOccupied(partner)
+					: partner == NO_CELL;
+			if (!valid) {
+				throw new SnapshotException("Invalid free cell pairs at "
+						+ cell);
+			}
+		}
+	}
+
+	/**
+	 * @return The x coordinate of a row-major cell index.
+	 */
+	public int cellX(final long cell) {
+		return (int) (cell % this.width);
+	}
+
+	/**
+	 * @return The y coordinate of a row-major cell index.
+	 */
+	public int cellY(final long cell) {
+		return (int) (cell / this.width);
+	}
+
+	/**
+	 * Pairs an occupied cell below the boundary with a free cell at or above
+	 * it.
+	 */
+	private void pair(final long occupiedCell, final long freeCell) {
+		setPartner(occupiedCell, freeCell);
+		setPartner(freeCell, occupiedCell);
+	}
+
+	/**
+	 * @return true if a cell is occupied.
+	 */
+	private boolean isOccupied(final long cell) {
+		int slot = findSlot(cell);
+		return this.cells[slot] == cell && this.occupied[slot];
+	}
+
+	/**
+	 * @return the partner of a cell, or NO_CELL.
+	 */
+	private long getPartner(final long cell) {
+		int slot = findSlot(cell);
+		return this.cells[slot] == cell ? this.partners[slot] : NO_CELL;
+	}
+
+	/**
+	 * Marks a cell as occupied or free, storing it or forgetting it as
+	 * needed.
+	 */
+	private void setOccupied(final long cell, final boolean value) {
+		int slot = store(cell);
+		this.occupied[slot] = value;
+		forgetIfPlain(slot);
+	}
+
+	/**
+	 * Sets or clears the partner of a cell, storing it or forgetting it as
+	 * needed.
+	 */
+	private void setPartner(final long cell, final long partner) {
+		int slot = store(cell);
+		this.partners[slot] = partner;
+		forgetIfPlain(slot);
+	}
+
+	/**
+	 * Returns the slot of a cell, or the free slot where it would go.
+	 */
+	private int findSlot(final long cell) {
+		int mask = this.cells.length - 1;
+		int slot = hash(cell) & mask;
+		while (this.cells[slot] != cell && this.cells[slot] != NO_CELL) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the slot of a cell, storing it as free and without a partner
+	 * if it isn't stored yet.
+	 */
+	private int store(final long cell) {
+		int slot = findSlot(cell);
+		if (this.cells[slot] == cell) {
+			return slot;
+		}
+		// Keep the table at most half full.
+		if (2 * (this.stored + 1) > this.cells.length) {
+			growTable();
+			slot = findSlot(cell);
+		}
+		this.cells[slot] = cell;
+		this.partners[slot] = NO_CELL;
+		this.occupied[slot] = false;
+		this.stored++;
+		return slot;
+	}
+
+	/**
+	 * Forgets the cell of a slot if it is free and without a partner, like
+	 * every cell which isn't stored.
+	 */
+	private void forgetIfPlain(final int slot) {
+		if (this.occupied[slot] || this.partners[slot] != NO_CELL) {
+			return;
+		}
+		this.stored--;
+		// Move the cells after the hole which would no longer be found past
+		// it back into it, so that every cell stays reachable from its first
+		// slot.
+		int mask = this.cells.length - 1;
+		int hole = slot;
+		for (int next = (hole + 1) & mask; this.cells[next] != NO_CELL;
+				next = (next + 1) & mask) {
+			int first = hash(this.cells[next]) & mask;
+			if (((next - first) & mask) >= ((next - hole) & mask)) {
+				this.cells[hole] = this.cells[next];
+				this.partners[hole] = this.partners[next];
+				this.occupied[hole] = this.occupied[next];
+				hole = next;
+			}
+		}
+		this.cells[hole] = NO_CELL;
+		this.partners[hole] = NO_CELL;
+		this.occupied[hole] = false;
+	}
+
+	/**
+	 * Doubles the number of slots of the hash table.
+	 */
+	private void growTable() {
+		long[] oldCells = this.cells;
+		long[] oldPartners = this.partners;
+		boolean[] oldOccupied = this.occupied;
+		this.cells = new long[oldCells.length * 2];
+		this.partners = new long[oldCells.length * 2];
+		this.occupied = new boolean[oldCells.length * 2];
+		Arrays.fill(this.cells, NO_CELL);
+		Arrays.fill(this.partners, NO_CELL);
+		for (int i = 0; i < oldCells.length; i++) {
+			if (oldCells[i] != NO_CELL) {
+				int slot = findSlot(oldCells[i]);
+				this.cells[slot] = oldCells[i];
+				this.partners[slot] = oldPartners[i];
+				this.occupied[slot] = oldOccupied[i];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a cell over the low bits used to pick a slot.
+	 */
+	private static int hash(final long cell) {
+		long h = cell * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+}
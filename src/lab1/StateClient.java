@@ -0,0 +1,246 @@
+package lab1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Receives the state of a game from a StateServer and keeps a copy of its
+ * gameboard.
+ *
+ * The client blocks while waiting for a frame, so it is meant to run on a
+ * thread of its own. If a delta arrives which doesn't follow the previous
+ * frame, it is ignored and the server is asked for a keyframe.
+ */
+public class StateClient {
+
+	/** The connection to the server. */
+	private final SocketChannel channel;
+
+	/** The frame being read. */
+	private ByteBuffer frame = ByteBuffer.allocateDirect(1024);
+
+	/** Holds a single byte request to the server. */
+	private final ByteBuffer request = ByteBuffer.allocateDirect(1);
+
+	/** The copy of the gameboard, as TileRegistry IDs row by row. */
+	private byte[] gameboard = new byte[0];
+
+	/** The width of the gameboard. */
+	private int width;
+
+	/** The height of the gameboard. */
+	private int height;
+
+	/** The score of the last frame. */
+	private int score;
+
+	/** The sequence number of the last frame applied. */
+	private int sequence;
+
+	/** True once the copy of the gameboard is complete. */
+	private boolean inSync;
+
+	/** True if a keyframe has been asked for and not arrived yet. */
+	private boolean resyncRequested;
+
+	/** The number of frames received. */
+	private long frameCount;
+
+	/** The number of keyframes received. */
+	private long keyframeCount;
+
+	/** The number of frame bytes received. */
+	private long byteCount;
+
+	/**
+	 * Connects to a server.
+	 *
+	 * @throws IOException
+	 *             if the server can't be reached.
+	 */
+	public StateClient(final InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		this.channel.socket().setTcpNoDelay(true);
+	}
+
+	/**
+	 * Waits for the next frame and applies it.
+	 *
+	 * @return the type of the frame, one of the StateFrames constants.
+	 * @throws IOException
+	 *             if the connection fails or the server has closed it.
+	 */
+	public byte readFrame() throws IOException {
+		this.frame.clear().limit(4);
+		readFully();
+		int length = this.frame.getInt(0);
+		if (length < StateFrames.HEADER_SIZE - 4) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+		if (this.frame.capacity() < length) {
+			this.frame = ByteBuffer.allocateDirect(length);
+		}
+		this.frame.clear().limit(length);
+		readFully();
+		this.frame.flip();
+		this.frameCount++;
+		this.byteCount += 4 + length;
+
+		byte type = this.frame.get();
+		int frameSequence = this.frame.getInt();
+		int frameScore = this.frame.getInt();
+		switch (type) {
+			case StateFrames.KEYFRAME:
+				applyKeyframe();
+				break;
+			case StateFrames.DELTA:
+				if (!this.inSync || frameSequence != this.sequence + 1) {
+					// A frame is missing, the copy is out of date.
+					this.inSync = false;
+					requestResync();
+					return type;
+				}
+				applyDelta();
+				break;
+			case StateFrames.GAME_OVER:
+				break;
+			default:
+				throw new IOException("Invalid frame type: " + type);
+		}
+		this.sequence = frameSequence;
+		this.score = frameScore;
+		return type;
+	}
+
+	/**
+	 * Reads until the frame buffer is full.
+	 */
+	private void readFully() throws IOException {
+		while (this.frame.hasRemaining()) {
+			if (this.channel.read(this.frame) < 0) {
+				throw new EOFException("Server closed the connection");
+			}
+		}
+	}
+
+	private void applyKeyframe() {
+		this.width = this.frame.getInt();
+		this.height = this.frame.getInt();
+		if (this.gameboard.length != this.width * this.height) {
+			this.gameboard = new byte[this.width * this.height];
+		}
+		this.frame.get(this.gameboard);
+		this.inSync = true;
+		this.resyncRequested = false;
+		this.keyframeCount++;
+	}
+
+	private void applyDelta() {
+		int count = this.frame.getInt();
+		for (int i = 0; i < count; i++) {
+			int cell = this.frame.getInt();
+			this.gameboard[cell] = this.frame.get();
+		}
+	}
+
+	/**
+	 * Asks the server for a keyframe, unless that has been done already.
+	 */
+	private void requestResync() throws IOException {
+		if (this.resyncRequested) {
+			return;
+		}
+		this.request.clear();
+		this.request.put(StateFrames.RESYNC).flip();
+		while (this.request.hasRemaining()) {
+			this.channel.write(this.request);
+		}
+		this.resyncRequested = true;
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/** @return true if the copy of the gameboard is up to date. */
+	public boolean isInSync() {
+		return this.inSync;
+	}
+
+	/** @return the width of the gameboard. */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/** @return the height of the gameboard. */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/** @return the TileRegistry ID of the tile at (x,y). */
+	public int getTileId(final int x, final int y) {
+		return this.gameboard[y * this.width + x] & 0xFF;
+	}
+
+	/** @return the score of the last frame. */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return the sequence number of the last frame applied. */
+	public int getSequence() {
+		return this.sequence;
+	}
+
+	/** @return the number of frames received. */
+	public long getFrameCount() {
+		return this.frameCount;
+	}
+
+	/** @return the number of keyframes received. */
+	public long getKeyframeCount() {
+		return this.keyframeCount;
+	}
+
+	/** @return the number of bytes received. */
+	public long getByteCount() {
+		return this.byteCount;
+	}
+
+	/**
+	 * Connects to a server and prints what it sends.
+	 * <p>
+	 * Arguments: host and port. The host is optional and defaults to the
+	 * loopback address.
+	 */
+	public static void main(final String[] args) throws IOException {
+		InetSocketAddress address = args.length > 1
+				? new InetSocketAddress(args[0], Integer.parseInt(args[1]))
+				: new InetSocketAddress("localhost", Integer.parseInt(args[0]));
+		StateClient client = new StateClient(address);
+		try {
+			while (true) {
+				byte type = client.readFrame();
+				if (type == StateFrames.KEYFRAME) {
+					System.out.println("Keyframe " + client.getWidth() + "x"
+							+ client.getHeight() + ", score "
+							+ client.getScore());
+				} else if (type == StateFrames.GAME_OVER) {
+					System.out.println("Game over: " + client.getScore()
+							+ " after " + client.getFrameCount() + " frames, "
+							+ client.getByteCount() + " bytes");
+				}
+			}
+		} catch (EOFException e) {
+			System.out.println("Disconnected");
+		} finally {
+			client.close();
+		}
+	}
+}
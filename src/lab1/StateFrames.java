@@ -0,0 +1,52 @@
+package lab1;
+
+/**
+ * The binary format streamed by StateServer and read by StateClient.
+ *
+ * The server sends one frame per game update. All numbers are big-endian:
+ *
+ * <pre>
+ * int   length of the rest of the frame
+ * byte  type
+ * int   sequence number, one more than that of the previous frame
+ * int   score
+ * KEYFRAME:  int width, int height, width * height tile IDs (bytes)
+ * DELTA:     int count, count times (int cell, byte tile ID)
+ * GAME_OVER: nothing more
+ * </pre>
+ *
+ * Cells are numbered row by row, <code>y * width + x</code>, and tiles by
+ * their TileRegistry ID, as in GameModel. A delta only holds the cells which
+ * have changed since the previous frame, so it is only meaningful to a
+ * client which has seen every frame since the last keyframe.
+ * <p>
+ * The client only ever sends single bytes: RESYNC asks for a keyframe, e.g.
+ * after a gap in the sequence numbers.
+ */
+final class StateFrames {
+
+	/** A frame holding the whole gameboard. */
+	static final byte KEYFRAME = 1;
+
+	/** A frame holding the cells changed by one update. */
+	static final byte DELTA = 2;
+
+	/** A frame telling that the game has ended, with the final score. */
+	static final byte GAME_OVER = 3;
+
+	/** Sent by a client to be sent a keyframe next. */
+	static final byte RESYNC = 1;
+
+	/** The bytes of the length, type, sequence number and score. */
+	static final int HEADER_SIZE = 4 + 1 + 4 + 4;
+
+	/** The bytes of the width and height of a keyframe. */
+	static final int KEYFRAME_SIZE_FIELDS = 4 + 4;
+
+	/** The bytes of one changed cell of a delta. */
+	static final int DELTA_CELL_SIZE = 4 + 1;
+
+	private StateFrames() {
+		// Only constants.
+	}
+}
@@ -0,0 +1,483 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams the state of a game to remote clients, in the format described by
+ * StateFrames.
+ *
+ * The server has no thread of its own. publish() is called by the game
+ * thread after every update; it accepts new clients and sends the frame of
+ * the update, all on non-blocking channels, so a slow client never holds up
+ * the game. A frame is encoded once into a direct buffer and written from
+ * there to every client. A client which can't keep up has its frames queued
+ * in a buffer of its own, written out by the following calls; once that is
+ * full, frames are dropped and the client is sent a keyframe as soon as it
+ * has caught up.
+ * <p>
+ * New clients, clients which ask for it and all clients of a new game get a
+ * keyframe, everyone else gets a delta. While there are clients, the server
+ * keeps a copy of the gameboard they have been sent. When an update changes
+ * too many cells for the model to list them, the copy is compared with the
+ * new gameboard, and the cells which differ are sent as a delta unless a
+ * keyframe would be smaller.
+ */
+public class StateServer {
+
+	/**
+	 * The number of bytes queued for a slow client, unless a single keyframe
+	 * needs more.
+	 */
+	private static final int BACKLOG_CAPACITY = 64 * 1024;
+
+	/**
+	 * The most cells listed by comparing gameboards. A delta of more cells
+	 * would fill most of the backlog of a slow client.
+	 */
+	private static final int MAX_DIFF_CELLS =
+			BACKLOG_CAPACITY / StateFrames.DELTA_CELL_SIZE;
+
+	/** Tells diffCount that no gameboards have been compared. */
+	private static final int NO_DIFF = -1;
+
+	/** Compares the gameboards. */
+	private static final BoardOps OPS = BoardOps.getInstance();
+
+	/** The channel accepting new clients. */
+	private final ServerSocketChannel serverChannel;
+
+	/** Tells which channels can be accepted or read without blocking. */
+	private final Selector selector;
+
+	/** The connected clients. */
+	private final List<Client> clients = new ArrayList<Client>();
+
+	/** The bytes read from the clients. */
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(256);
+
+	/** The last delta frame. */
+	private ByteBuffer deltaFrame = ByteBuffer.allocateDirect(1024);
+
+	/** The last keyframe. */
+	private ByteBuffer keyFrame = ByteBuffer.allocateDirect(1024);
+
+	/** The model of the previous frame. */
+	private GameModel lastModel;
+
+	/** The sequence number of the last frame. */
+	private int sequence;
+
+	/** The gameboard as last sent, row by row, if boardValid. */
+	private byte[] board = new byte[0];
+
+	/** True if board holds the gameboard of lastModel as last sent. */
+	private boolean boardValid;
+
+	/** The gameboard before the update, while comparing gameboards. */
+	private byte[] previousBoard = new byte[0];
+
+	/** The cells found by comparing gameboards, in order. */
+	private final int[] diffCells = new int[MAX_DIFF_CELLS];
+
+	/**
+	 * The number of cells of diffCells in the delta of this update, or
+	 * NO_DIFF if the delta lists the changes recorded by the model.
+	 */
+	private int diffCount = NO_DIFF;
+
+	/**
+	 * Starts listening for clients.
+	 *
+	 * @param address
+	 *            The address to listen on. Port 0 picks a free port.
+	 * @throws IOException
+	 *             if the address can't be listened on.
+	 */
+	public StateServer(final InetSocketAddress address) throws IOException {
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		try {
+			this.serverChannel.bind(address);
+			this.serverChannel.configureBlocking(false);
+			this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			this.serverChannel.close();
+			this.selector.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 */
+	public int getPort() {
+		return this.serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Returns the number of connected clients.
+	 */
+	public int getClientCount() {
+		return this.clients.size();
+	}
+
+	/**
+	 * Sends the changes of the last update to all clients. Must be called on
+	 * the game thread, after the update and before the changes of the model
+	 * are cleared.
+	 *
+	 * @param model
+	 *            The game which has been updated.
+	 */
+	public void publish(final GameModel model) {
+		pollClients();
+		this.sequence++;
+		if (model != this.lastModel) {
+			this.lastModel = model;
+			this.boardValid = false;
+		}
+		if (this.clients.isEmpty()) {
+			// No copy to keep up, a new client gets a keyframe anyway.
+			this.boardValid = false;
+			return;
+		}
+		if (!updateBoard(model)) {
+			// Nobody has seen this gameboard yet, or most of it has changed.
+			for (Client client : this.clients) {
+				client.needsKeyframe = true;
+			}
+		}
+
+		boolean deltaEncoded = false;
+		boolean keyframeEncoded = false;
+		Iterator<Client> it = this.clients.iterator();
+		while (it.hasNext()) {
+			Client client = it.next();
+			try {
+				flush(client);
+				ByteBuffer frame;
+				if (client.needsKeyframe) {
+					if (client.backlog.position() > 0) {
+						// Wait until the client has caught up.
+						continue;
+					}
+					if (!keyframeEncoded) {
+						encodeKeyframe(model);
+						keyframeEncoded = true;
+					}
+					frame = this.keyFrame;
+					client.needsKeyframe = false;
+				} else {
+					if (!deltaEncoded) {
+						encodeDelta(model);
+						deltaEncoded = true;
+					}
+					frame = this.deltaFrame;
+				}
+				send(client, frame);
+			} catch (IOException e) {
+				disconnect(client);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Tells all clients that the game has ended. Clients too far behind to be
+	 * told are disconnected. Like publish(), this never waits for a client:
+	 * what can't be written yet stays queued, and is written out when the
+	 * next game is published. Must be called on the game thread.
+	 *
+	 * @param score
+	 *            The final score.
+	 */
+	public void publishGameOver(final int score) {
+		pollClients();
+		this.sequence++;
+		ByteBuffer frame = this.deltaFrame;
+		frame.clear();
+		putHeader(frame, StateFrames.GAME_OVER, score);
+		finishFrame(frame);
+		Iterator<Client> it = this.clients.iterator();
+		while (it.hasNext()) {
+			Client client = it.next();
+			try {
+				flush(client);
+				if (!send(client, frame)) {
+					// The client would never learn that the game is over.
+					throw new IOException("State client too slow");
+				}
+			} catch (IOException e) {
+				disconnect(client);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Disconnects all clients and stops listening.
+	 */
+	public void close() {
+		for (Client client : this.clients) {
+			disconnect(client);
+		}
+		this.clients.clear();
+		try {
+			this.serverChannel.close();
+			this.selector.close();
+		} catch (IOException e) {
+			System.err.println("Could not close state server: " + e);
+		}
+	}
+
+	/**
+	 * Accepts new clients and reads what the clients have sent, without
+	 * blocking.
+	 */
+	private void pollClients() {
+		try {
+			this.selector.selectNow();
+		} catch (IOException e) {
+			System.err.println("Could not poll state clients: " + e);
+			return;
+		}
+		Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				accept();
+			} else if (key.isReadable()) {
+				read((Client) key.attachment());
+			}
+		}
+	}
+
+	private void accept() {
+		SocketChannel channel = null;
+		try {
+			channel = this.serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Client client = new Client(channel);
+			channel.register(this.selector, SelectionKey.OP_READ, client);
+			this.clients.add(client);
+		} catch (IOException e) {
+			System.err.println("Could not accept state client: " + e);
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException ignored) {
+					// Already failed.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the requests of a client.
+	 */
+	private void read(final Client client) {
+		try {
+			int read;
+			do {
+				this.readBuffer.clear();
+				read = client.channel.read(this.readBuffer);
+				for (int i = 0; i < Math.max(0, read); i++) {
+					if (this.readBuffer.get(i) == StateFrames.RESYNC) {
+						client.needsKeyframe = true;
+					}
+				}
+			} while (read > 0);
+			if (read < 0) {
+				disconnect(client);
+				this.clients.remove(client);
+			}
+		} catch (IOException e) {
+			disconnect(client);
+			this.clients.remove(client);
+		}
+	}
+
+	/**
+	 * Writes as much as possible of what is queued for a client.
+	 */
+	private static void flush(final Client client) throws IOException {
+		ByteBuffer backlog = client.backlog;
+		if (backlog.position() == 0) {
+			return;
+		}
+		backlog.flip();
+		client.channel.write(backlog);
+		backlog.compact();
+	}
+
+	/**
+	 * Sends a frame to a client, or queues it if the client is behind.
+	 *
+	 * @return false if the frame was dropped.
+	 */
+	private static boolean send(final Client client, final ByteBuffer frame)
+			throws IOException {
+		frame.rewind();
+		if (client.backlog.position() == 0) {
+			client.channel.write(frame);
+			if (!frame.hasRemaining()) {
+				return true;
+			}
+			if (frame.remaining() > client.backlog.capacity()) {
+				// Part of a large keyframe is out, the rest must follow.
+				client.backlog = ByteBuffer.allocateDirect(frame.remaining());
+			}
+		} else if (frame.remaining() > client.backlog.remaining()) {
+			// Drop the frame, and send a keyframe once caught up.
+			client.needsKeyframe = true;
+			return false;
+		}
+		client.backlog.put(frame);
+		return true;
+	}
+
+	private static void disconnect(final Client client) {
+		try {
+			client.channel.close();
+		} catch (IOException e) {
+			// Nothing more to do.
+		}
+	}
+
+	/**
+	 * Brings the copy of the gameboard up to date with the model, and finds
+	 * the cells to send as a delta.
+	 *
+	 * @return false if everyone needs a keyframe.
+	 */
+	private boolean updateBoard(final GameModel model) {
+		this.diffCount = NO_DIFF;
+		Dimension size = model.getGameboardSize();
+		int cellCount = size.width * size.height;
+		if (this.boardValid && !model.allCellsChanged()) {
+			for (int i = 0; i < model.getChangedCellCount(); i++) {
+				int cell = model.getChangedCell(i);
+				this.board[cell] = (byte) model.getCellTileId(cell);
+			}
+			return true;
+		}
+		if (this.previousBoard.length < cellCount) {
+			this.previousBoard = new byte[cellCount];
+		}
+		model.copyGameboard(this.previousBoard);
+		byte[] previous = this.board;
+		this.board = this.previousBoard;
+		this.previousBoard = previous;
+		if (!this.boardValid) {
+			this.boardValid = true;
+			return false;
+		}
+		int count = OPS.diff(previous, this.board, 0, cellCount,
+				this.diffCells);
+		if (count > Math.min(MAX_DIFF_CELLS,
+				cellCount / StateFrames.DELTA_CELL_SIZE)) {
+			return false;
+		}
+		this.diffCount = count;
+		return true;
+	}
+
+	/**
+	 * Encodes the whole gameboard into the keyframe buffer.
+	 */
+	private void encodeKeyframe(final GameModel model) {
+		int width = model.getGameboardSize().width;
+		int height = model.getGameboardSize().height;
+		int size = StateFrames.HEADER_SIZE + StateFrames.KEYFRAME_SIZE_FIELDS
+				+ width * height;
+		if (this.keyFrame.capacity() < size) {
+			this.keyFrame = ByteBuffer.allocateDirect(size);
+		}
+		ByteBuffer frame = this.keyFrame;
+		frame.clear();
+		putHeader(frame, StateFrames.KEYFRAME, model.getScore());
+		frame.putInt(width);
+		frame.putInt(height);
+		frame.put(this.board, 0, width * height);
+		finishFrame(frame);
+	}
+
+	/**
+	 * Encodes the changed cells into the delta buffer.
+	 */
+	private void encodeDelta(final GameModel model) {
+		boolean diffed = this.diffCount != NO_DIFF;
+		int count = diffed ? this.diffCount : model.getChangedCellCount();
+		int size = StateFrames.HEADER_SIZE + 4
+				+ count * StateFrames.DELTA_CELL_SIZE;
+		if (this.deltaFrame.capacity() < size) {
+			this.deltaFrame = ByteBuffer.allocateDirect(
+					Math.max(size, 2 * this.deltaFrame.capacity()));
+		}
+		ByteBuffer frame = this.deltaFrame;
+		frame.clear();
+		putHeader(frame, StateFrames.DELTA, model.getScore());
+		frame.putInt(count);
+		for (int i = 0; i < count; i++) {
+			int cell = diffed ? this.diffCells[i] : model.getChangedCell(i);
+			frame.putInt(cell);
+			frame.put(this.board[cell]);
+		}
+		finishFrame(frame);
+	}
+
+	/**
+	 * Starts a frame, leaving its length to be filled in by finishFrame().
+	 */
+	private void putHeader(final ByteBuffer frame, final byte type,
+			final int score) {
+		frame.putInt(0);
+		frame.put(type);
+		frame.putInt(this.sequence);
+		frame.putInt(score);
+	}
+
+	/**
+	 * Fills in the length of a frame and makes it ready to be written.
+	 */
+	private static void finishFrame(final ByteBuffer frame) {
+		frame.putInt(0, frame.position() - 4);
+		frame.flip();
+	}
+
+	/**
+	 * A connected client.
+	 */
+	private static class Client {
+		/** The connection to the client. */
+		final SocketChannel channel;
+
+		/** Bytes which couldn't be written yet, in [0, position). */
+		ByteBuffer backlog = ByteBuffer.allocateDirect(BACKLOG_CAPACITY);
+
+		/** True if the client is to be sent a keyframe. */
+		boolean needsKeyframe = true;
+
+		Client(final SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+}
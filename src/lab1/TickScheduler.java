@@ -0,0 +1,309 @@
+package lab1;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the updates of a game at a fixed rate.
+ *
+ * Every tick has a deadline on the System.nanoTime() clock, and the next
+ * deadline is computed from the previous one rather than from the time the
+ * tick actually ran. The time spent updating and repainting therefore does
+ * not add up to a drift. The tick rate may be changed at any time, from any
+ * thread; the change applies from the next tick.
+ * <p>
+ * The scheduler also records how late the ticks were released.
+ * <p>
+ * A schedule can be cancelled from another thread, which stops the wait for
+ * the next tick without interrupting the waiting thread. The game thread
+ * may be writing to NIO channels, which an interrupt would close.
+ * <p>
+ * Time is read from a Clock, which tests replace to control it.
+ */
+public class TickScheduler {
+
+	/** What to do when a tick is released after its deadline. */
+	public enum LatePolicy {
+		/**
+		 * Run the missed ticks back to back until the schedule is caught up,
+		 * but never more than MAX_CATCH_UP_TICKS of them.
+		 */
+		CATCH_UP,
+		/** Drop the missed ticks and continue at the next future deadline. */
+		SKIP
+	}
+
+	/**
+	 * The time source of a scheduler.
+	 */
+	interface Clock {
+		/** Returns the current time. (nanos) */
+		long nanoTime();
+
+		/**
+		 * Waits for some time, or less if the thread is unparked.
+		 *
+		 * @throws InterruptedException
+		 *             if the thread is interrupted while waiting.
+		 */
+		void sleepNanos(long nanos) throws InterruptedException;
+	}
+
+	/** The System.nanoTime() clock. */
+	static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleepNanos(final long nanos) throws InterruptedException {
+			LockSupport.parkNanos(nanos);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	};
+
+	/** The largest number of ticks run back to back to catch up. */
+	static final int MAX_CATCH_UP_TICKS = 5;
+
+	/** Ticks released later than this are counted as late. (nanos) */
+	private static final long LATE_THRESHOLD_NANOS =
+			TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** The time between two ticks. (nanos) */
+	private volatile long periodNanos;
+
+	/** What to do with late ticks. */
+	private volatile LatePolicy latePolicy;
+
+	/** The clock the deadlines are on. */
+	private final Clock clock;
+
+	/** The deadline of the next tick, on the clock. */
+	private long nextDeadline;
+
+	/** The thread which started the schedule. */
+	private volatile Thread waiter;
+
+	/** True if the schedule has been cancelled since it was started. */
+	private volatile boolean cancelled;
+
+	/** The number of ticks released. */
+	private volatile long tickCount;
+
+	/** The number of ticks released after their deadline. */
+	private volatile long lateTickCount;
+
+	/** The number of ticks dropped by the SKIP policy. */
+	private volatile long skippedTickCount;
+
+	/** The sum of the lateness of all ticks. (nanos) */
+	private volatile long totalLatenessNanos;
+
+	/** The largest lateness of a tick. (nanos) */
+	private volatile long maxLatenessNanos;
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param periodMillis
+	 *            The time between two ticks. (millis)
+	 * @param latePolicy
+	 *            What to do with late ticks.
+	 */
+	public TickScheduler(final long periodMillis, final LatePolicy latePolicy) {
+		this(periodMillis, latePolicy, SYSTEM_CLOCK);
+	}
+
+	/**
+	 * Creates a scheduler on a clock of its own.
+	 *
+	 * @param periodMillis
+	 *            The time between two ticks. (millis)
+	 * @param latePolicy
+	 *            What to do with late ticks.
+	 * @param clock
+	 *            The clock the deadlines are on.
+	 */
+	TickScheduler(final long periodMillis, final LatePolicy latePolicy,
+			final Clock clock) {
+		this.clock = clock;
+		setPeriodNanos(TimeUnit.MILLISECONDS.toNanos(periodMillis));
+		setLatePolicy(latePolicy);
+	}
+
+	/**
+	 * Sets the number of ticks per second.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the rate is not positive.
+	 */
+	public void setTickRate(final double ticksPerSecond) {
+		if (!(ticksPerSecond > 0)) {
+			throw new IllegalArgumentException("Invalid tick rate: "
+					+ ticksPerSecond);
+		}
+		setPeriodNanos(Math.max(1L, Math.round(1e9 / ticksPerSecond)));
+	}
+
+	/**
+	 * Returns the number of ticks per second.
+	 */
+	public double getTickRate() {
+		return 1e9 / this.periodNanos;
+	}
+
+	/**
+	 * Sets the time between two ticks.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the period is not positive.
+	 */
+	public void setPeriodNanos(final long periodNanos) {
+		if (periodNanos <= 0) {
+			throw new IllegalArgumentException("Invalid tick period: "
+					+ periodNanos);
+		}
+		this.periodNanos = periodNanos;
+	}
+
+	/**
+	 * Returns the time between two ticks. (nanos)
+	 */
+	public long getPeriodNanos() {
+		return this.periodNanos;
+	}
+
+	/**
+	 * Sets what to do with late ticks.
+	 */
+	public void setLatePolicy(final LatePolicy latePolicy) {
+		if (latePolicy == null) {
+			throw new IllegalArgumentException("No late policy");
+		}
+		this.latePolicy = latePolicy;
+	}
+
+	/**
+	 * Returns what is done with late ticks.
+	 */
+	public LatePolicy getLatePolicy() {
+		return this.latePolicy;
+	}
+
+	/**
+	 * Starts a new schedule, with the first tick due immediately, and clears
+	 * the statistics. Must be called by the thread which will wait for the
+	 * ticks.
+	 */
+	public void start() {
+		this.waiter = Thread.currentThread();
+		this.cancelled = false;
+		this.nextDeadline = this.clock.nanoTime();
+		this.tickCount = 0;
+		this.lateTickCount = 0;
+		this.skippedTickCount = 0;
+		this.totalLatenessNanos = 0;
+		this.maxLatenessNanos = 0;
+	}
+
+	/**
+	 * Makes the thread which started the schedule stop waiting for the next
+	 * tick, or not start to, until the schedule is started again. The thread
+	 * is not interrupted. May be called from any thread.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+		Thread thread = this.waiter;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Waits until the deadline of the next tick, and schedules the one after.
+	 *
+	 * @return How late the tick was released. (nanos)
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting, or the
+	 *             schedule has been cancelled.
+	 */
+	public long awaitNextTick() throws InterruptedException {
+		long deadline = this.nextDeadline;
+		long now = this.clock.nanoTime();
+		while (now - deadline < 0) {
+			if (this.cancelled) {
+				throw new InterruptedException("Schedule cancelled");
+			}
+			this.clock.sleepNanos(deadline - now);
+			now = this.clock.nanoTime();
+		}
+
+		long lateness = now - deadline;
+		long period = this.periodNanos;
+		long next = deadline + period;
+		if (now - next >= 0) {
+			// The next deadline has passed already.
+			long missed = (now - deadline) / period;
+			if (this.latePolicy == LatePolicy.SKIP
+					|| missed > MAX_CATCH_UP_TICKS) {
+				next = deadline + (missed + 1) * period;
+				this.skippedTickCount += missed;
+			}
+		}
+		this.nextDeadline = next;
+
+		record(lateness);
+		return lateness;
+	}
+
+	/**
+	 * Adds the lateness of a released tick to the statistics.
+	 */
+	private void record(final long lateness) {
+		this.tickCount++;
+		if (lateness > LATE_THRESHOLD_NANOS) {
+			this.lateTickCount++;
+		}
+		this.totalLatenessNanos += lateness;
+		if (lateness > this.maxLatenessNanos) {
+			this.maxLatenessNanos = lateness;
+		}
+	}
+
+	/** @return the number of ticks released since start(). */
+	public long getTickCount() {
+		return this.tickCount;
+	}
+
+	/** @return the number of ticks released more than 1 ms late. */
+	public long getLateTickCount() {
+		return this.lateTickCount;
+	}
+
+	/** @return the number of ticks dropped instead of being caught up. */
+	public long getSkippedTickCount() {
+		return this.skippedTickCount;
+	}
+
+	/** @return the average lateness of the released ticks. (nanos) */
+	public long getMeanLatenessNanos() {
+		long ticks = this.tickCount;
+		return ticks == 0 ? 0 : this.totalLatenessNanos / ticks;
+	}
+
+	/** @return the largest lateness of a released tick. (nanos) */
+	public long getMaxLatenessNanos() {
+		return this.maxLatenessNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d ticks, %d late, %d skipped, "
+				+ "lateness mean %.3f ms, max %.3f ms", getTickCount(),
+				getLateTickCount(), getSkippedTickCount(),
+				getMeanLatenessNanos() / 1e6, getMaxLatenessNanos() / 1e6);
+	}
+}
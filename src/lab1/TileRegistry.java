@@ -0,0 +1,66 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * Maps the small integer IDs stored in the gameboard to the GameTile objects
+ * which know how to paint them.
+ * 
+ * Every GameTile registers itself when it is created. The IDs fit in a byte,
+ * which keeps the gameboard at one byte per cell. ID 0 is reserved for cells
+ * which have not been set yet, and maps to <code>null</code>.
+ */
+public enum TileRegistry {
+	;
+	// Safe Singleton pattern, prevent instantiation.
+
+	/** The ID of a cell which has not been set yet. */
+	public static final int NO_TILE = 0;
+
+	/** The largest ID which can be handed out. */
+	public static final int MAX_ID = 255;
+
+	/**
+	 * The registered tiles, indexed by ID. The array is replaced, never
+	 * modified, so lookups don't need to lock.
+	 */
+	private static volatile GameTile[] tiles = new GameTile[1];
+
+	/**
+	 * Registers a tile and returns its ID.
+	 * 
+	 * @param tile
+	 *            The tile to register.
+	 * @throws IllegalStateException
+	 *             if no more IDs are available.
+	 */
+	static synchronized int register(final GameTile tile) {
+		int id = tiles.length;
+		if (id > MAX_ID) {
+			throw new IllegalStateException("Too many game tiles, at most "
+					+ MAX_ID + " can be registered");
+		}
+		GameTile[] grown = Arrays.copyOf(tiles, id + 1);
+		grown[id] = tile;
+		tiles = grown;
+		return id;
+	}
+
+	/**
+	 * Returns the number of IDs handed out so far, counting NO_TILE. All IDs
+	 * are less than this.
+	 */
+	public static int getTileCount() {
+		return tiles.length;
+	}
+
+	/**
+	 * Returns the tile with the given ID.
+	 * 
+	 * @param id
+	 *            An ID returned by GameTile.getId().
+	 */
+	public static GameTile getTile(final int id) {
+		return tiles[id];
+	}
+}
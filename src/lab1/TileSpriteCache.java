@@ -0,0 +1,144 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws game tiles from pre-rasterized images.
+ *
+ * The first time a tile is drawn, it is drawn once into an image compatible
+ * with the screen. Afterwards every cell showing that tile is a single
+ * drawImage, so the cost of drawing no longer depends on how complex the
+ * tile is. The images are thrown away when the tile size or the screen
+ * changes.
+ * <p>
+ * Only to be used from the thread which paints, normally the event
+ * dispatch thread.
+ */
+public class TileSpriteCache {
+
+	/** Pixels around a tile included in its image, for thick strokes. */
+	private final int margin;
+
+	/** The images of the tiles, indexed by ID. Null for invisible tiles. */
+	private final BufferedImage[] sprites =
+			new BufferedImage[TileRegistry.MAX_ID + 1];
+
+	/** True for the IDs whose image has been made. */
+	private final boolean[] rasterized = new boolean[TileRegistry.MAX_ID + 1];
+
+	/** The tile size of the images. */
+	private final Dimension tileSize = new Dimension();
+
+	/** The screen the images are compatible with. */
+	private GraphicsConfiguration configuration;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param margin
+	 *            Pixels around a tile which are included in its image.
+	 */
+	public TileSpriteCache(final int margin) {
+		this.margin = margin;
+	}
+
+	/**
+	 * Prepares to draw tiles of a given size into a graphics context, throwing
+	 * the images away if the size or the screen has changed. Must be called
+	 * before draw().
+	 *
+	 * @param g
+	 *            graphics context which will be drawn on.
+	 * @param size
+	 *            size of the tiles in pixels.
+	 */
+	public void prepare(final Graphics g, final Dimension size) {
+		GraphicsConfiguration current =
+				((Graphics2D) g).getDeviceConfiguration();
+		if (!size.equals(this.tileSize) || current != this.configuration) {
+			invalidate();
+			this.tileSize.setSize(size);
+			this.configuration = current;
+		}
+	}
+
+	/**
+	 * Throws all images away.
+	 */
+	public void invalidate() {
+		for (int id = 0; id < this.sprites.length; id++) {
+			this.sprites[id] = null;
+			this.rasterized[id] = false;
+		}
+	}
+
+	/**
+	 * Draws a tile.
+	 *
+	 * @param g
+	 *            graphics context to draw on.
+	 * @param id
+	 *            the TileRegistry ID of the tile.
+	 * @param x
+	 *            pixel x coordinate of the tile to be drawn.
+	 * @param y
+	 *            pixel y coordinate of the tile to be drawn.
+	 */
+	public void draw(final Graphics g, final int id, final int x, final int y) {
+		if (!this.rasterized[id]) {
+			this.sprites[id] = rasterize(TileRegistry.getTile(id));
+			this.rasterized[id] = true;
+		}
+		BufferedImage sprite = this.sprites[id];
+		if (sprite != null) {
+			g.drawImage(sprite, x - this.margin, y - this.margin, null);
+		}
+	}
+
+	/**
+	 * Draws a tile into a new image.
+	 *
+	 * @return the image, or null if the tile doesn't draw anything.
+	 */
+	private BufferedImage rasterize(final GameTile tile) {
+		if (tile == null) {
+			return null;
+		}
+		int width = this.tileSize.width + 2 * this.margin;
+		int height = this.tileSize.height + 2 * this.margin;
+		BufferedImage image;
+		if (this.configuration != null) {
+			image = this.configuration.createCompatibleImage(width, height,
+					Transparency.TRANSLUCENT);
+		} else {
+			image = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+		}
+		Graphics g = image.createGraphics();
+		try {
+			tile.draw(g, this.margin, this.margin, this.tileSize);
+		} finally {
+			g.dispose();
+		}
+		return isBlank(image) ? null : image;
+	}
+
+	/**
+	 * Returns true if no pixel of the image is visible.
+	 */
+	private static boolean isBlank(final BufferedImage image) {
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				if ((image.getRGB(x, y) >>> 24) != 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,563 @@
+package lab1;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Compares policies by letting each of them play the same number of games
+ * without a view, and collecting the distributions of their scores and of
+ * how many updates their games lasted.
+ *
+ * Game number <code>i</code> gets the same seeds for every policy, derived
+ * from <code>seed + i</code>, so every policy faces the same sequence of
+ * games and a tournament run again with the same seed gives the same report.
+ * All games of all policies are spread over the cores by HeadlessRunner;
+ * every game writes its results into a slot of its own, so workers share
+ * nothing while playing.
+ */
+public class TournamentEvaluator {
+
+	/** Never presses a key. */
+	public static final GamePolicy IDLE = new GamePolicy() {
+		@Override
+		public String getName() {
+			return "idle";
+		}
+
+		@Override
+		public KeySource createKeySource(final GameModel model,
+				final long seed) {
+			return new ScriptedKeySource(new int[] { 0 });
+		}
+	};
+
+	/** Presses a random arrow key in every fourth update on average. */
+	public static final GamePolicy RANDOM = new GamePolicy() {
+		@Override
+		public String getName() {
+			return "random";
+		}
+
+		@Override
+		public KeySource createKeySource(final GameModel model,
+				final long seed) {
+			return new RandomKeySource(seed);
+		}
+	};
+
+	/** Steers a snake with a SnakeAutopilot, for Snake only. */
+	public static final GamePolicy AUTOPILOT = new GamePolicy() {
+		@Override
+		public String getName() {
+			return "autopilot";
+		}
+
+		@Override
+		public KeySource createKeySource(final GameModel model,
+				final long seed) {
+			if (!(model instanceof SnakeModel)) {
+				throw new IllegalArgumentException(
+						"The autopilot only plays Snake");
+			}
+			return new SnakeAutopilot((SnakeModel) model);
+		}
+	};
+
+	/** The percentiles written to reports. */
+	private static final double[] REPORTED_PERCENTILES = { 10, 25, 50, 75,
+			90, 99 };
+
+	/** The factory creating the models to play. */
+	private final IGameFactory gameFactory;
+
+	/** The name of the game to play, as given by the factory. */
+	private final String gameName;
+
+	/** The size of the gameboard of every game. */
+	private final Dimension boardSize;
+
+	/** The largest number of updates made to a single game. */
+	private final int maxTicks;
+
+	/** The seed the seeds of all games derive from. */
+	private final long seed;
+
+	/**
+	 * Creates an evaluator.
+	 *
+	 * @param gameFactory
+	 *            The factory creating the models to play.
+	 * @param gameName
+	 *            The name of the game to play, as given by the factory.
+	 * @param boardSize
+	 *            The size of the gameboard of every game.
+	 * @param maxTicks
+	 *            The largest number of updates made to a single game.
+	 * @param seed
+	 *            The seed the seeds of all games derive from.
+	 */
+	public TournamentEvaluator(final IGameFactory gameFactory,
+			final String gameName, final Dimension boardSize,
+			final int maxTicks, final long seed) {
+		if (maxTicks <= 0) {
+			throw new IllegalArgumentException("Invalid tick limit: "
+					+ maxTicks);
+		}
+		this.gameFactory = gameFactory;
+		this.gameName = gameName;
+		this.boardSize = new Dimension(boardSize);
+		this.maxTicks = maxTicks;
+		this.seed = seed;
+	}
+
+	/**
+	 * Lets every policy play a number of games.
+	 *
+	 * @param policies
+	 *            The policies to compare.
+	 * @param games
+	 *            The number of games played by each policy.
+	 * @return the distributions of the results of each policy.
+	 * @throws IllegalArgumentException
+	 *             if the number of games is negative, or a policy can't play
+	 *             the game.
+	 */
+	public Report evaluate(final GamePolicy[] policies, final int games) {
+		if (games < 0) {
+			throw new IllegalArgumentException("Invalid number of games: "
+					+ games);
+		}
+		final int[][] scores = new int[policies.length][games];
+		final int[][] ticks = new int[policies.length][games];
+		long start = System.nanoTime();
+		HeadlessRunner.runAll(policies.length * games,
+				new HeadlessRunner.GameJob() {
+					@Override
+					public long play(final int index) {
+						// Games are numbered across all policies.
+						int policy = index / games;
+						int game = index % games;
+						int[] results = new int[2];
+						playGame(policies[policy], game, results);
+						scores[policy][game] = results[0];
+						ticks[policy][game] = results[1];
+						return results[1];
+					}
+				});
+		long elapsedNanos = System.nanoTime() - start;
+
+		String[] names = new String[policies.length];
+		Distribution[] scoreDistributions = new Distribution[policies.length];
+		Distribution[] tickDistributions = new Distribution[policies.length];
+		for (int p = 0; p < policies.length; p++) {
+			names[p] = policies[p].getName();
+			scoreDistributions[p] = new Distribution(scores[p]);
+			tickDistributions[p] = new Distribution(ticks[p]);
+		}
+		return new Report(this.gameName, this.boardSize, this.maxTicks,
+				this.seed, games, elapsedNanos, names, scoreDistributions,
+				tickDistributions);
+	}
+
+	/**
+	 * Plays a single game to completion.
+	 *
+	 * @param policy
+	 *            The policy playing the game.
+	 * @param index
+	 *            The number of the game.
+	 * @param results
+	 *            Where the final score and the number of updates are stored,
+	 *            in this order.
+	 */
+	void playGame(final GamePolicy policy, final int index,
+			final int[] results) {
+		SplittableRandom seeds = new SplittableRandom(this.seed + index);
+		GameModel model = this.gameFactory.createGame(this.gameName,
+				this.boardSize, seeds.nextLong());
+		try {
+			KeySource keys = policy.createKeySource(model, seeds.nextLong());
+			HeadlessRunner.playGame(model, keys, this.maxTicks, results);
+		} finally {
+			// Hand the model back even if the policy or an update failed.
+			this.gameFactory.releaseGame(this.gameName, model);
+		}
+	}
+
+	/**
+	 * The sorted values of a result over all games of a policy.
+	 */
+	public static class Distribution {
+		/** The values, in ascending order. */
+		private final int[] values;
+
+		/** The sum of the values. */
+		private final long sum;
+
+		Distribution(final int[] values) {
+			this.values = values.clone();
+			Arrays.sort(this.values);
+			long total = 0;
+			for (int value : this.values) {
+				total += value;
+			}
+			this.sum = total;
+		}
+
+		/** @return the number of values. */
+		public int getCount() {
+			return this.values.length;
+		}
+
+		/** @return the smallest value, or 0 if there are none. */
+		public int getMin() {
+			return this.values.length == 0 ? 0 : this.values[0];
+		}
+
+		/** @return the largest value, or 0 if there are none. */
+		public int getMax() {
+			return this.values.length == 0 ? 0
+					: this.values[this.values.length - 1];
+		}
+
+		/** @return the mean of the values, or 0 if there are none. */
+		public double getMean() {
+			return this.values.length == 0 ? 0
+					: (double) this.sum / this.values.length;
+		}
+
+		/** @return the sample standard deviation of the values. */
+		public double getStandardDeviation() {
+			if (this.values.length < 2) {
+				return 0;
+			}
+			double mean = getMean();
+			double squares = 0;
+			for (int value : this.values) {
+				squares += (value - mean) * (value - mean);
+			}
+			return Math.sqrt(squares / (this.values.length - 1));
+		}
+
+		/**
+		 * Returns the smallest value which at least a percentage of all values
+		 * are less than or equal to (the nearest rank method).
+		 *
+		 * @param percentile
+		 *            The percentage, from 0 to 100.
+		 * @return the value, or 0 if there are none.
+		 */
+		public int getPercentile(final double percentile) {
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("Invalid percentile: "
+						+ percentile);
+			}
+			if (this.values.length == 0) {
+				return 0;
+			}
+			int rank = (int) Math.ceil(percentile / 100 * this.values.length);
+			return this.values[Math.max(0, rank - 1)];
+		}
+	}
+
+	/**
+	 * The outcome of a tournament.
+	 */
+	public static class Report {
+		/** The name of the game played. */
+		private final String gameName;
+
+		/** The size of the gameboards. */
+		private final Dimension boardSize;
+
+		/** The largest number of updates made to a single game. */
+		private final int maxTicks;
+
+		/** The seed the seeds of all games derive from. */
+		private final long seed;
+
+		/** The number of games played by each policy. */
+		private final int games;
+
+		/** The wall-clock time of the tournament. (nanos) */
+		private final long elapsedNanos;
+
+		/** The names of the policies. */
+		private final String[] policyNames;
+
+		/** The scores of each policy. */
+		private final Distribution[] scores;
+
+		/** The numbers of updates of the games of each policy. */
+		private final Distribution[] ticks;
+
+		Report(final String gameName, final Dimension boardSize,
+				final int maxTicks, final long seed, final int games,
+				final long elapsedNanos, final String[] policyNames,
+				final Distribution[] scores, final Distribution[] ticks) {
+			this.gameName = gameName;
+			this.boardSize = new Dimension(boardSize);
+			this.maxTicks = maxTicks;
+			this.seed = seed;
+			this.games = games;
+			this.elapsedNanos = elapsedNanos;
+			this.policyNames = policyNames;
+			this.scores = scores;
+			this.ticks = ticks;
+		}
+
+		/** @return the number of policies compared. */
+		public int getPolicyCount() {
+			return this.policyNames.length;
+		}
+
+		/** @return the name of policy number i. */
+		public String getPolicyName(final int i) {
+			return this.policyNames[i];
+		}
+
+		/** @return the scores of policy number i. */
+		public Distribution getScores(final int i) {
+			return this.scores[i];
+		}
+
+		/** @return how many updates the games of policy number i lasted. */
+		public Distribution getTicks(final int i) {
+			return this.ticks[i];
+		}
+
+		/** @return the wall-clock time of the tournament in nanoseconds. */
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		/** @return the number of updates made per second, by all policies. */
+		public double getTicksPerSecond() {
+			long total = 0;
+			for (Distribution distribution : this.ticks) {
+				total += distribution.sum;
+			}
+			return total * 1e9 / Math.max(1L, this.elapsedNanos);
+		}
+
+		/**
+		 * Writes the report as CSV, with a header line followed by one line
+		 * for the scores and one for the game lengths of every policy.
+		 */
+		public void writeCsv(final Appendable out) throws IOException {
+			out.append("policy,metric,games,mean,stddev,min");
+			for (double percentile : REPORTED_PERCENTILES) {
+				out.append(",p").append(formatPercentile(percentile));
+			}
+			out.append(",max\n");
+			for (int p = 0; p < this.policyNames.length; p++) {
+				writeCsvLine(out, this.policyNames[p], "score", this.scores[p]);
+				writeCsvLine(out, this.policyNames[p], "ticks", this.ticks[p]);
+			}
+		}
+
+		private static void writeCsvLine(final Appendable out,
+				final String policy, final String metric,
+				final Distribution distribution) throws IOException {
+			out.append(csvField(policy)).append(',').append(metric)
+					.append(',').append(Integer.toString(distribution.getCount()))
+					.append(',').append(formatDecimal(distribution.getMean()))
+					.append(',')
+					.append(formatDecimal(distribution.getStandardDeviation()))
+					.append(',').append(Integer.toString(distribution.getMin()));
+			for (double percentile : REPORTED_PERCENTILES) {
+				out.append(',').append(Integer.toString(
+						distribution.getPercentile(percentile)));
+			}
+			out.append(',').append(Integer.toString(distribution.getMax()))
+					.append('\n');
+		}
+
+		/**
+		 * Writes the report as a JSON object, including the settings needed
+		 * to run the tournament again.
+		 */
+		public void writeJson(final Appendable out) throws IOException {
+			out.append("{\n");
+			out.append("  \"game\": ").append(jsonString(this.gameName))
+					.append(",\n");
+			out.append("  \"width\": ").append(
+					Integer.toString(this.boardSize.width)).append(",\n");
+			out.append("  \"height\": ").append(
+					Integer.toString(this.boardSize.height)).append(",\n");
+			out.append("  \"maxTicks\": ").append(
+					Integer.toString(this.maxTicks)).append(",\n");
+			out.append("  \"seed\": ").append(Long.toString(this.seed))
+					.append(",\n");
+			out.append("  \"gamesPerPolicy\": ").append(
+					Integer.toString(this.games)).append(",\n");
+			out.append("  \"elapsedSeconds\": ").append(
+					formatDecimal(this.elapsedNanos / 1e9)).append(",\n");
+			out.append("  \"policies\": [");
+			for (int p = 0; p < this.policyNames.length; p++) {
+				out.append(p == 0 ? "\n" : ",\n");
+				out.append("    {\n      \"name\": ")
+						.append(jsonString(this.policyNames[p])).append(",\n");
+				out.append("      \"score\": ");
+				writeJsonDistribution(out, this.scores[p]);
+				out.append(",\n      \"ticks\": ");
+				writeJsonDistribution(out, this.ticks[p]);
+				out.append("\n    }");
+			}
+			out.append("\n  ]\n}\n");
+		}
+
+		private static void writeJsonDistribution(final Appendable out,
+				final Distribution distribution) throws IOException {
+			out.append("{\"mean\": ")
+					.append(formatDecimal(distribution.getMean()))
+					.append(", \"stddev\": ")
+					.append(formatDecimal(distribution.getStandardDeviation()))
+					.append(", \"min\": ")
+					.append(Integer.toString(distribution.getMin()));
+			for (double percentile : REPORTED_PERCENTILES) {
+				out.append(", \"p").append(formatPercentile(percentile))
+						.append("\": ").append(Integer.toString(
+								distribution.getPercentile(percentile)));
+			}
+			out.append(", \"max\": ")
+					.append(Integer.toString(distribution.getMax()))
+					.append('}');
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(String.format(Locale.ROOT,
+					"%s %dx%d, %d games per policy, seed %d, %.3f s, "
+							+ "%.0f ticks/s%n", this.gameName,
+					this.boardSize.width, this.boardSize.height, this.games,
+					this.seed, this.elapsedNanos / 1e9, getTicksPerSecond()));
+			for (int p = 0; p < this.policyNames.length; p++) {
+				Distribution score = this.scores[p];
+				Distribution length = this.ticks[p];
+				text.append(String.format(Locale.ROOT,
+						"%-10s score mean %.1f p50 %d p90 %d max %d, "
+								+ "ticks mean %.0f p50 %d p90 %d%n",
+						this.policyNames[p], score.getMean(),
+						score.getPercentile(50), score.getPercentile(90),
+						score.getMax(), length.getMean(),
+						length.getPercentile(50), length.getPercentile(90)));
+			}
+			return text.toString();
+		}
+	}
+
+	private static String formatDecimal(final double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private static String formatPercentile(final double percentile) {
+		return percentile == Math.rint(percentile)
+				? Integer.toString((int) percentile)
+				: Double.toString(percentile).replace('.', '_');
+	}
+
+	/**
+	 * Quotes a CSV field if it contains a separator or a quote.
+	 */
+	private static String csvField(final String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+				&& value.indexOf('\n') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * Quotes a string for JSON.
+	 */
+	private static String jsonString(final String value) {
+		StringBuilder quoted = new StringBuilder(value.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Returns the policies which can play a game: the autopilot for both
+	 * kinds of Snake, and pressing random keys or none for every game.
+	 */
+	public static GamePolicy[] getPolicies(final String gameName) {
+		List<GamePolicy> policies = new ArrayList<GamePolicy>();
+		policies.add(IDLE);
+		policies.add(RANDOM);
+		if ("Snake".equals(gameName) || "WrapSnake".equals(gameName)) {
+			policies.add(AUTOPILOT);
+		}
+		return policies.toArray(new GamePolicy[policies.size()]);
+	}
+
+	/**
+	 * Runs a tournament between all policies which can play a game.
+	 * <p>
+	 * Arguments: game name, board width, board height, games per policy,
+	 * maximum updates per game, seed and report file. All are optional. The
+	 * report is written as JSON if the file name ends with ".json", as CSV
+	 * otherwise, and as CSV to the standard output if there is no file.
+	 */
+	public static void main(final String[] args) throws IOException {
+		// Never open a window, even if a display happens to be available.
+		System.setProperty("java.awt.headless", "true");
+
+		String gameName = args.length > 0 ? args[0] : "Snake";
+		Dimension size = Constants.getGameSize();
+		if (args.length > 2) {
+			size = new Dimension(Integer.parseInt(args[1]),
+					Integer.parseInt(args[2]));
+		}
+		int games = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		int maxTicks = args.length > 4 ? Integer.parseInt(args[4]) : 100000;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 0L;
+
+		IGameFactory factory = new PooledGameFactory(new GameFactory(),
+				Runtime.getRuntime().availableProcessors());
+		TournamentEvaluator evaluator = new TournamentEvaluator(factory,
+				gameName, size, maxTicks, seed);
+		Report report = evaluator.evaluate(getPolicies(gameName), games);
+		System.err.print(report);
+
+		if (args.length > 6) {
+			Writer out = Files.newBufferedWriter(Paths.get(args[6]),
+					StandardCharsets.UTF_8);
+			try {
+				if (args[6].endsWith(".json")) {
+					report.writeJson(out);
+				} else {
+					report.writeCsv(out);
+				}
+			} finally {
+				out.close();
+			}
+		} else {
+			Writer out = new OutputStreamWriter(System.out,
+					StandardCharsets.UTF_8);
+			report.writeCsv(out);
+			out.flush();
+		}
+	}
+}
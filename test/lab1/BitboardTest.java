@@ -0,0 +1,70 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class BitboardTest {
+
+	@Test
+	public void getReturnsCellsInRowMajorOrder() {
+		// Large enough for several blocks of words.
+		int width = 300;
+		int height = 100;
+		Bitboard cells = new Bitboard(width, height);
+		boolean[] expected = new boolean[width * height];
+		SplittableRandom random = new SplittableRandom(1);
+		for (int i = 0; i < 20000; i++) {
+			int cell = random.nextInt(expected.length);
+			if (random.nextBoolean()) {
+				cells.add(cell);
+				expected[cell] = true;
+			} else {
+				cells.remove(cell);
+				expected[cell] = false;
+			}
+		}
+		int k = 0;
+		for (int cell = 0; cell < expected.length; cell++) {
+			assertEquals(expected[cell], cells.contains(cell));
+			if (expected[cell]) {
+				assertEquals(cell, cells.get(k));
+				k++;
+			}
+		}
+		assertEquals(k, cells.size());
+	}
+
+	@Test
+	public void addAllAndClear() {
+		Bitboard cells = new Bitboard(7, 9);
+		cells.addAll();
+		assertEquals(63, cells.size());
+		assertEquals(62, cells.get(62));
+		cells.clear();
+		assertTrue(cells.isEmpty());
+		assertFalse(cells.contains(0));
+	}
+
+	@Test
+	public void addingTwiceCountsOnce() {
+		Bitboard cells = new Bitboard(8, 8);
+		cells.add(5);
+		cells.add(5);
+		assertEquals(1, cells.size());
+		cells.remove(5);
+		cells.remove(5);
+		assertEquals(0, cells.size());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void getPastTheSizeFails() {
+		Bitboard cells = new Bitboard(8, 8);
+		cells.add(3);
+		cells.get(1);
+	}
+}
@@ -0,0 +1,118 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+
+import org.junit.Test;
+
+public class BoardExchangeTest {
+
+	private static final Dimension SIZE = new Dimension(150, 100);
+
+	@Test
+	public void firstFrameHoldsTheStartingBoard() {
+		GameModel model = new GoldModel(SIZE, 500, 1);
+		BoardExchange exchange = new BoardExchange(model);
+		BoardFrame frame = exchange.latest();
+		assertEquals(0, frame.getSequence());
+		assertSameFrame(copyOf(model), frame, true);
+	}
+
+	@Test
+	public void latestFrameFollowsTheGame() {
+		GameModel model = new GoldModel(SIZE, 500, 2);
+		KeySource keys = new RandomKeySource(2);
+		BoardExchange exchange = new BoardExchange(model);
+		for (int tick = 1; tick <= 300; tick++) {
+			try {
+				model.gameUpdate(keys.nextKey());
+			} catch (GameOverException e) {
+				// Every cell changes, so the next frame is copied whole.
+				model.reset(tick);
+			}
+			exchange.publish(model);
+			model.clearChangedCells();
+			// Frames are taken now and then, so that some are copied from
+			// the log of changes and some from the whole gameboard.
+			if (tick % 7 == 0 || tick % 11 == 0) {
+				BoardFrame frame = exchange.latest();
+				assertEquals(tick, frame.getSequence());
+				assertSameFrame(copyOf(model), frame, false);
+			}
+		}
+	}
+
+	@Test
+	public void levelsAreBuiltOnceWanted() throws GameOverException {
+		GameModel model = new SnakeModel(SIZE, 3, 3);
+		KeySource keys = new SnakeAutopilot((SnakeModel) model);
+		BoardExchange exchange = new BoardExchange(model);
+		for (int tick = 1; tick <= 200; tick++) {
+			model.gameUpdate(keys.nextKey());
+			exchange.publish(model);
+			model.clearChangedCells();
+			if (tick == 100) {
+				exchange.setLevelsWanted(true);
+			}
+			if (tick % 3 == 0) {
+				BoardFrame frame = exchange.latest();
+				assertSameFrame(copyOf(model), frame, tick >= 100);
+			}
+		}
+		// Paused: no more frames are published, but the levels are wanted
+		// for the last one.
+		exchange.setLevelsWanted(false);
+		model.gameUpdate(keys.nextKey());
+		exchange.publish(model);
+		model.clearChangedCells();
+		BoardFrame expected = copyOf(model);
+		exchange.setLevelsWanted(true);
+		assertSameFrame(expected, exchange.latest(), true);
+	}
+
+	@Test
+	public void framesAreNotHandedOutTwice() {
+		GameModel model = new GoldModel(SIZE, 500, 4);
+		BoardExchange exchange = new BoardExchange(model);
+		BoardFrame first = exchange.latest();
+		exchange.publish(model);
+		BoardFrame second = exchange.latest();
+		assertNotSame(first, second);
+		assertTrue(second.getSequence() > first.getSequence());
+		// Nothing new: the same frame is kept.
+		assertSame(second, exchange.latest());
+	}
+
+	/**
+	 * Returns a frame copied straight from a game, with every level.
+	 */
+	private static BoardFrame copyOf(final GameModel model) {
+		Dimension size = model.getGameboardSize();
+		BoardFrame frame = new BoardFrame(size.width, size.height);
+		frame.copyFrom(model, 0, true);
+		return frame;
+	}
+
+	/**
+	 * Checks that two frames hold the same gameboard and score, and the
+	 * same coarser levels if asked.
+	 */
+	private static void assertSameFrame(final BoardFrame expected,
+			final BoardFrame actual, final boolean levels) {
+		int levelCount = levels ? expected.getLevelCount() : 1;
+		for (int level = 0; level < levelCount; level++) {
+			for (int y = 0; y < expected.getLevelHeight(level); y++) {
+				for (int x = 0; x < expected.getLevelWidth(level); x++) {
+					assertEquals("Cell (" + x + "," + y + ") of level "
+							+ level, expected.getLevelTileId(level, x, y),
+							actual.getLevelTileId(level, x, y));
+				}
+			}
+		}
+		assertEquals(expected.getScore(), actual.getScore());
+	}
+}
@@ -0,0 +1,98 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class ChunkedBoardTest {
+
+	@Test
+	public void newBoardHoldsZero() {
+		ChunkedBoard board = new ChunkedBoard(100, 70);
+		assertEquals(0, board.get(0, 0));
+		assertEquals(0, board.get(99, 69));
+		assertEquals(0, board.getChunkCount());
+	}
+
+	@Test
+	public void chunkIsOnlyKeptWhileNeeded() {
+		ChunkedBoard board = new ChunkedBoard(100, 70);
+		assertTrue(board.set(70, 10, 200));
+		assertEquals(200, board.get(70, 10));
+		assertEquals(1, board.getChunkCount());
+		assertFalse(board.set(70, 10, 200));
+		assertTrue(board.set(70, 10, 0));
+		assertEquals(0, board.getChunkCount());
+	}
+
+	@Test
+	public void fillChangesTheBackground() {
+		ChunkedBoard board = new ChunkedBoard(100, 70);
+		board.set(1, 1, 5);
+		board.fill(3);
+		assertEquals(0, board.getChunkCount());
+		assertEquals(3, board.get(1, 1));
+		assertEquals(3, board.get(99, 69));
+		assertFalse(board.set(2, 2, 3));
+	}
+
+	@Test
+	public void directoryAndHashTableHoldTheSameCells() {
+		// Few enough chunks for a directory, and too many for one.
+		checkAgainstArray(new ChunkedBoard(200, 150), 200, 150);
+		checkAgainstArray(new ChunkedBoard(100000, 100000), 200, 150);
+	}
+
+	/**
+	 * Sets random cells of a corner of a board, and checks every cell of
+	 * the corner against a plain array.
+	 */
+	private static void checkAgainstArray(final ChunkedBoard board,
+			final int width, final int height) {
+		int[] expected = new int[width * height];
+		SplittableRandom random = new SplittableRandom(2);
+		for (int i = 0; i < 20000; i++) {
+			int x = random.nextInt(width);
+			int y = random.nextInt(height);
+			int value = random.nextInt(4) == 0 ? random.nextInt(256) : 0;
+			board.set(x, y, value);
+			expected[y * width + x] = value;
+		}
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				assertEquals(expected[y * width + x], board.get(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void copyToFillsRowByRow() {
+		ChunkedBoard board = new ChunkedBoard(70, 3);
+		board.fill(1);
+		board.set(69, 2, 9);
+		byte[] cells = new byte[70 * 3];
+		board.copyTo(cells);
+		assertEquals(1, cells[0]);
+		assertEquals(9, cells[2 * 70 + 69]);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void getPastTheRightEdgeFails() {
+		// The cell is inside the chunk, but outside the board.
+		new ChunkedBoard(10, 10).get(10, 0);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void setAboveTheBoardFails() {
+		new ChunkedBoard(10, 10).set(0, -1, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyBoardIsRefused() {
+		new ChunkedBoard(0, 10);
+	}
+}
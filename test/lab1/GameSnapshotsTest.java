@@ -0,0 +1,131 @@
+package lab1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GameSnapshotsTest {
+
+	private static final Dimension SIZE = new Dimension(40, 30);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restoredGamesContinueLikeTheSavedOnes()
+			throws IOException, GameOverException {
+		GameModel[] games = new GameModel[] {
+				new GoldModel(SIZE, 200, 1),
+				new SnakeModel(SIZE, 3, 2),
+				new SnakeModel(SIZE, 3, 3, true) };
+		String[] names = new String[] { "Gold", "Snake", "WrapSnake" };
+		KeySource keys = new RandomKeySource(4);
+		for (int tick = 0; tick < 10; tick++) {
+			int key = keys.nextKey();
+			for (GameModel game : games) {
+				game.gameUpdate(key);
+			}
+		}
+		Path file = this.folder.newFile().toPath();
+		GameSnapshots.save(file, names, games);
+		GameModel[] restored = GameSnapshots.load(file, new GameFactory());
+
+		assertEquals(games.length, restored.length);
+		for (int i = 0; i < games.length; i++) {
+			assertEquals(games[i].getClass(), restored[i].getClass());
+			assertEquals(games[i].getSeed(), restored[i].getSeed());
+			assertSameGame(games[i], restored[i]);
+			playSideBySide(games[i], restored[i], keys);
+		}
+	}
+
+	@Test
+	public void savingLeavesTheGameAlone()
+			throws IOException, GameOverException {
+		GameModel saved = new GoldModel(SIZE, 200, 5);
+		GameModel twin = new GoldModel(SIZE, 200, 5);
+		File first = this.folder.newFile();
+		File second = this.folder.newFile();
+		GameSnapshots.save(first.toPath(), new String[] { "Gold" },
+				new GameModel[] { saved });
+		GameSnapshots.save(second.toPath(), new String[] { "Gold" },
+				new GameModel[] { saved });
+		assertArrayEquals(Files.readAllBytes(first.toPath()),
+				Files.readAllBytes(second.toPath()));
+		playSideBySide(saved, twin, new RandomKeySource(6));
+	}
+
+	@Test(expected = SnapshotException.class)
+	public void otherFilesAreRefused() throws IOException {
+		Path file = this.folder.newFile().toPath();
+		Files.write(file, "Not a snapshot at all".getBytes("US-ASCII"));
+		GameSnapshots.load(file, new GameFactory());
+	}
+
+	@Test(expected = SnapshotException.class)
+	public void truncatedFilesAreRefused() throws IOException {
+		Path file = this.folder.newFile().toPath();
+		GameSnapshots.save(file, new String[] { "Gold" },
+				new GameModel[] { new GoldModel(SIZE, 200, 7) });
+		byte[] bytes = Files.readAllBytes(file);
+		byte[] truncated = new byte[bytes.length / 2];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		Files.write(file, truncated);
+		GameSnapshots.load(file, new GameFactory());
+	}
+
+	/**
+	 * Plays two games with the same keys, checking that they stay the same
+	 * until both are over.
+	 */
+	private static void playSideBySide(final GameModel expected,
+			final GameModel actual, final KeySource keys) {
+		for (int tick = 0; tick < 500; tick++) {
+			int key = keys.nextKey();
+			int expectedScore = -1;
+			int actualScore = -1;
+			try {
+				expected.gameUpdate(key);
+			} catch (GameOverException e) {
+				expectedScore = e.getScore();
+			}
+			try {
+				actual.gameUpdate(key);
+			} catch (GameOverException e) {
+				actualScore = e.getScore();
+			}
+			assertEquals("Game over at tick " + tick, expectedScore,
+					actualScore);
+			if (expectedScore >= 0) {
+				return;
+			}
+			assertSameGame(expected, actual);
+		}
+	}
+
+	/**
+	 * Checks that two games have the same gameboard and score.
+	 */
+	private static void assertSameGame(final GameModel expected,
+			final GameModel actual) {
+		Dimension size = expected.getGameboardSize();
+		assertEquals(size, actual.getGameboardSize());
+		for (int y = 0; y < size.height; y++) {
+			for (int x = 0; x < size.width; x++) {
+				assertEquals("Cell (" + x + "," + y + ")",
+						expected.getGameboardTileId(x, y),
+						actual.getGameboardTileId(x, y));
+			}
+		}
+		assertEquals(expected.getScore(), actual.getScore());
+	}
+}
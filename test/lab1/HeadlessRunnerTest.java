@@ -0,0 +1,94 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Dimension;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class HeadlessRunnerTest {
+
+	private static final Dimension SIZE = new Dimension(20, 20);
+
+	@Test
+	public void sameSeedPlaysTheSameGames() {
+		HeadlessRunner first =
+				new HeadlessRunner(new GameFactory(), "Snake", SIZE, 1000, 7);
+		HeadlessRunner second =
+				new HeadlessRunner(new GameFactory(), "Snake", SIZE, 1000, 7);
+		for (int i = 0; i < 20; i++) {
+			assertEquals(first.runGame(i), second.runGame(i));
+		}
+		assertEquals(first.run(50).getTicks(), second.run(50).getTicks());
+	}
+
+	@Test
+	public void runAddsUpTheUpdatesOfEveryGame() {
+		HeadlessRunner runner =
+				new HeadlessRunner(new GameFactory(), "Gold", SIZE, 300, 3);
+		long ticks = 0;
+		for (int i = 0; i < 40; i++) {
+			ticks += runner.runGame(i);
+		}
+		HeadlessRunner.Result result = runner.run(40);
+		assertEquals(40, result.getGames());
+		assertEquals(ticks, result.getTicks());
+	}
+
+	@Test
+	public void gamesStopAtTheTickLimit() {
+		// Never turning, the snake can't reach a wall in 5 updates.
+		HeadlessRunner runner = new HeadlessRunner(new GameFactory(),
+				"Snake", SIZE, 5, new int[] { 0 });
+		assertEquals(5, runner.runGame(0));
+	}
+
+	@Test
+	public void playGameKeepsTheScoreOfAnEndedGame() {
+		// Never turning, the snake runs into a wall.
+		GameModel model = new SnakeModel(SIZE, 3, 1);
+		int[] results = new int[2];
+		HeadlessRunner.playGame(model, new ScriptedKeySource(new int[] { 0 }),
+				1000, results);
+		assertTrue(results[1] < 1000);
+		assertEquals(model.getScore(), results[0]);
+	}
+
+	@Test
+	public void failedGamesAreStillReleased() {
+		final AtomicInteger created = new AtomicInteger();
+		final AtomicInteger released = new AtomicInteger();
+		IGameFactory factory = new GameFactory() {
+			@Override
+			public GameModel createGame(final String gameName,
+					final Dimension boardSize, final long seed) {
+				created.incrementAndGet();
+				return new GoldModel(boardSize, 10, seed) {
+					@Override
+					public void gameUpdate(final int lastKey) {
+						throw new IllegalStateException("Broken game");
+					}
+				};
+			}
+
+			@Override
+			public void releaseGame(final String gameName,
+					final GameModel model) {
+				released.incrementAndGet();
+			}
+		};
+		HeadlessRunner runner =
+				new HeadlessRunner(factory, "Gold", SIZE, 100, 0);
+		try {
+			runner.runGame(0);
+			fail("The failure of the game was lost");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+		assertEquals(1, created.get());
+		assertEquals(1, released.get());
+	}
+}
@@ -0,0 +1,67 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IntRingBufferTest {
+
+	@Test
+	public void removesInOrderOfAdding() {
+		IntRingBuffer buffer = new IntRingBuffer(4);
+		buffer.addLast(1);
+		buffer.addLast(2);
+		buffer.addLast(3);
+		assertEquals(3, buffer.size());
+		assertEquals(1, buffer.getFirst());
+		assertEquals(3, buffer.getLast());
+		assertEquals(1, buffer.removeFirst());
+		assertEquals(2, buffer.removeFirst());
+		assertEquals(3, buffer.removeFirst());
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void growsAcrossTheEndOfTheRing() {
+		IntRingBuffer buffer = new IntRingBuffer(4);
+		// Move the head along so that the elements wrap around.
+		for (int i = 0; i < 3; i++) {
+			buffer.addLast(-1);
+			buffer.removeFirst();
+		}
+		for (int i = 0; i < 100; i++) {
+			buffer.addLast(i);
+		}
+		assertEquals(100, buffer.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, buffer.get(i));
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, buffer.removeFirst());
+		}
+	}
+
+	@Test
+	public void clearKeepsTheBufferUsable() {
+		IntRingBuffer buffer = new IntRingBuffer(2);
+		buffer.addLast(1);
+		buffer.addLast(2);
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+		buffer.addLast(3);
+		assertEquals(3, buffer.getFirst());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void removeFromEmptyBufferFails() {
+		new IntRingBuffer(4).removeFirst();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getPastTheLastElementFails() {
+		IntRingBuffer buffer = new IntRingBuffer(4);
+		buffer.addLast(1);
+		buffer.get(1);
+	}
+}
@@ -0,0 +1,105 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class KeyQueueTest {
+
+	@Test
+	public void queuePassesKeysInOrder() {
+		KeyQueue queue = new KeyQueue(4, KeyQueue.Policy.QUEUE);
+		assertTrue(queue.offer(1));
+		assertTrue(queue.offer(2));
+		assertTrue(queue.offer(2));
+		assertEquals(1, queue.poll());
+		assertEquals(2, queue.poll());
+		assertEquals(2, queue.poll());
+		assertEquals(0, queue.poll());
+		assertEquals(0, queue.getDroppedKeyCount());
+	}
+
+	@Test
+	public void queueDropsKeysWhichDontFit() {
+		KeyQueue queue = new KeyQueue(2, KeyQueue.Policy.QUEUE);
+		assertTrue(queue.offer(1));
+		assertTrue(queue.offer(2));
+		assertFalse(queue.offer(3));
+		assertEquals(1, queue.poll());
+		assertEquals(2, queue.poll());
+		assertEquals(0, queue.poll());
+		assertEquals(1, queue.getDroppedKeyCount());
+	}
+
+	@Test
+	public void coalesceDropsRepeatsWhileWaiting() {
+		KeyQueue queue = new KeyQueue(4, KeyQueue.Policy.COALESCE);
+		assertTrue(queue.offer(1));
+		assertFalse(queue.offer(1));
+		assertTrue(queue.offer(2));
+		assertEquals(1, queue.poll());
+		assertEquals(2, queue.poll());
+		assertEquals(1, queue.getDroppedKeyCount());
+	}
+
+	@Test
+	public void coalesceKeepsRepeatOfTakenKey() {
+		KeyQueue queue = new KeyQueue(4, KeyQueue.Policy.COALESCE);
+		assertTrue(queue.offer(1));
+		assertEquals(1, queue.poll());
+		// The previous key has been taken, so this one counts again.
+		assertTrue(queue.offer(1));
+		assertEquals(1, queue.poll());
+		assertEquals(0, queue.getDroppedKeyCount());
+	}
+
+	@Test
+	public void latestSkipsOlderKeys() {
+		KeyQueue queue = new KeyQueue(4, KeyQueue.Policy.LATEST);
+		queue.offer(1);
+		queue.offer(2);
+		queue.offer(3);
+		assertEquals(3, queue.poll());
+		assertEquals(0, queue.poll());
+		assertEquals(2, queue.getDroppedKeyCount());
+	}
+
+	@Test
+	public void latestKeepsNewestKeyWhenFull() {
+		KeyQueue queue = new KeyQueue(2, KeyQueue.Policy.LATEST);
+		assertTrue(queue.offer(1));
+		assertTrue(queue.offer(2));
+		assertTrue(queue.offer(3));
+		assertTrue(queue.offer(4));
+		assertEquals(4, queue.poll());
+		assertEquals(0, queue.poll());
+		assertEquals(3, queue.getDroppedKeyCount());
+	}
+
+	@Test
+	public void clearDropsWaitingKeys() {
+		KeyQueue queue = new KeyQueue(4, KeyQueue.Policy.QUEUE);
+		queue.offer(1);
+		queue.offer(2);
+		queue.clear();
+		assertEquals(0, queue.poll());
+		assertTrue(queue.offer(3));
+		assertEquals(3, queue.poll());
+	}
+
+	@Test
+	public void ringWrapsAround() {
+		KeyQueue queue = new KeyQueue(3, KeyQueue.Policy.QUEUE);
+		for (int key = 1; key <= 10; key++) {
+			assertTrue(queue.offer(key));
+			assertEquals(key, queue.poll());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void capacityMustBePositive() {
+		new KeyQueue(0, KeyQueue.Policy.QUEUE);
+	}
+}
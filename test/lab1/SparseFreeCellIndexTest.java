@@ -0,0 +1,213 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class SparseFreeCellIndexTest {
+
+	private static final int WIDTH = 13;
+
+	private static final int HEIGHT = 11;
+
+	@Test
+	public void numbersEveryFreeCellOnce() {
+		SparseFreeCellIndex index = new SparseFreeCellIndex(WIDTH, HEIGHT);
+		boolean[] free = new boolean[WIDTH * HEIGHT];
+		Arrays.fill(free, true);
+		SplittableRandom random = new SplittableRandom(1);
+		for (int step = 0; step < 20000; step++) {
+			// Drift between an empty and a full board.
+			int cell = random.nextInt(free.length);
+			boolean fill = (step / 2000) % 2 == 0
+					? random.nextInt(4) != 0 : random.nextInt(4) == 0;
+			if (fill) {
+				index.remove(cell % WIDTH, cell / WIDTH);
+				free[cell] = false;
+			} else {
+				index.add(cell % WIDTH, cell / WIDTH);
+				free[cell] = true;
+			}
+			if (step % 20 == 0) {
+				assertSameCells(free, index);
+			}
+		}
+	}
+
+	@Test
+	public void hugeBoardsKeepOnlyTheOccupiedCells() {
+		SparseFreeCellIndex index =
+				new SparseFreeCellIndex(100000, 100000);
+		long cellCount = 100000L * 100000L;
+		index.remove(0, 0);
+		index.remove(99999, 99999);
+		index.remove(5, 7);
+		assertEquals(cellCount - 3, index.size());
+		assertFalse(index.contains(5, 7));
+		// The occupied cell 0 is numbered by a free cell past the boundary.
+		long partner = index.get(0);
+		assertTrue(partner >= index.size());
+		assertTrue(index.contains(index.cellX(partner),
+				index.cellY(partner)));
+		index.add(0, 0);
+		assertEquals(0, index.get(0));
+	}
+
+	@Test
+	public void restoredIndexNumbersCellsTheSame() throws SnapshotException {
+		SparseFreeCellIndex index = new SparseFreeCellIndex(WIDTH, HEIGHT);
+		SplittableRandom random = new SplittableRandom(2);
+		for (int step = 0; step < 500; step++) {
+			int cell = random.nextInt(WIDTH * HEIGHT);
+			if (random.nextInt(3) != 0) {
+				index.remove(cell % WIDTH, cell / WIDTH);
+			} else {
+				index.add(cell % WIDTH, cell / WIDTH);
+			}
+		}
+		SparseFreeCellIndex restored = roundTrip(index);
+		assertSameNumbers(index, restored);
+
+		// Both go on numbering the same way.
+		for (int step = 0; step < 500; step++) {
+			int cell = random.nextInt(WIDTH * HEIGHT);
+			if (random.nextBoolean()) {
+				index.remove(cell % WIDTH, cell / WIDTH);
+				restored.remove(cell % WIDTH, cell / WIDTH);
+			} else {
+				index.add(cell % WIDTH, cell / WIDTH);
+				restored.add(cell % WIDTH, cell / WIDTH);
+			}
+			assertSameNumbers(index, restored);
+		}
+	}
+
+	@Test(expected = SnapshotException.class)
+	public void occupiedCellWithoutPartnerIsRefused()
+			throws SnapshotException {
+		// Cell 0 is below the boundary, so it must have a partner.
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		SnapshotWriter out = newWriter(buffer);
+		out.writeInt(1);
+		out.writeCell(0);
+		out.writeBoolean(false);
+		read(out, buffer);
+	}
+
+	@Test(expected = SnapshotException.class)
+	public void partnerBelowTheBoundaryIsRefused() throws SnapshotException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		SnapshotWriter out = newWriter(buffer);
+		out.writeInt(1);
+		out.writeCell(0);
+		out.writeBoolean(true);
+		out.writeCell(1);
+		read(out, buffer);
+	}
+
+	@Test(expected = SnapshotException.class)
+	public void occupiedPartnerIsRefused() throws SnapshotException {
+		// The last cell is at the boundary, but occupied itself.
+		int last = WIDTH * HEIGHT - 1;
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		SnapshotWriter out = newWriter(buffer);
+		out.writeInt(2);
+		out.writeCell(0);
+		out.writeBoolean(true);
+		out.writeCell(last);
+		out.writeCell(last);
+		out.writeBoolean(false);
+		read(out, buffer);
+	}
+
+	@Test(expected = SnapshotException.class)
+	public void cellPairedTwiceIsRefused() throws SnapshotException {
+		int last = WIDTH * HEIGHT - 1;
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		SnapshotWriter out = newWriter(buffer);
+		out.writeInt(2);
+		out.writeCell(0);
+		out.writeBoolean(true);
+		out.writeCell(last);
+		out.writeCell(1);
+		out.writeBoolean(true);
+		out.writeCell(last);
+		read(out, buffer);
+	}
+
+	/**
+	 * Checks that an index holds exactly the free cells of an array, and
+	 * numbers each of them once.
+	 */
+	private static void assertSameCells(final boolean[] free,
+			final SparseFreeCellIndex index) {
+		int freeCount = 0;
+		for (int cell = 0; cell < free.length; cell++) {
+			assertEquals(free[cell],
+					index.contains(cell % WIDTH, cell / WIDTH));
+			if (free[cell]) {
+				freeCount++;
+			}
+		}
+		assertEquals(freeCount, index.size());
+		boolean[] numbered = new boolean[free.length];
+		for (long k = 0; k < index.size(); k++) {
+			int cell = (int) index.get(k);
+			assertTrue("Cell " + cell + " is occupied", free[cell]);
+			assertFalse("Cell " + cell + " is numbered twice",
+					numbered[cell]);
+			numbered[cell] = true;
+		}
+	}
+
+	/**
+	 * Checks that two indexes give every number the same cell.
+	 */
+	private static void assertSameNumbers(final SparseFreeCellIndex expected,
+			final SparseFreeCellIndex actual) {
+		assertEquals(expected.size(), actual.size());
+		for (long k = 0; k < expected.size(); k++) {
+			assertEquals(expected.get(k), actual.get(k));
+		}
+	}
+
+	/**
+	 * Returns a new index read from what an index has written.
+	 */
+	private static SparseFreeCellIndex roundTrip(
+			final SparseFreeCellIndex index) throws SnapshotException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		SnapshotWriter out = newWriter(buffer);
+		index.writeState(out);
+		return read(out, buffer);
+	}
+
+	/**
+	 * Returns a writer into a buffer, for cells of the test gameboard.
+	 */
+	private static SnapshotWriter newWriter(final ByteBuffer buffer) {
+		SnapshotWriter out = new SnapshotWriter(buffer);
+		out.setCellCount(WIDTH * HEIGHT);
+		return out;
+	}
+
+	/**
+	 * Reads what a writer has written into a buffer into a new index.
+	 */
+	private static SparseFreeCellIndex read(final SnapshotWriter out,
+			final ByteBuffer buffer) throws SnapshotException {
+		out.align();
+		buffer.flip();
+		SnapshotReader in = new SnapshotReader(buffer);
+		in.setCellCount(WIDTH * HEIGHT);
+		SparseFreeCellIndex index = new SparseFreeCellIndex(WIDTH, HEIGHT);
+		index.readState(in);
+		return index;
+	}
+}
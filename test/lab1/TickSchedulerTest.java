@@ -0,0 +1,212 @@
+package lab1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Runs the schedules on a clock which only moves when told to, or when the
+ * scheduler sleeps, so that no test depends on how busy the machine is. Only
+ * waking a waiting thread is tested on the real clock.
+ */
+public class TickSchedulerTest {
+
+	private static final long PERIOD_MILLIS = 100;
+
+	private static final long PERIOD = TimeUnit.MILLISECONDS
+			.toNanos(PERIOD_MILLIS);
+
+	@Test
+	public void workDoesNotAddUpToDrift() throws InterruptedException {
+		ManualClock clock = new ManualClock(1000);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, scheduler.awaitNextTick());
+			assertEquals(1000 + i * PERIOD, clock.now);
+			// The update takes some of the period.
+			clock.now += PERIOD / 3;
+		}
+		assertEquals(10, scheduler.getTickCount());
+		assertEquals(0, scheduler.getLateTickCount());
+	}
+
+	@Test
+	public void catchUpRunsMissedTicksBackToBack()
+			throws InterruptedException {
+		ManualClock clock = new ManualClock(0);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		clock.now += PERIOD * 7 / 2;
+		// The tick due after one period and the two after it are overdue.
+		assertEquals(PERIOD * 5 / 2, scheduler.awaitNextTick());
+		assertEquals(PERIOD * 3 / 2, scheduler.awaitNextTick());
+		assertEquals(PERIOD / 2, scheduler.awaitNextTick());
+		assertEquals(0, clock.slept);
+		// Back on the original schedule.
+		assertEquals(0, scheduler.awaitNextTick());
+		assertEquals(PERIOD / 2, clock.slept);
+		assertEquals(0, scheduler.getSkippedTickCount());
+		assertEquals(3, scheduler.getLateTickCount());
+		assertEquals(5, scheduler.getTickCount());
+	}
+
+	@Test
+	public void catchUpRunsAsManyTicksAsAllowed()
+			throws InterruptedException {
+		ManualClock clock = new ManualClock(0);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		clock.now += PERIOD * (TickScheduler.MAX_CATCH_UP_TICKS + 1);
+		for (int i = 0; i <= TickScheduler.MAX_CATCH_UP_TICKS; i++) {
+			scheduler.awaitNextTick();
+		}
+		assertEquals(0, clock.slept);
+		assertEquals(0, scheduler.getSkippedTickCount());
+	}
+
+	@Test
+	public void catchUpSkipsTooManyMissedTicks() throws InterruptedException {
+		ManualClock clock = new ManualClock(0);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		// One more tick missed than is caught up with.
+		clock.now += PERIOD * (TickScheduler.MAX_CATCH_UP_TICKS + 2)
+				+ PERIOD / 2;
+		scheduler.awaitNextTick();
+		assertEquals(TickScheduler.MAX_CATCH_UP_TICKS + 1,
+				scheduler.getSkippedTickCount());
+		assertEquals(0, scheduler.awaitNextTick());
+		assertEquals(PERIOD / 2, clock.slept);
+	}
+
+	@Test
+	public void skipDropsMissedTicks() throws InterruptedException {
+		ManualClock clock = new ManualClock(0);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.SKIP, clock);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		clock.now += PERIOD * 7 / 2;
+		assertEquals(PERIOD * 5 / 2, scheduler.awaitNextTick());
+		assertEquals(2, scheduler.getSkippedTickCount());
+		// The next tick is on the original schedule, half a period on.
+		assertEquals(0, scheduler.awaitNextTick());
+		assertEquals(PERIOD / 2, clock.slept);
+		assertEquals(2, scheduler.getSkippedTickCount());
+	}
+
+	@Test
+	public void newPeriodAppliesFromTheNextTick() throws InterruptedException {
+		ManualClock clock = new ManualClock(0);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		scheduler.setPeriodNanos(PERIOD / 2);
+		scheduler.awaitNextTick();
+		assertEquals(PERIOD, clock.now);
+		scheduler.awaitNextTick();
+		assertEquals(PERIOD * 3 / 2, clock.now);
+	}
+
+	@Test
+	public void deadlinesSurviveTheClockWrappingAround()
+			throws InterruptedException {
+		ManualClock clock = new ManualClock(Long.MAX_VALUE - PERIOD / 2);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		scheduler.awaitNextTick();
+		scheduler.awaitNextTick();
+		assertEquals(PERIOD, clock.slept);
+		assertEquals(0, scheduler.getLateTickCount());
+	}
+
+	@Test
+	public void cancelledScheduleStopsWaiting() {
+		ManualClock clock = new ManualClock(0);
+		TickScheduler scheduler = new TickScheduler(PERIOD_MILLIS,
+				TickScheduler.LatePolicy.CATCH_UP, clock);
+		scheduler.start();
+		scheduler.cancel();
+		try {
+			// The first tick is due at once, so it is still released.
+			scheduler.awaitNextTick();
+			scheduler.awaitNextTick();
+			fail("A cancelled schedule went on");
+		} catch (InterruptedException e) {
+			// Expected.
+		}
+		assertEquals(0, clock.slept);
+		assertEquals(1, scheduler.getTickCount());
+	}
+
+	@Test
+	public void cancelWakesTheWaitingThreadWithoutInterrupting()
+			throws InterruptedException {
+		final TickScheduler scheduler = new TickScheduler(
+				TimeUnit.HOURS.toMillis(1), TickScheduler.LatePolicy.CATCH_UP);
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean interrupted = new AtomicBoolean(true);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				scheduler.start();
+				try {
+					scheduler.awaitNextTick();
+					started.countDown();
+					scheduler.awaitNextTick();
+				} catch (InterruptedException e) {
+					interrupted.set(isInterrupted());
+				}
+			}
+		};
+		thread.start();
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		scheduler.cancel();
+		thread.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse("Still waiting for the next tick", thread.isAlive());
+		assertFalse(interrupted.get());
+	}
+
+	/**
+	 * A clock which moves only when told to, or by the time slept.
+	 */
+	private static class ManualClock implements TickScheduler.Clock {
+		/** The current time. (nanos) */
+		long now;
+
+		/** The total time slept. (nanos) */
+		long slept;
+
+		ManualClock(final long start) {
+			this.now = start;
+		}
+
+		@Override
+		public long nanoTime() {
+			return this.now;
+		}
+
+		@Override
+		public void sleepNanos(final long nanos) {
+			this.now += nanos;
+			this.slept += nanos;
+		}
+	}
+}